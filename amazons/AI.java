@@ -1,6 +1,14 @@
 package amazons;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
 
 import static amazons.Piece.*;
 
@@ -10,11 +18,92 @@ import static amazons.Piece.*;
  */
 class AI extends Player {
 
-    /** A position magnitude indicating a win (for white if positive, black
-     *  if negative). */
-    private static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
-    /** A magnitude greater than a normal value. */
-    private static final int INFTY = Integer.MAX_VALUE;
+    /** A position magnitude indicating a win for the side to move.  Wins
+     *  found PLY plies from the root are valued at WINNING_VALUE - PLY, so
+     *  that quicker wins are preferred.  All scores are far enough inside
+     *  the range of int that they may be negated and offset freely. */
+    private static final int WINNING_VALUE = 1 << 24;
+    /** A magnitude greater than any score. */
+    private static final int INFTY = WINNING_VALUE + (1 << 16);
+    /** The magnitude of the smallest score that indicates a forced win. */
+    private static final int WIN_THRESHOLD = WINNING_VALUE - (1 << 16);
+    /** A value that is not any score, indicating that a position has
+     *  not been solved. */
+    private static final int UNSOLVED = Integer.MIN_VALUE;
+    /** The tablebase of small contested regions (see Tablebase), or
+     *  null if there is none. */
+    private static final Tablebase TABLE = Tablebase.DEFAULT;
+    /** Half the width of the window around the previous iteration's score
+     *  used for the first search at each depth. */
+    private static final int ASPIRATION = 8;
+
+    /** The number of moves at each node searched to full depth before
+     *  late-move reductions apply (system property amazons.lmrMoves). */
+    private static final int LMR_MOVES =
+        Integer.getInteger("amazons.lmrMoves", 4);
+    /** The amount by which the static value of a node one ply from the
+     *  horizon must fall short of alpha for the node to be pruned
+     *  (system property amazons.futility; negative values disable
+     *  futility pruning). */
+    private static final int FUTILITY_MARGIN =
+        Integer.getInteger("amazons.futility", 30);
+    /** The distance by which the cheap estimate of a leaf's static value
+     *  (see Evaluator.estimate) must lie outside the search window for
+     *  the estimate, offset by this margin towards the window, to be
+     *  used as the leaf's value instead of the full static value (system
+     *  property amazons.lazy; negative values disable lazy evaluation).
+     *  It is the tolerance of the estimate: results are unchanged
+     *  wherever the estimate is within the margin of the full value. */
+    private static final int LAZY_MARGIN =
+        Integer.getInteger("amazons.lazy", 50);
+    /** The largest number of empty squares in a region that is solved
+     *  exactly (see Regions) below the root, where Regions.SOLVE_LIMIT
+     *  applies instead.  Solving happens at every node of an endgame, and
+     *  must not stall the search. */
+    private static final int SEARCH_SOLVE_LIMIT = 8;
+    /** The number of positions searched in solving one region exactly
+     *  below the root, and at the root (see Regions.limit). */
+    private static final long SEARCH_SOLVE_NODES = 1 << 10,
+        ROOT_SOLVE_NODES = 1 << 16;
+    /** Default value of amazons.moveCaps. */
+    private static final String DEFAULT_MOVE_CAPS = "48,96";
+    /** MOVE_CAPS[d], if positive, is the maximum number of moves searched
+     *  at a node with d plies left to search (given as a comma-separated
+     *  list for d = 1, 2, ... by the system property amazons.moveCaps;
+     *  0 means no limit).  The root is never limited.  As for
+     *  Integer.getInteger, a malformed value is ignored. */
+    private static final int[] MOVE_CAPS =
+        moveCaps(System.getProperty("amazons.moveCaps", DEFAULT_MOVE_CAPS),
+                 DEFAULT_MOVE_CAPS);
+    /** Default value of amazons.queenCaps. */
+    private static final String DEFAULT_QUEEN_CAPS = "12,24";
+    /** As for MOVE_CAPS, but limiting the queen moves (each with all its
+     *  spears) searched in split-ply mode (system property
+     *  amazons.queenCaps). */
+    private static final int[] QUEEN_CAPS =
+        moveCaps(System.getProperty("amazons.queenCaps", DEFAULT_QUEEN_CAPS),
+                 DEFAULT_QUEEN_CAPS);
+    /** True iff AIs search in split-ply mode by default (system property
+     *  amazons.split). */
+    static final boolean SPLIT = Boolean.getBoolean("amazons.split");
+    /** Initial size of the move lists used by orderMoves. */
+    private static final int INITIAL_MOVES = 256;
+
+    /** Return the array of move caps described by SPEC (see MOVE_CAPS),
+     *  or by DEFAULTSPEC if SPEC is malformed. */
+    private static int[] moveCaps(String spec, String defaultSpec) {
+        String[] caps = spec.trim().isEmpty() ? new String[0]
+            : spec.trim().split("\\s*,\\s*");
+        int[] result = new int[caps.length + 1];
+        for (int d = 1; d <= caps.length; d += 1) {
+            try {
+                result[d] = Integer.parseInt(caps[d - 1]);
+            } catch (NumberFormatException excp) {
+                return moveCaps(defaultSpec, defaultSpec);
+            }
+        }
+        return result;
+    }
 
     /** A new AI with no piece or controller (intended to produce
      *  a template). */
@@ -24,7 +113,17 @@ class AI extends Player {
 
     /** A new AI playing PIECE under control of CONTROLLER. */
     AI(Piece piece, Controller controller) {
+        this(piece, controller, SPLIT);
+    }
+
+    /** A new AI playing PIECE under control of CONTROLLER, searching in
+     *  split-ply mode (see split) iff SPLIT. */
+    AI(Piece piece, Controller controller, boolean split) {
         super(piece, controller);
+        _split = split;
+        _evaluator = Evaluator.create();
+        _evalCache = _evaluator == Evaluator.MOBILITY ? null
+            : EvalCache.shared();
     }
 
     @Override
@@ -32,10 +131,31 @@ class AI extends Player {
         return new AI(piece, controller);
     }
 
+    /** Searches for a move on a separate thread, so that the controller's
+     *  view can display progress and stop the search while it runs. */
     @Override
     String myMove() {
-        Move move = findMove();
-        if (move == null) {
+        SearchHandle handle = new SearchHandle();
+        _handle = handle;
+        _controller.searchStarted(_myPiece, handle);
+        Future<Move> search = SEARCHER.submit(() -> findMove());
+        Move move;
+        try {
+            move = search.get();
+        } catch (InterruptedException excp) {
+            throw new IllegalStateException("search interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new IllegalStateException(excp.getCause());
+        } finally {
+            _handle = null;
+            _controller.searchEnded();
+        }
+        if (handle.command() != null) {
+            return handle.command();
+        } else if (move == null) {
             return "null";
         } else {
             _controller.reportMove(move);
@@ -44,84 +164,1066 @@ class AI extends Player {
     }
 
     /** Return a move for me from the current position, assuming there
-     *  is a move. */
+     *  is a move, searching to maxDepth. */
     private Move findMove() {
         Board b = new Board(board());
-        if (_myPiece == WHITE) {
-            findMove(b, maxDepth(b), true, 1, -INFTY, INFTY);
+        return findMove(b, maxDepth(b));
+    }
+
+    /** One of the best moves found by an analysis (see analyze). */
+    static final class Line {
+        /** A line starting with MOVE, whose value for white (as for
+         *  Evaluator) is SCORE, continuing with PV (which starts with
+         *  MOVE). */
+        Line(Move move, int score, List<Move> pv) {
+            this.move = move;
+            this.score = score;
+            this.pv = pv;
+        }
+
+        /** The first move. */
+        final Move move;
+        /** Its value for white. */
+        final int score;
+        /** The principal variation: the moves expected to be played,
+         *  starting with MOVE. */
+        final List<Move> pv;
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%+d", score));
+            for (Move m : pv) {
+                out.append(' ').append(m);
+            }
+            return out.toString();
+        }
+    }
+
+    /** Receives the lines found by each iteration of an analysis. */
+    interface AnalysisListener {
+        /** Called after the iteration to DEPTH, which found LINES, best
+         *  first. */
+        void update(int depth, List<Line> lines);
+    }
+
+    /** Return the best COUNT moves (or all, if there are fewer) for the
+     *  side to move in B, with their values and principal variations,
+     *  best first, searching to successively greater depths up to LIMIT
+     *  as for findMove.  After each completed depth, passes the lines
+     *  found to LISTENER, if it is non-null, and reports them as notes
+     *  to my controller, if any.  The COUNT lines are found by a single
+     *  search of the root moves, in which a move is searched with a full
+     *  window only if it may enter the best COUNT (see searchRoot).  B
+     *  is unchanged on return. */
+    List<Line> analyze(Board b, int limit, int count,
+                       AnalysisListener listener) {
+        if (count < 1) {
+            throw Utils.error("number of lines must be positive");
+        }
+        _lines = count;
+        _listener = listener;
+        _analysis = new ArrayList<>();
+        try {
+            findMove(b, limit);
+            return _analysis;
+        } finally {
+            _lines = 1;
+            _listener = null;
+            _analysis = null;
+        }
+    }
+
+    /** Return a move for the side to move in B, assuming there is one.
+     *  Searches to successively greater depths, up to LIMIT, reporting
+     *  each completed depth to my controller, if any.  If asked to stop,
+     *  returns the move found by the last completed depth, or the best
+     *  move found so far if there is none.  B is unchanged on return. */
+    Move findMove(Board b, int limit) {
+        int sense = sense(b.turn());
+        SearchStats.Counters before = null;
+        long start = 0;
+        if (SearchStats.ENABLED) {
+            _stats = SearchStats.local();
+            before = _stats.copy();
+            start = System.nanoTime();
+        }
+        SearchEvents.Search event = null;
+        if (SearchEvents.recording()) {
+            event = new SearchEvents.Search();
+            event.begin();
+        }
+        _nodes = 0;
+        _lastFoundMove = null;
+        Move best = null;
+        int depth;
+        _killers = new Move[limit + 1];
+        _moves = new Move[limit + 1][INITIAL_MOVES];
+        _order = new long[limit + 1][INITIAL_MOVES];
+        _spears = new long[limit + 1][b.grid().count()];
+        _fills = new Move[limit + 1][b.queens(WHITE).size()
+                                     + b.queens(BLACK).size()];
+        _fillCounts = new int[limit + 1];
+        _reach = b.grid().newSet();
+        _regions = new Regions(b);
+        _pv = new Move[limit + 2][limit + 1];
+        _pvLength = new int[limit + 2];
+        _spearPV = new Move[limit + 2][limit + 1];
+        _spearPVLength = new int[limit + 2];
+        _rootMoves = new ArrayList<>();
+        fills(b, 0);
+        for (Iterator<Move> legal = b.legalMoves(); legal.hasNext(); ) {
+            Move m = legal.next();
+            if (!superseded(b, m, 0)) {
+                _rootMoves.add(new RootMove(m));
+            }
+        }
+        int score = solved(b, 0);
+        if (score != UNSOLVED && _analysis == null) {
+            best = solvedMove(b);
+        }
+        if (best != null) {
+            limit = 0;
         } else {
-            findMove(b, maxDepth(b), true, -1, -INFTY, INFTY);
+            score = 0;
+        }
+        for (depth = 1; depth <= limit; depth += 1) {
+            long iterStart = 0, iterNodes = _nodes;
+            if (SearchStats.ENABLED) {
+                iterStart = System.nanoTime();
+            }
+            SearchEvents.Iteration iterEvent = null;
+            if (event != null) {
+                iterEvent = new SearchEvents.Iteration();
+                iterEvent.begin();
+            }
+            score = aspirate(b, depth, score);
+            if (stopped()) {
+                if (best == null) {
+                    best = _lastFoundMove;
+                }
+                break;
+            }
+            best = _lastFoundMove;
+            if (_controller != null) {
+                _controller.searchProgress(depth, best, sense * score);
+            }
+            if (_analysis != null) {
+                reportLines(depth, sense);
+            }
+            if (SearchStats.ENABLED) {
+                _stats.iteration(depth, System.nanoTime() - iterStart,
+                                 _nodes - iterNodes);
+            }
+            if (iterEvent != null && iterEvent.shouldCommit()) {
+                iterEvent.depth = depth;
+                iterEvent.nodes = _nodes - iterNodes;
+                iterEvent.score = sense * score;
+                iterEvent.move = String.valueOf(best);
+                iterEvent.commit();
+            }
+            if (Math.abs(score) >= WIN_THRESHOLD) {
+                depth += 1;
+                break;
+            }
+        }
+        if (best == null) {
+            Iterator<Move> legal = b.legalMoves();
+            if (legal.hasNext()) {
+                best = legal.next();
+            }
+        }
+        if (event != null && event.shouldCommit()) {
+            event.side = b.turn().toName();
+            event.depth = depth - 1;
+            event.nodes = _nodes;
+            event.move = String.valueOf(best);
+            event.commit();
         }
-        return _lastFoundMove;
+        if (SearchStats.ENABLED) {
+            _stats.search(System.nanoTime() - start);
+            if (_controller != null) {
+                _controller.reportNote("%s searched to depth %d: %s",
+                                       b.turn().toName(), depth - 1,
+                                       _stats.since(before).summary());
+            }
+        }
+        return best;
+    }
+
+    /** Set _analysis to the best _lines root moves found by the
+     *  iteration to DEPTH, whose scores are multiplied by SENSE to give
+     *  values for white, and report them to _listener and my
+     *  controller. */
+    private void reportLines(int depth, int sense) {
+        _analysis = new ArrayList<>();
+        for (RootMove root : _rootMoves) {
+            if (_analysis.size() == _lines) {
+                break;
+            }
+            _analysis.add(new Line(root.move, sense * root.score,
+                                   List.of(root.pv)));
+        }
+        if (_listener != null) {
+            _listener.update(depth, _analysis);
+        }
+        if (_controller != null) {
+            for (int i = 0; i < _analysis.size(); i += 1) {
+                _controller.reportNote("depth %d line %d: %s", depth, i + 1,
+                                       _analysis.get(i));
+            }
+        }
+    }
+
+    /** Return true iff the current search has been asked to stop. */
+    private boolean stopped() {
+        SearchHandle handle = _handle;
+        return handle != null && handle.stopped();
     }
 
-    /** The move found by the last call to one of the ...FindMove methods
-     *  below. */
+    /** The thread pool on which searches run.  Its threads are daemons,
+     *  so that they do not keep the program alive. */
+    private static final ExecutorService SEARCHER =
+        Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "AI search");
+            t.setDaemon(true);
+            return t;
+        });
+
+    /** Handle on the search in progress, or null if none is. */
+    private volatile SearchHandle _handle;
+
+    /** The best move found so far by the current iteration of the
+     *  current search. */
     private Move _lastFoundMove;
 
-    /** Find a move from position BOARD and return its value, recording
-     *  the move found in _lastFoundMove iff SAVEMOVE. The move
-     *  should have maximal value or have value > BETA if SENSE==1,
-     *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     *  DEPTH levels.  Searching at level 0 simply returns a static estimate
-     *  of the board value and does not set _lastMoveFound. */
-    private int findMove(Board board, int depth, boolean saveMove, int sense,
-                         int alpha, int beta) {
+    /** The legal moves in the root position of the current search, best
+     *  first according to the last iteration. */
+    private ArrayList<RootMove> _rootMoves;
+
+    /** Number of best root moves whose values are found exactly: 1,
+     *  except during analyze. */
+    private int _lines = 1;
+    /** The lines found by the last completed iteration of analyze, or
+     *  null if not analyzing. */
+    private List<Line> _analysis;
+    /** Receives the lines found by analyze, or null. */
+    private AnalysisListener _listener;
+
+    /** _pv[p] holds, in its first _pvLength[p] elements, the principal
+     *  variation found by the latest search of a node at ply p: the
+     *  best move, followed by the principal variation of the position
+     *  after it. */
+    private Move[][] _pv;
+    /** See _pv. */
+    private int[] _pvLength;
+    /** As for _pv, the principal variations found by the latest search
+     *  of a spear node (see spears) at each ply. */
+    private Move[][] _spearPV;
+    /** See _spearPV. */
+    private int[] _spearPVLength;
+    /** The number of moves searched by the latest spear node. */
+    private int _spearsSearched;
+
+    /** _killers[p] is the last move that caused a cutoff at ply p of the
+     *  current search, or null. */
+    private Move[] _killers;
+
+    /** _moves[p] holds the legal moves at the node being searched at ply
+     *  p, and _order[p] their order (see orderMoves). */
+    private Move[][] _moves;
+    /** See _moves. */
+    private long[][] _order;
+    /** _spears[p] holds the spear squares for the queen move being
+     *  searched at ply p in split-ply mode (see orderSpears). */
+    private long[][] _spears;
+    /** _fills[p] holds the first _fillCounts[p] moves found by fills at
+     *  ply p. */
+    private Move[][] _fills;
+    /** See _fills. */
+    private int[] _fillCounts;
+    /** Work space for the destinations of one queen or spear (see
+     *  orderQueenMoves and orderSpears). */
+    private SquareSet _reach;
+    /** Work space for the regions of a position (see regions). */
+    private Regions _regions;
+    /** Says whether to stop the current search (see stopped). */
+    private final BooleanSupplier _stopper = this::stopped;
+
+    /** True iff I search in split-ply mode. */
+    private final boolean _split;
+
+    /** My static evaluation function. */
+    private final Evaluator _evaluator;
+
+    /** The cache of static values shared by all AIs (see EvalCache), or
+     *  null if there is none or my evaluator is mobility, which costs
+     *  less to compute than to look up. */
+    private final EvalCache _evalCache;
+
+    /** Statistics counters for the thread running the current search
+     *  (used only if SearchStats.ENABLED). */
+    private SearchStats.Counters _stats;
+
+    /** Number of positions visited by the current search. */
+    private long _nodes;
+
+    /** Return the number of positions visited by my latest search. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** A legal move from the root position, with its value from the
+     *  latest search that reached it. */
+    private static class RootMove {
+        /** A root move MOVE, not yet searched. */
+        RootMove(Move move) {
+            this.move = move;
+            this.score = -INFTY;
+            this.pv = new Move[] { move };
+        }
+
+        /** The move. */
+        final Move move;
+        /** Its value for the side to move (a bound if it was searched
+         *  with a window that did not contain its value). */
+        int score;
+        /** Its principal variation, starting with MOVE, from the latest
+         *  search that found its value exactly. */
+        Move[] pv;
+    }
+
+    /** Search the root position BOARD to DEPTH, setting _lastFoundMove
+     *  to the best move, and return its value for the side to move.
+     *  Beyond depth 1, first searches a narrow window around GUESS, the
+     *  value found at the previous depth, widening whichever bound the
+     *  value falls outside of and searching again.  When analyzing more
+     *  than one line, always searches the full window. */
+    private int aspirate(Board board, int depth, int guess) {
+        int alpha = -INFTY, beta = INFTY;
+        if (depth > 1 && _lines == 1 && Math.abs(guess) < WIN_THRESHOLD) {
+            alpha = guess - ASPIRATION;
+            beta = guess + ASPIRATION;
+        }
+        while (true) {
+            int score = searchRoot(board, depth, alpha, beta);
+            if (stopped()) {
+                return score;
+            } else if (score <= alpha && alpha > -INFTY) {
+                alpha = -INFTY;
+            } else if (score >= beta && beta < INFTY) {
+                beta = INFTY;
+            } else {
+                return score;
+            }
+        }
+    }
+
+    /** Search the root position BOARD to DEPTH with window ALPHA to BETA,
+     *  trying the moves in _rootMoves in order and then re-ordering them
+     *  by the values found.  Sets _lastFoundMove to the best move and
+     *  returns its value for the side to move (a bound, as for pvs, if it
+     *  lies outside the window).  The first _lines moves are searched
+     *  with the full window, and the rest with a null window just above
+     *  the _lines-th best value so far (or ALPHA, if greater), so that
+     *  the values of the best _lines moves are exact. */
+    private int searchRoot(Board board, int depth, int alpha, int beta) {
+        _nodes += 1;
+        if (SearchStats.ENABLED) {
+            _stats.node();
+        }
+        int best = -INFTY;
+        int searched = 0;
+        boolean cutoff = false;
+        int[] top = new int[_lines];
+        Arrays.fill(top, -INFTY);
+        for (RootMove root : _rootMoves) {
+            root.score = -INFTY;
+        }
+        for (RootMove root : _rootMoves) {
+            board.makeMove(root.move);
+            int score;
+            if (searched < _lines) {
+                score = -search(board, depth - 1, -beta, -alpha);
+            } else {
+                score = -search(board, depth - 1, -alpha - 1, -alpha);
+                if (score > alpha && score < beta) {
+                    score = -search(board, depth - 1, -beta, -alpha);
+                }
+            }
+            board.undo();
+            if (stopped()) {
+                break;
+            }
+            searched += 1;
+            root.score = score;
+            if (score > alpha) {
+                root.pv = new Move[_pvLength[1] + 1];
+                root.pv[0] = root.move;
+                System.arraycopy(_pv[1], 0, root.pv, 1, _pvLength[1]);
+            }
+            if (score > best) {
+                best = score;
+                _lastFoundMove = root.move;
+            }
+            int i = _lines - 1;
+            if (score > top[i]) {
+                for (; i > 0 && score > top[i - 1]; i -= 1) {
+                    top[i] = top[i - 1];
+                }
+                top[i] = score;
+                if (top[_lines - 1] > alpha) {
+                    alpha = top[_lines - 1];
+                    if (alpha >= beta) {
+                        cutoff = true;
+                        break;
+                    }
+                }
+            }
+        }
+        if (SearchStats.ENABLED) {
+            _stats.interior(searched, cutoff);
+        }
+        _rootMoves.sort((r0, r1) -> Integer.compare(r1.score, r0.score));
+        return best;
+    }
+
+    /** Return the value for the side to move of BOARD, a position one ply
+     *  from the root, searching DEPTH further plies with window ALPHA to
+     *  BETA by pvs or, in split-ply mode, by split. */
+    private int search(Board board, int depth, int alpha, int beta) {
+        if (_split) {
+            return split(board, 2 * depth, 1, alpha, beta);
+        } else {
+            return pvs(board, depth, 1, alpha, beta);
+        }
+    }
+
+    /** Return the value of position BOARD, which is PLY plies from the
+     *  root, for the side to move, searching DEPTH further plies by
+     *  principal variation search.  The first move at each node is
+     *  searched with the window ALPHA to BETA and the rest with a null
+     *  window just above ALPHA, searching again with the full window any
+     *  move that turns out to be better.  The result is exact if it lies
+     *  strictly between ALPHA and BETA; otherwise it is an upper bound
+     *  (if <= ALPHA) or a lower bound (if >= BETA) on the true value.
+     *
+     *  The search is selective: moves are tried in order of promise (see
+     *  orderMoves); only the first MOVE_CAPS[DEPTH] of them are searched
+     *  at shallow depths; those after the first LMR_MOVES are first
+     *  searched one ply shallower, and again at full depth only if they
+     *  beat ALPHA; and a node one ply from the horizon whose static value
+     *  is more than FUTILITY_MARGIN below ALPHA is not searched at all.
+     *  Thus values are estimates even within the window.  The moves of
+     *  queens in regions that the mover holds alone are collapsed into
+     *  one each (see fills), which loses nothing. */
+    private int pvs(Board board, int depth, int ply, int alpha, int beta) {
+        _nodes += 1;
+        _pvLength[ply] = 0;
+        if (SearchStats.ENABLED) {
+            _stats.node();
+        }
+        int exact = solved(board, ply);
+        if (exact != UNSOLVED) {
+            if (SearchStats.ENABLED) {
+                _stats.leaf();
+            }
+            return exact;
+        }
         if (depth == 0 || board.winner() != null) {
-            return staticScore(board);
-        } else if (sense == 1) {
-            Move bestmove = null;
-            int bestval = -INFTY;
-            Iterator<Move> legal = board.legalMoves(WHITE);
-            while (legal.hasNext()) {
-                Move m = legal.next();
-                board.makeMove(m);
-                int respondingScore = findMove(board,
-                        depth - 1, false, -1, alpha, beta);
-                board.undo();
-                if (respondingScore > bestval) {
-                    bestmove = m;
-                    bestval = respondingScore;
-                    alpha = Math.max(alpha, bestval);
-                    if (beta <= alpha) {
+            if (SearchStats.ENABLED) {
+                _stats.leaf();
+            }
+            return value(board, ply, alpha, beta);
+        }
+        if (depth == 1 && FUTILITY_MARGIN >= 0 && beta - alpha == 1
+            && Math.abs(alpha) < WIN_THRESHOLD) {
+            int stand = value(board, ply, alpha - FUTILITY_MARGIN, INFTY);
+            if (stand + FUTILITY_MARGIN <= alpha) {
+                if (SearchStats.ENABLED) {
+                    _stats.leaf();
+                }
+                return stand;
+            }
+        }
+        int n = orderMoves(board, ply);
+        if (depth < MOVE_CAPS.length && MOVE_CAPS[depth] > 0) {
+            n = Math.min(n, MOVE_CAPS[depth]);
+        }
+        Move[] moves = _moves[ply];
+        long[] order = _order[ply];
+        int best = -INFTY;
+        int searched = 0;
+        boolean cutoff = false;
+        for (int i = 0; i < n; i += 1) {
+            Move m = moves[(int) order[i]];
+            board.makeMove(m);
+            int score;
+            if (searched == 0) {
+                score = -pvs(board, depth - 1, ply + 1, -beta, -alpha);
+            } else {
+                score = alpha + 1;
+                if (depth >= 2 && searched >= LMR_MOVES) {
+                    score = -pvs(board, depth - 2, ply + 1,
+                                 -alpha - 1, -alpha);
+                }
+                if (score > alpha) {
+                    score = -pvs(board, depth - 1, ply + 1,
+                                 -alpha - 1, -alpha);
+                }
+                if (score > alpha && score < beta) {
+                    score = -pvs(board, depth - 1, ply + 1, -beta, -alpha);
+                }
+            }
+            board.undo();
+            if (stopped()) {
+                break;
+            }
+            searched += 1;
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    extendPV(ply, m);
+                    if (alpha >= beta) {
+                        _killers[ply] = m;
+                        cutoff = true;
+                        break;
+                    }
+                }
+            }
+        }
+        if (SearchStats.ENABLED) {
+            _stats.interior(searched, cutoff);
+        }
+        return best;
+    }
+
+    /** Return the value of position BOARD, which is PLY plies from the
+     *  root, for the side to move, searching HALVES further half-plies,
+     *  where moving a queen and throwing its spear are separate
+     *  half-plies.  This is the queen node of a split-ply search: its
+     *  children are the queen moves, in order of the static value of the
+     *  position after the queen alone has moved, and each is a spear node
+     *  (see spears) searched with the current window, starting at ALPHA
+     *  to BETA, whose children in turn are the positions after each
+     *  spear.  A node one ply from the horizon drops the queen moves
+     *  whose static values fall more than FUTILITY_MARGIN below ALPHA
+     *  without generating any of their spears, QUEEN_CAPS limits the
+     *  queen moves searched, and moves in regions the mover holds alone
+     *  are collapsed as for pvs.  Searches from the root use even HALVES,
+     *  and reductions are by whole plies: a queen node with one half-ply
+     *  left would need the static value of every queen move, costing far
+     *  more than the single static value of a leaf.  The result is exact
+     *  or a bound as for pvs. */
+    private int split(Board board, int halves, int ply, int alpha,
+                      int beta) {
+        _nodes += 1;
+        _pvLength[ply] = 0;
+        if (SearchStats.ENABLED) {
+            _stats.node();
+        }
+        int exact = solved(board, ply);
+        if (exact != UNSOLVED) {
+            if (SearchStats.ENABLED) {
+                _stats.leaf();
+            }
+            return exact;
+        }
+        if (halves <= 0 || board.winner() != null) {
+            if (SearchStats.ENABLED) {
+                _stats.leaf();
+            }
+            return value(board, ply, alpha, beta);
+        }
+        int n = orderQueenMoves(board, ply);
+        int plies = (halves + 1) / 2;
+        if (plies < QUEEN_CAPS.length && QUEEN_CAPS[plies] > 0) {
+            n = Math.min(n, QUEEN_CAPS[plies]);
+        }
+        long[] order = _order[ply];
+        boolean futile = halves == 2 && FUTILITY_MARGIN >= 0
+            && beta - alpha == 1 && Math.abs(alpha) < WIN_THRESHOLD;
+        int best = -INFTY;
+        int searched = 0;
+        boolean cutoff = false;
+        for (int i = 0; i < n; i += 1) {
+            int stand = (int) -(order[i] >> 32),
+                from = (int) (order[i] >>> 16) & 0xffff,
+                to = (int) order[i] & 0xffff;
+            if (futile && stand + FUTILITY_MARGIN <= alpha) {
+                best = Math.max(best, stand);
+                break;
+            }
+            int score = spears(board, from, to, stand, halves - 1, ply,
+                               searched, alpha, beta);
+            searched += _spearsSearched;
+            if (stopped()) {
+                break;
+            }
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    System.arraycopy(_spearPV[ply], 0, _pv[ply], 0,
+                                     _spearPVLength[ply]);
+                    _pvLength[ply] = _spearPVLength[ply];
+                    if (alpha >= beta) {
+                        cutoff = true;
                         break;
                     }
                 }
             }
-            if (saveMove) {
-                _lastFoundMove = bestmove;
+        }
+        if (SearchStats.ENABLED) {
+            _stats.interior(searched, cutoff);
+        }
+        return best;
+    }
+
+    /** Return the value for the side to move of BOARD, a position PLY
+     *  plies from the root, after it moves a queen from the square with
+     *  index FROM to TO, leaving a position whose static value for it is
+     *  STAND, searching HALVES further half-plies with window ALPHA to
+     *  BETA.  This is the spear node of a split-ply search (see split),
+     *  SEARCHED moves having already been searched at its queen node.
+     *  The spears are tried in order of promise; as for pvs, only the
+     *  first move at the queen node gets the full window, and late moves
+     *  are first searched a ply shallower.  If HALVES is 0, the value is
+     *  STAND.  Set _spearsSearched to the number of moves searched, and
+     *  _spearPV[PLY] to the principal variation found, if the value
+     *  exceeds ALPHA.  BOARD is unchanged on return. */
+    private int spears(Board board, int from, int to, int stand,
+                       int halves, int ply, int searched, int alpha,
+                       int beta) {
+        _spearPVLength[ply] = 0;
+        if (halves <= 0) {
+            _spearsSearched = 1;
+            return stand;
+        }
+        Grid grid = board.grid();
+        int m = orderSpears(board, from, to, ply);
+        long[] spears = _spears[ply];
+        int best = -INFTY;
+        int j;
+        for (j = 0; j < m; j += 1) {
+            Move move = Move.mv(grid.sq(from), grid.sq(to),
+                                grid.sq((int) spears[j]));
+            board.makeMove(move);
+            int score;
+            if (searched + j == 0) {
+                score = -split(board, halves - 1, ply + 1, -beta, -alpha);
+            } else {
+                score = alpha + 1;
+                if (halves >= 3 && searched + j >= LMR_MOVES) {
+                    score = -split(board, halves - 3, ply + 1,
+                                   -alpha - 1, -alpha);
+                }
+                if (score > alpha) {
+                    score = -split(board, halves - 1, ply + 1,
+                                   -alpha - 1, -alpha);
+                }
+                if (score > alpha && score < beta) {
+                    score = -split(board, halves - 1, ply + 1,
+                                   -beta, -alpha);
+                }
             }
-            if (bestmove == null) {
-                return -WINNING_VALUE;
+            board.undo();
+            if (stopped()) {
+                break;
             }
-            return bestval;
-        } else {
-            Move bestmove = null;
-            int bestval = INFTY;
-            Iterator<Move> legal = board.legalMoves(BLACK);
-            while (legal.hasNext()) {
-                Move m = legal.next();
-                board.makeMove(m);
-                int respondingScore = findMove(board,
-                        depth - 1, false, 1, alpha, beta);
-                board.undo();
-                if (respondingScore < bestval) {
-                    bestmove = m;
-                    bestval = respondingScore;
-                    alpha = Math.min(alpha, bestval);
-                    if (beta <= alpha) {
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    _spearPV[ply][0] = move;
+                    System.arraycopy(_pv[ply + 1], 0, _spearPV[ply], 1,
+                                     _pvLength[ply + 1]);
+                    _spearPVLength[ply] = _pvLength[ply + 1] + 1;
+                    if (alpha >= beta) {
+                        j += 1;
                         break;
                     }
                 }
             }
-            if (saveMove) {
-                _lastFoundMove = bestmove;
+        }
+        _spearsSearched = j;
+        return best;
+    }
+
+    /** Set the principal variation at PLY (see _pv) to MOVE followed by
+     *  that at PLY + 1. */
+    private void extendPV(int ply, Move move) {
+        _pv[ply][0] = move;
+        System.arraycopy(_pv[ply + 1], 0, _pv[ply], 1, _pvLength[ply + 1]);
+        _pvLength[ply] = _pvLength[ply + 1] + 1;
+    }
+
+    /** Fill _order[PLY] with the queen moves (ignoring spears) available
+     *  to the side to move in BOARD, and return their number.  Each
+     *  element holds, from most to least significant bits, the negated
+     *  static value for the mover of the position after the queen has
+     *  moved (32 bits), and the indices of the from and to squares (16
+     *  bits each), so that the elements are sorted best first.  Queens
+     *  in regions collapsed by fills contribute only their fills.  BOARD
+     *  is unchanged on return. */
+    private int orderQueenMoves(Board board, int ply) {
+        Grid grid = board.grid();
+        Piece side = board.turn();
+        SquareSet mine = board.queens(side);
+        long[] order = _order[ply];
+        int n = 0;
+        int fills = fills(board, ply);
+        for (int i = 0; i < fills; i += 1) {
+            Move fill = _fills[ply][i];
+            board.put(EMPTY, fill.from());
+            board.put(side, fill.to());
+            int stand = value(board, ply);
+            board.put(EMPTY, fill.to());
+            board.put(side, fill.from());
+            order[n] = ((long) -stand << 32)
+                | (fill.from().index() << 16) | fill.to().index();
+            n += 1;
+        }
+        SquareSet tos = _reach;
+        for (int from = mine.next(0); from >= 0; from = mine.next(from + 1)) {
+            if (fill(board, from, ply) >= 0) {
+                continue;
+            }
+            Square fromSq = grid.sq(from);
+            board.reach(from, -1, tos);
+            for (int to = tos.next(0); to >= 0; to = tos.next(to + 1)) {
+                Square toSq = grid.sq(to);
+                board.put(EMPTY, fromSq);
+                board.put(side, toSq);
+                int stand = value(board, ply);
+                board.put(EMPTY, toSq);
+                board.put(side, fromSq);
+                if (n == order.length) {
+                    order = _order[ply] = Arrays.copyOf(order, 2 * n);
+                }
+                order[n] = ((long) -stand << 32) | (from << 16) | to;
+                n += 1;
+            }
+        }
+        Arrays.sort(order, 0, n);
+        return n;
+    }
+
+    /** Fill _spears[PLY] with the indices of the squares at which the
+     *  side to move in BOARD may throw a spear after moving a queen from
+     *  the square with index FROM to the one with index TO, most promising
+     *  first, and return their number.  If the move is a fill (see
+     *  orderQueenMoves), that is just the fill's spear. */
+    private int orderSpears(Board board, int from, int to, int ply) {
+        Grid grid = board.grid();
+        Piece side = board.turn();
+        SquareSet mine = board.queens(side),
+            theirs = board.queens(side.opponent());
+        long[] spears = _spears[ply];
+        int f = fill(board, from, ply);
+        if (f >= 0) {
+            spears[0] = _fills[ply][f].spear().index();
+            return 1;
+        }
+        int n = 0;
+        SquareSet targets = _reach;
+        board.reach(to, from, targets);
+        for (int spear = targets.next(0); spear >= 0;
+             spear = targets.next(spear + 1)) {
+            spears[n] = ((long) -promise(grid, mine, theirs, from, to,
+                                         spear) << 32) | spear;
+            n += 1;
+        }
+        Arrays.sort(spears, 0, n);
+        for (int i = 0; i < n; i += 1) {
+            spears[i] &= 0xffffffffL;
+        }
+        return n;
+    }
+
+    /** Return a measure of the promise of the move from the square with
+     *  index FROM to TO, throwing a spear at SPEAR, for the side whose
+     *  queens are MINE, against an opponent whose queens are THEIRS, on
+     *  GRID: twice the number of the opponent's queens next to SPEAR, less
+     *  the number of the mover's queens (after moving) next to it. */
+    private static int promise(Grid grid, SquareSet mine, SquareSet theirs,
+                               int from, int to, int spear) {
+        SquareSet around = grid.neighbors(spear);
+        int promise = 0;
+        for (int k = theirs.next(0); k >= 0; k = theirs.next(k + 1)) {
+            if (around.contains(k)) {
+                promise += 2;
+            }
+        }
+        for (int k = mine.next(0); k >= 0; k = mine.next(k + 1)) {
+            if (k != from && around.contains(k)) {
+                promise -= 1;
+            }
+        }
+        if (around.contains(to)) {
+            promise -= 1;
+        }
+        return promise;
+    }
+
+    /** Fill _fills[PLY] with one move for each region of BOARD that holds
+     *  queens of the side to move and none of its opponent's, and is small
+     *  enough to solve (see Regions.fill): a move there that leaves as
+     *  many moves as possible in the region.  Set _fillCounts[PLY] to, and
+     *  return, their number.  The opponent can never reach such a region,
+     *  so the other moves in it matter only by how many moves they leave,
+     *  and none leaves more; the search need consider only the fill. */
+    private int fills(Board board, int ply) {
+        Piece side = board.turn();
+        SquareSet mine = board.queens(side);
+        Move[] fills = _fills[ply];
+        Regions regions = null;
+        _fillCounts[ply] = 0;
+        for (int k = mine.next(0); k >= 0; k = mine.next(k + 1)) {
+            int r = board.region(k);
+            if (board.regionOwner(r) != side
+                || board.regionEmpties(r) > solveLimit(ply)
+                || fill(board, k, ply) >= 0) {
+                continue;
+            }
+            if (regions == null) {
+                regions = regions(board, ply);
+            }
+            Move fill = regions.fill(regions.region(k));
+            if (fill != null) {
+                fills[_fillCounts[ply]++] = fill;
+            }
+        }
+        return _fillCounts[ply];
+    }
+
+    /** Return the index in _fills[PLY] of the fill for the region of
+     *  BOARD containing the square with index K, or -1 if there is
+     *  none. */
+    private int fill(Board board, int k, int ply) {
+        int r = board.region(k);
+        for (int i = 0; i < _fillCounts[ply]; i += 1) {
+            if (board.region(_fills[ply][i].from().index()) == r) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Return true iff the legal move M in BOARD is in a region with a
+     *  fill at PLY (see fills), but is not that fill. */
+    private boolean superseded(Board board, Move m, int ply) {
+        int f = fill(board, m.from().index(), ply);
+        return f >= 0 && _fills[ply][f] != m;
+    }
+
+    /** Return the exact value of BOARD, which is PLY plies from the root,
+     *  for the side to move, if its regions are separated and small
+     *  enough to solve (see Regions), and otherwise UNSOLVED.  Each side
+     *  then simply uses up its own regions, so the side to move wins iff
+     *  it has more moves left than its opponent.  If instead exactly one
+     *  region is contested, and it is in the tablebase (see Tablebase),
+     *  the winner is known, but not how long the game will last; the
+     *  value then supposes that all empty squares will be used. */
+    private int solved(Board board, int ply) {
+        int contested = board.contested();
+        if (contested > 1 || (contested == 1 && !inTable(board))) {
+            return UNSOLVED;
+        }
+        Regions regions = regions(board, ply);
+        int mine = regions.moves(board.turn()),
+            theirs = regions.moves(board.turn().opponent());
+        if (mine < 0 || theirs < 0) {
+            return UNSOLVED;
+        } else if (contested == 0) {
+            if (mine > theirs) {
+                return WINNING_VALUE - (ply + 2 * theirs + 1);
+            } else {
+                return -WINNING_VALUE + (ply + 2 * mine);
+            }
+        }
+        int r = 0, empties = 0;
+        while (regions.owner(r) != null) {
+            r += 1;
+        }
+        for (int s = 0; s < regions.count(); s += 1) {
+            empties += regions.empties(s);
+        }
+        int threshold = regions.threshold(r, board.turn(), TABLE);
+        if (threshold == Tablebase.UNKNOWN) {
+            return UNSOLVED;
+        }
+        int spare = sense(board.turn()) * (mine - theirs);
+        if ((spare >= threshold) == (board.turn() == WHITE)) {
+            return WINNING_VALUE - (ply + empties);
+        } else {
+            return -WINNING_VALUE + (ply + empties);
+        }
+    }
+
+    /** Return _regions, updated to describe BOARD, which is PLY plies
+     *  from the root, and limited (see Regions.limit) to solving regions
+     *  as much as is affordable at that ply. */
+    private Regions regions(Board board, int ply) {
+        Regions regions = _regions;
+        if (ply == 0) {
+            regions.limit(Regions.SOLVE_LIMIT, ROOT_SOLVE_NODES, _stopper);
+        } else {
+            regions.limit(SEARCH_SOLVE_LIMIT, SEARCH_SOLVE_NODES, _stopper);
+        }
+        regions.update(board);
+        return regions;
+    }
+
+    /** Return the largest number of empty squares in a region that is
+     *  solved exactly PLY plies from the root. */
+    private static int solveLimit(int ply) {
+        return ply == 0 ? Regions.SOLVE_LIMIT : SEARCH_SOLVE_LIMIT;
+    }
+
+    /** Return true iff the one contested region of BOARD is small enough
+     *  to be in the tablebase, if there is one. */
+    private boolean inTable(Board board) {
+        if (TABLE == null) {
+            return false;
+        }
+        SquareSet whites = board.queens(WHITE);
+        for (int k = whites.next(0); k >= 0; k = whites.next(k + 1)) {
+            int r = board.region(k);
+            if (board.regionOwner(r) == null) {
+                return board.regionEmpties(r) + board.regionQueens(WHITE, r)
+                    + board.regionQueens(BLACK, r) <= TABLE.limit();
+            }
+        }
+        return false;
+    }
+
+    /** Return the best move in BOARD, whose value is known exactly
+     *  (see solved), or null if the values of too few of its successors
+     *  are known to choose one.  If no region is contested, that is the
+     *  fill (see Regions.fill) of any region in which the side to move
+     *  has a move: the regions do not interact, and the fill leaves the
+     *  most moves possible.  Otherwise, each successor is looked up in
+     *  the tablebase.  Successors may have several contested regions, and
+     *  so be unsolved, if BOARD's contested region is split. */
+    private Move solvedMove(Board board) {
+        if (board.contested() == 0) {
+            Regions regions = regions(board, 0);
+            for (int r = 0; r < regions.count(); r += 1) {
+                if (regions.owner(r) == board.turn()) {
+                    Move fill = regions.fill(r);
+                    if (fill != null) {
+                        return fill;
+                    }
+                }
+            }
+            return null;
+        }
+        Move best = null;
+        int bestValue = -INFTY;
+        boolean unknown = false;
+        for (Iterator<Move> legal = board.legalMoves(); legal.hasNext(); ) {
+            Move move = legal.next();
+            board.makeMove(move);
+            int value = solved(board, 1);
+            board.undo();
+            if (value == UNSOLVED) {
+                unknown = true;
+            } else if (-value > bestValue) {
+                best = move;
+                bestValue = -value;
+            }
+        }
+        if (unknown && bestValue < WIN_THRESHOLD) {
+            return null;
+        }
+        return best;
+    }
+
+    /** Return the static value of BOARD, which is PLY plies from the
+     *  root, for the side to move. */
+    private int value(Board board, int ply) {
+        return value(board, ply, -INFTY, INFTY);
+    }
+
+    /** Return the static value of BOARD, which is PLY plies from the
+     *  root, for the side to move, as needed for a search with window
+     *  ALPHA to BETA.  If the estimate of my evaluator is LAZY_MARGIN or
+     *  more outside the window, return it offset by LAZY_MARGIN towards
+     *  the window, as a bound on the value, without computing the full
+     *  static value. */
+    private int value(Board board, int ply, int alpha, int beta) {
+        if (LAZY_MARGIN >= 0 && (alpha > -INFTY || beta < INFTY)
+            && board.winner() == null) {
+            int estimate = _evaluator.estimate(board);
+            if (estimate != Evaluator.NO_ESTIMATE) {
+                estimate *= sense(board.turn());
+                boolean settled = estimate + LAZY_MARGIN <= alpha
+                    || estimate - LAZY_MARGIN >= beta;
+                if (SearchStats.ENABLED) {
+                    _stats.estimate(settled);
+                }
+                if (estimate + LAZY_MARGIN <= alpha) {
+                    return estimate + LAZY_MARGIN;
+                } else if (estimate - LAZY_MARGIN >= beta) {
+                    return estimate - LAZY_MARGIN;
+                }
+            }
+        }
+        int score = sense(board.turn()) * staticScore(board);
+        if (score >= WIN_THRESHOLD) {
+            return score - ply;
+        } else if (score <= -WIN_THRESHOLD) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /** Fill _moves[PLY] with the legal moves in BOARD, and the first
+     *  elements of _order[PLY] with their indices in _moves[PLY] (in the
+     *  low 32 bits of each element), most promising first, and return the
+     *  number of moves.  The killer move for PLY comes first; then come
+     *  the others in decreasing order of promise.  Moves that are equally
+     *  promising keep the order in which legalMoves produces them.  Moves
+     *  superseded by fills are left out. */
+    private int orderMoves(Board board, int ply) {
+        Grid grid = board.grid();
+        Piece side = board.turn();
+        SquareSet mine = board.queens(side),
+            theirs = board.queens(side.opponent());
+        Move killer = _killers[ply];
+        Move[] moves = _moves[ply];
+        long[] order = _order[ply];
+        int n = 0;
+        boolean collapsing = fills(board, ply) > 0;
+        for (Iterator<Move> legal = board.legalMoves(); legal.hasNext(); ) {
+            Move m = legal.next();
+            if (collapsing && superseded(board, m, ply)) {
+                continue;
+            }
+            if (n == moves.length) {
+                moves = _moves[ply] = Arrays.copyOf(moves, 2 * n);
+                order = _order[ply] = Arrays.copyOf(order, 2 * n);
             }
-            if (bestmove == null) {
-                return WINNING_VALUE;
+            int promise;
+            if (m == killer) {
+                promise = Integer.MAX_VALUE;
+            } else {
+                promise = promise(grid, mine, theirs, m.from().index(),
+                                  m.to().index(), m.spear().index());
             }
-            return bestval;
+            moves[n] = m;
+            order[n] = ((long) -promise << 32) | n;
+            n += 1;
         }
+        Arrays.sort(order, 0, n);
+        return n;
+    }
+
+    /** Return 1 if SIDE is white and -1 if it is black. */
+    private static int sense(Piece side) {
+        return side == WHITE ? 1 : -1;
     }
 
     /** Number of moves that can result in the same basket of depth.  */
@@ -138,33 +1240,50 @@ class AI extends Player {
 
     /** Return a heuristic value for BOARD. */
     private int staticScore(Board board) {
+        if (SearchEvents.recording()) {
+            SearchEvents.Evaluation event = new SearchEvents.Evaluation();
+            event.begin();
+            int result = heuristicScore(board);
+            if (event.shouldCommit()) {
+                event.routine = "staticScore";
+                event.ply = board.numMoves();
+                event.commit();
+            }
+            return result;
+        }
+        return heuristicScore(board);
+    }
+
+    /** Return a heuristic value for BOARD: that of my evaluator (see
+     *  Evaluator) unless the game is over, kept in _evalCache if I have
+     *  one. */
+    private int heuristicScore(Board board) {
         Piece winner = board.winner();
         if (winner == BLACK) {
             return -WINNING_VALUE;
         } else if (winner == WHITE) {
             return WINNING_VALUE;
+        } else if (_evalCache == null) {
+            return evaluate(board);
         } else {
-            int positivePoint = 0;
-            int negativePoint = 0;
-            for (Square s : board.get().keySet()) {
-                if (board.get(s) == WHITE) {
-                    Iterator<Square> reachable = board.reachableFrom(s, s);
-                    while (reachable.hasNext()) {
-                        positivePoint++;
-                        reachable.next();
-                    }
-                }
+            long hash = board.hash();
+            int score = _evalCache.get(hash);
+            if (SearchStats.ENABLED) {
+                _stats.cacheProbe(score != EvalCache.MISSING);
             }
-            for (Square s : board.get().keySet()) {
-                if (board.get(s) == BLACK) {
-                    Iterator<Square> reachable = board.reachableFrom(s, s);
-                    while (reachable.hasNext()) {
-                        negativePoint--;
-                        reachable.next();
-                    }
-                }
+            if (score == EvalCache.MISSING) {
+                score = evaluate(board);
+                _evalCache.put(hash, score);
             }
-            return positivePoint + negativePoint;
+            return score;
+        }
+    }
+
+    /** Return the value of my evaluator for BOARD. */
+    private int evaluate(Board board) {
+        if (SearchStats.ENABLED) {
+            _stats.evaluation();
         }
+        return _evaluator.score(board);
     }
 }
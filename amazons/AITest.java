@@ -0,0 +1,97 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static amazons.Piece.*;
+
+/** Tests of the AI's analysis mode and of its moves in solved
+ *  positions.
+ *  @author Wenhan Jin
+ */
+public class AITest {
+
+    @Test
+    public void testAnalyzeOnePly() {
+        Board b = new Board(Layout.standard(6));
+        List<Integer> values = new ArrayList<>();
+        for (Iterator<Move> legal = b.legalMoves(); legal.hasNext(); ) {
+            b.makeMove(legal.next());
+            values.add(Evaluator.create().score(b));
+            b.undo();
+        }
+        values.sort((v0, v1) -> Integer.compare(v1, v0));
+        List<AI.Line> lines = new AI(null, null).analyze(b, 1, 5, null);
+        assertEquals(5, lines.size());
+        for (int i = 0; i < lines.size(); i += 1) {
+            AI.Line line = lines.get(i);
+            assertEquals((int) values.get(i), line.score);
+            assertEquals(List.of(line.move), line.pv);
+            b.makeMove(line.move);
+            assertEquals(line.score, Evaluator.create().score(b));
+            b.undo();
+        }
+    }
+
+    @Test
+    public void testAnalyzeStreams() {
+        Board b = new Board(Layout.standard(6));
+        b.makeMove(b.legalMoves().next());
+        String before = b.toString();
+        List<Integer> depths = new ArrayList<>();
+        List<AI.Line> lines =
+            new AI(null, null).analyze(b, 3, 3, (depth, found) -> {
+                    depths.add(depth);
+                    assertEquals(3, found.size());
+                    for (int i = 1; i < found.size(); i += 1) {
+                        assertTrue(found.get(i - 1).score
+                                   <= found.get(i).score);
+                    }
+                });
+        assertEquals(List.of(1, 2, 3), depths);
+        assertEquals(before, b.toString());
+        assertEquals(3, lines.size());
+        for (AI.Line line : lines) {
+            assertEquals(line.move, line.pv.get(0));
+            assertTrue(line.pv.size() <= 3);
+            for (Move m : line.pv) {
+                assertTrue(b.isLegal(m, null));
+                b.makeMove(m);
+            }
+            for (Move m : line.pv) {
+                b.undo();
+            }
+        }
+        assertEquals(BLACK, b.turn());
+    }
+
+    @Test
+    public void testSeparatedMove() {
+        Board b = Board.parse("1SSS1S2S1/SSBSWSS1S1/1SSSSSS1S1/S2SSSS3/"
+                              + "SS1SSSSSS1/SSSWSSS2B/W2SSSSSSS/S1SS1SS2B/"
+                              + "1W2S1SSBS/SSS2SSS1S w");
+        int moves = new Regions(b).moves(WHITE);
+        for (int depth : new int[] { 1, 3 }) {
+            Move move = new AI(null, null).findMove(b, depth);
+            assertTrue(b.isLegal(move, null));
+            b.makeMove(move);
+            assertEquals(moves - 1, new Regions(b).moves(WHITE));
+            b.undo();
+        }
+    }
+
+    @Test
+    public void testLargeSeparatedRegion() {
+        Board b = Board.parse("S2SS3WS/1B2SSW3/S2S1S2WS/SSSSSS1S2/"
+                              + "1SS1SS4/2B2SSSSS/SSSSSSSS1S/1SBSSSSSS1/"
+                              + "S1SSSSSS1B/SSSSWSSS2 w");
+        for (int depth : new int[] { 1, 2 }) {
+            Move move = new AI(null, null).findMove(b, depth);
+            assertTrue(b.isLegal(move, null));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package amazons;
+
+import static amazons.Piece.*;
+
+/** The first-layer sums of a Network for the position of a Board, kept
+ *  up to date by the Board as its squares change, so that the network
+ *  can evaluate a position without revisiting its squares (see
+ *  Board.accumulator).  Each change of a square subtracts the weights
+ *  of its old piece and adds those of its new one.
+ *  @author Wenhan Jin
+ */
+final class Accumulator {
+
+    /** The sums of NETWORK for a board with contents CONTENTS. */
+    Accumulator(Network network, Piece[] contents) {
+        _network = network;
+        _values = new short[network.hidden()];
+        network.refresh(_values, contents);
+    }
+
+    /** A copy of OTHER. */
+    Accumulator(Accumulator other) {
+        _network = other._network;
+        _values = other._values.clone();
+    }
+
+    /** Return my network. */
+    Network network() {
+        return _network;
+    }
+
+    /** Return my sums.  The array should not be modified. */
+    short[] values() {
+        return _values;
+    }
+
+    /** Update my sums for a change of the square with index K from OLD
+     *  (possibly null, for an uninitialized square) to P. */
+    void changed(int k, Piece old, Piece p) {
+        if (old != null && old != EMPTY) {
+            _network.add(_values, Network.feature(k, old), -1);
+        }
+        if (p != EMPTY) {
+            _network.add(_values, Network.feature(k, p), 1);
+        }
+    }
+
+    /** The network whose sums I hold. */
+    private final Network _network;
+    /** The first-layer sums. */
+    private final short[] _values;
+}
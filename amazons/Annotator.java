@@ -0,0 +1,196 @@
+package amazons;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static amazons.Piece.*;
+
+/** Annotates recorded games, as for
+ *      java amazons.Main --annotate=FILE [--depth=N]
+ *  The input is a game record in the form written by --log: the
+ *  commands "new" (with an optional size and layout), "position
+ *  POSN", and "undo" are replayed as by Controller, moves are
+ *  annotated and played, and other commands are ignored.  Before the
+ *  first move of each game, writes a line "# game K: POSN", where POSN
+ *  is the starting position (see Board.position).  For each move, writes
+ *  a line holding, separated by tabs, the ply number, the move, its
+ *  value for white, the best move found by an AI search to the given
+ *  depth, the value of that move for white, and the loss to the side
+ *  that moved (the difference between the two values, from its point of
+ *  view).  The line ends with a tab and "??" if the loss is at least
+ *  BLUNDER.  The value of the move played is found by a search one ply
+ *  shallower from the resulting position, so the two values are
+ *  comparable.  A move that cannot be played in the current position
+ *  or any other command that
+ *  fails gives a line "# error: MESSAGE" and is otherwise ignored.
+ *
+ *  The positions are replayed on one board as the input is read.  The
+ *  searches of each move are submitted to a fork-join pool on a copy of
+ *  its board, and their results are written in input order as they
+ *  complete, so that at most WINDOW moves per pool thread are pending at
+ *  any time.  Each worker thread has its own evaluator and AI.
+ *  @author Wenhan Jin
+ */
+final class Annotator {
+
+    /** Default search depth. */
+    static final int DEPTH = 3;
+    /** Least loss marked as a blunder, as given by the property
+     *  amazons.blunder. */
+    static final int BLUNDER = Integer.getInteger("amazons.blunder", 30);
+    /** Number of moves per pool thread that may be awaiting annotation. */
+    static final int WINDOW = 4;
+
+    /** An annotator that searches each position to DEPTH plies, using the
+     *  threads of POOL. */
+    Annotator(int depth, ForkJoinPool pool) {
+        if (depth <= 0) {
+            throw Utils.error("search depth must be positive");
+        }
+        _depth = depth;
+        _pool = pool;
+    }
+
+    /** Annotate the game record on the lines of IN, writing the results
+     *  to OUT as described above, and return the number of moves
+     *  annotated. */
+    long run(BufferedReader in, PrintStream out) throws IOException {
+        Deque<Future<String>> pending = new ArrayDeque<>();
+        int window = WINDOW * _pool.getParallelism();
+        Board board = new Board();
+        boolean started = false;
+        long count = 0;
+        int games = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            String cmnd = line.replaceFirst("#.*", "").trim().toLowerCase();
+            try {
+                if (_new.reset(cmnd).matches()) {
+                    board = newBoard(board, _new);
+                    started = false;
+                } else if (_position.reset(cmnd).matches()) {
+                    board = Board.parse(_position.group(1));
+                    started = false;
+                } else if (cmnd.equals("undo")) {
+                    board.undo();
+                } else if (Move.isGrammaticalMove(cmnd)) {
+                    Move move = move(cmnd, board);
+                    if (!started) {
+                        games += 1;
+                        pending.add(CompletableFuture.completedFuture(
+                                        String.format("# game %d: %s", games,
+                                                      board.position())));
+                        started = true;
+                    }
+                    Board before = new Board(board);
+                    int ply = board.numMoves() + 1;
+                    pending.add(_pool.submit(() -> annotate(before, move,
+                                                            ply)));
+                    board.makeMove(move);
+                    count += 1;
+                }
+            } catch (IllegalArgumentException excp) {
+                pending.add(CompletableFuture.completedFuture(
+                                "# error: " + excp.getMessage()));
+            }
+            while (pending.size() > window) {
+                out.println(result(pending.remove()));
+            }
+        }
+        while (!pending.isEmpty()) {
+            out.println(result(pending.remove()));
+        }
+        out.flush();
+        return count;
+    }
+
+    /** Return the annotation line (see above) for MOVE, the PLYth move
+     *  of a game, played in position BEFORE, which is modified. */
+    String annotate(Board before, Move move, int ply) {
+        int sign = before.turn() == WHITE ? 1 : -1;
+        AI.Line best = SEARCHER.get().analyze(before, _depth, 1, null).get(0);
+        int value;
+        if (move == best.move) {
+            value = best.score;
+        } else {
+            before.makeMove(move);
+            if (before.winner() != null) {
+                value = best.score;
+            } else if (_depth == 1) {
+                value = EVALUATOR.get().score(before);
+            } else {
+                value = SEARCHER.get()
+                    .analyze(before, _depth - 1, 1, null).get(0).score;
+            }
+        }
+        int loss = Math.max(0, sign * (best.score - value));
+        return String.format("%d\t%s\t%d\t%s\t%d\t%d%s", ply, move, value,
+                             best.move, best.score, loss,
+                             loss >= BLUNDER ? "\t??" : "");
+    }
+
+    /** Return BOARD reset to its starting position, or a new board, as
+     *  directed by NEWCMND, a successful match of the "new" command. */
+    private static Board newBoard(Board board, Matcher newCmnd) {
+        if (newCmnd.group(1) == null) {
+            board.init();
+            return board;
+        }
+        int size = Integer.parseInt(newCmnd.group(1));
+        if (newCmnd.group(2) == null) {
+            return new Board(Layout.standard(size));
+        }
+        return new Board(Layout.parse(size, newCmnd.group(2)));
+    }
+
+    /** Return the move denoted by STR, which must be legal on BOARD. */
+    private static Move move(String str, Board board) {
+        Move move = Move.mv(str, board.grid());
+        if (move == null || board.winner() != null
+            || !board.isLegal(move, null)) {
+            throw Utils.error("illegal move %s", str);
+        }
+        return move;
+    }
+
+    /** Return the line computed by RESULT, waiting for it if needed. */
+    private static String result(Future<String> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException excp) {
+            throw new IllegalStateException("annotation interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new IllegalStateException(excp.getCause());
+        }
+    }
+
+    /** The evaluator of each worker thread. */
+    private static final ThreadLocal<Evaluator> EVALUATOR =
+        ThreadLocal.withInitial(Evaluator::create);
+    /** The AI of each worker thread. */
+    private static final ThreadLocal<AI> SEARCHER =
+        ThreadLocal.withInitial(() -> new AI(null, null));
+
+    /** Matches the "new" command, as for Controller. */
+    private final Matcher _new =
+        Pattern.compile("new(?:\\s+(\\d+)(?:\\s+(\\S+))?)?$").matcher("");
+    /** Matches the "position" command with an argument. */
+    private final Matcher _position =
+        Pattern.compile("position\\s+(\\S+\\s+[wb])$").matcher("");
+    /** Search depth. */
+    private final int _depth;
+    /** The pool running the searches. */
+    private final ForkJoinPool _pool;
+}
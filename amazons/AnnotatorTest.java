@@ -0,0 +1,87 @@
+package amazons;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the game annotator.
+ *  @author Wenhan Jin
+ */
+public class AnnotatorTest {
+
+    @Test
+    public void testRun() throws IOException {
+        Random random = new Random(45);
+        StringBuilder record = new StringBuilder();
+        List<Board> positions = new ArrayList<>();
+        List<Move> played = new ArrayList<>();
+        List<String> starts = new ArrayList<>();
+        for (int game = 0; game < 2; game += 1) {
+            record.append("new 6\nauto white\n");
+            Board b = new Board(Layout.standard(6));
+            starts.add(b.position());
+            while (b.winner() == null) {
+                List<Move> moves = new ArrayList<>();
+                b.legalMoves().forEachRemaining(moves::add);
+                Move move = moves.get(random.nextInt(moves.size()));
+                if (b.numMoves() == 3) {
+                    record.append("a1-a1(a1)\n");
+                    record.append(move).append("\nundo\n");
+                    positions.add(new Board(b));
+                    played.add(move);
+                }
+                record.append(move).append("  # comment\n");
+                positions.add(new Board(b));
+                played.add(move);
+                b.makeMove(move);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long count =
+            new Annotator(2, new ForkJoinPool(4))
+            .run(new BufferedReader(new StringReader(record.toString())),
+                 new PrintStream(bytes, true));
+        assertEquals(positions.size(), count);
+
+        List<String> games = new ArrayList<>();
+        int k = 0, errors = 0;
+        for (String result : bytes.toString().split("\n")) {
+            if (result.startsWith("# game ")) {
+                games.add(result);
+                continue;
+            } else if (result.startsWith("# error: ")) {
+                errors += 1;
+                continue;
+            }
+            Board b = positions.get(k);
+            String[] fields = result.split("\t");
+            assertEquals(b.numMoves() + 1, Integer.parseInt(fields[0]));
+            assertEquals(played.get(k).toString(), fields[1]);
+            assertTrue(b.isLegal(Move.mv(fields[3], b.grid()), null));
+            int value = Integer.parseInt(fields[2]),
+                bestValue = Integer.parseInt(fields[4]),
+                loss = Integer.parseInt(fields[5]);
+            int sign = b.turn() == Piece.WHITE ? 1 : -1;
+            assertEquals(Math.max(0, sign * (bestValue - value)), loss);
+            assertEquals(loss >= Annotator.BLUNDER, fields.length == 7);
+            if (fields[1].equals(fields[3])) {
+                assertEquals(0, loss);
+            }
+            k += 1;
+        }
+        assertEquals(positions.size(), k);
+        assertEquals(2, errors);
+        assertEquals(List.of("# game 1: " + starts.get(0),
+                             "# game 2: " + starts.get(1)), games);
+    }
+}
@@ -0,0 +1,142 @@
+package amazons;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Scores a stream of positions, one per line in the format of
+ *  Board.position, as for
+ *      java amazons.Main --evaluate=FILE [--depth=N]
+ *  For each position, writes a line holding the position as given, a
+ *  tab, and its static value for white (see Evaluator), followed, if
+ *  the search depth is positive, by a tab, the move an AI chooses
+ *  searching to that depth, a tab, and the AI's value of that move for
+ *  white.  For a finished game, the values are replaced by the winner
+ *  (W or B), and for a line that is not a valid position, by "error:"
+ *  and a message.  Blank lines and lines starting with '#' are copied
+ *  unchanged.
+ *
+ *  Positions are read in batches of BATCH, scored in parallel by
+ *  fork-join tasks that split each batch down to GRAIN positions, and
+ *  written in their input order before the next batch is read, so any
+ *  number of positions can be processed in bounded memory.  Each
+ *  worker thread has its own evaluator and AI.
+ *  @author Wenhan Jin
+ */
+final class BatchEvaluator {
+
+    /** Number of positions read at a time. */
+    static final int BATCH = 1 << 14;
+    /** Largest number of positions scored by one task without
+     *  splitting. */
+    static final int GRAIN = 32;
+
+    /** An evaluator that scores positions statically and, if DEPTH is
+     *  positive, by an AI search to DEPTH plies, using the tasks of
+     *  POOL. */
+    BatchEvaluator(int depth, ForkJoinPool pool) {
+        if (depth < 0) {
+            throw Utils.error("search depth must not be negative");
+        }
+        _depth = depth;
+        _pool = pool;
+    }
+
+    /** Score the positions on the lines of IN, writing the results to
+     *  OUT as described above, and return the number of positions. */
+    long run(BufferedReader in, PrintStream out) throws IOException {
+        long count = 0;
+        List<String> lines = new ArrayList<>(BATCH);
+        while (true) {
+            lines.clear();
+            String line;
+            while (lines.size() < BATCH && (line = in.readLine()) != null) {
+                lines.add(line);
+            }
+            if (lines.isEmpty()) {
+                break;
+            }
+            String[] results = new String[lines.size()];
+            _pool.invoke(new Task(lines, results, 0, results.length));
+            for (String result : results) {
+                out.println(result);
+            }
+            count += results.length;
+        }
+        out.flush();
+        return count;
+    }
+
+    /** Return the output line (see above) for the input line LINE. */
+    String evaluate(String line) {
+        String posn = line.trim();
+        if (posn.isEmpty() || posn.startsWith("#")) {
+            return line;
+        }
+        Board board;
+        try {
+            board = Board.parse(posn);
+        } catch (IllegalArgumentException excp) {
+            return String.format("%s\terror: %s", posn, excp.getMessage());
+        }
+        Piece winner = board.winner();
+        if (winner != null) {
+            return String.format("%s\t%s", posn, winner);
+        }
+        int value = EVALUATOR.get().score(board);
+        if (_depth == 0) {
+            return String.format("%s\t%d", posn, value);
+        }
+        AI.Line best = SEARCHER.get().analyze(board, _depth, 1, null).get(0);
+        return String.format("%s\t%d\t%s\t%d", posn, value, best.move,
+                             best.score);
+    }
+
+    /** Scores lines [LO .. HI) of a batch. */
+    private class Task extends RecursiveAction {
+        /** A task filling elements LO to HI - 1 of RESULTS with the output
+         *  lines for the corresponding elements of LINES. */
+        Task(List<String> lines, String[] results, int lo, int hi) {
+            _lines = lines;
+            _results = results;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo <= GRAIN) {
+                for (int i = _lo; i < _hi; i += 1) {
+                    _results[i] = evaluate(_lines.get(i));
+                }
+            } else {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Task(_lines, _results, _lo, mid),
+                          new Task(_lines, _results, mid, _hi));
+            }
+        }
+
+        /** The input lines of the batch. */
+        private final List<String> _lines;
+        /** The output lines of the batch. */
+        private final String[] _results;
+        /** The range of lines scored. */
+        private final int _lo, _hi;
+    }
+
+    /** The evaluator of each worker thread. */
+    private static final ThreadLocal<Evaluator> EVALUATOR =
+        ThreadLocal.withInitial(Evaluator::create);
+    /** The AI of each worker thread. */
+    private static final ThreadLocal<AI> SEARCHER =
+        ThreadLocal.withInitial(() -> new AI(null, null));
+
+    /** Search depth, or 0 for static values only. */
+    private final int _depth;
+    /** The pool running the tasks. */
+    private final ForkJoinPool _pool;
+}
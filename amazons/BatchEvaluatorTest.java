@@ -0,0 +1,78 @@
+package amazons;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of batch evaluation of position files.
+ *  @author Wenhan Jin
+ */
+public class BatchEvaluatorTest {
+
+    @Test
+    public void testRun() throws IOException {
+        Random random = new Random(44);
+        List<String> lines = new ArrayList<>();
+        lines.add("# positions");
+        lines.add("");
+        lines.add("3B2B3/10 w");
+        for (int game = 0; lines.size() < 3 * BatchEvaluator.GRAIN;
+             game += 1) {
+            Board b = new Board(Layout.standard(6));
+            while (b.winner() == null) {
+                lines.add(b.position());
+                List<Move> moves = new ArrayList<>();
+                b.legalMoves().forEachRemaining(moves::add);
+                b.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            lines.add(b.position());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BatchEvaluator evaluator =
+            new BatchEvaluator(0, new ForkJoinPool(4));
+        long count =
+            evaluator.run(new BufferedReader(new StringReader(
+                              String.join("\n", lines))),
+                          new PrintStream(bytes, true));
+        String[] results = bytes.toString().split("\n", -1);
+        assertEquals(lines.size(), count);
+        assertEquals(lines.size() + 1, results.length);
+
+        assertEquals("# positions", results[0]);
+        assertEquals("", results[1]);
+        assertTrue(results[2].startsWith("3B2B3/10 w\terror: "));
+        Evaluator eval = Evaluator.create();
+        for (int i = 3; i < lines.size(); i += 1) {
+            String[] fields = results[i].split("\t");
+            assertEquals(lines.get(i), fields[0]);
+            assertEquals(2, fields.length);
+            Board b = Board.parse(lines.get(i));
+            if (b.winner() != null) {
+                assertEquals(b.winner().toString(), fields[1]);
+            } else {
+                assertEquals(eval.score(b), Integer.parseInt(fields[1]));
+            }
+        }
+    }
+
+    @Test
+    public void testSearch() {
+        Board b = new Board(Layout.standard(6));
+        String[] fields =
+            new BatchEvaluator(2, ForkJoinPool.commonPool())
+            .evaluate(b.position()).split("\t");
+        assertEquals(4, fields.length);
+        assertEquals(b.position(), fields[0]);
+        assertTrue(b.isLegal(Move.mv(fields[2], b.grid()), null));
+    }
+}
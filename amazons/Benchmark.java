@@ -0,0 +1,158 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/** Benchmarks of the AI's search and evaluators.  Run as
+ *      java amazons.Benchmark [DEPTH [SIZE]]
+ *  (or 'make bench').  Searches a fixed set of positions, reached by
+ *  pseudo-random play from the standard layout on a SIZExSIZE board
+ *  (default 10), to DEPTH plies (default 3), once with the fused search
+ *  and once in split-ply mode (after a shallower search of each to warm
+ *  up the JIT compiler), and reports the positions visited, time
+ *  taken, and moves chosen by each.  Setting the system properties
+ *  amazons.moveCaps and amazons.queenCaps to empty strings compares
+ *  the two without their move caps.  Run as
+ *      java --add-modules jdk.incubator.vector amazons.Benchmark eval [SIZE]
+ *  (or 'make bench-eval'), it instead times the evaluators on every
+ *  position one move from those positions: mobility, territory using
+ *  scalar operations, and territory using vector operations (if the
+ *  module is present), checking that the two territory evaluators
+ *  agree, and the network of amazons.network, if set (whose accumulators
+ *  are filled in the first, untimed pass, so that only the cost of
+ *  evaluating from them is timed).
+ *  @author Wenhan Jin
+ */
+public class Benchmark {
+
+    /** Numbers of random moves played to reach the positions searched. */
+    private static final int[] PLIES = { 10, 20, 30, 40, 50, 60 };
+
+    /** Seed for the random moves. */
+    private static final long SEED = 61;
+
+    /** Run the benchmark as described above, with ARGS giving DEPTH and
+     *  SIZE. */
+    public static void main(String... args) {
+        if (args.length > 0 && args[0].equals("eval")) {
+            evaluators(args.length > 1 ? Integer.parseInt(args[1])
+                       : Board.SIZE);
+            return;
+        }
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : Board.SIZE;
+        List<Board> positions = positions(Layout.standard(size));
+        for (Board b : positions) {
+            new AI(null, null, false).findMove(b, 2);
+            new AI(null, null, true).findMove(b, 2);
+        }
+
+        System.out.printf("Depth %d on %s boards%n", depth,
+                          Grid.of(size));
+        System.out.printf("%6s  %-18s %10s %8s  %-18s %10s %8s%n",
+                          "ply", "fused", "nodes", "ms",
+                          "split", "nodes", "ms");
+        long[] totalNodes = new long[2], totalNanos = new long[2];
+        for (Board b : positions) {
+            System.out.printf("%6d", b.numMoves());
+            for (int mode = 0; mode < 2; mode += 1) {
+                AI ai = new AI(null, null, mode == 1);
+                long start = System.nanoTime();
+                Move move = ai.findMove(b, depth);
+                long nanos = System.nanoTime() - start;
+                totalNodes[mode] += ai.nodes();
+                totalNanos[mode] += nanos;
+                System.out.printf("  %-18s %10d %8d", move, ai.nodes(),
+                                  nanos / 1000000);
+            }
+            System.out.println();
+        }
+        System.out.printf("%6s  %-18s %10d %8d  %-18s %10d %8d%n", "total",
+                          "", totalNodes[0], totalNanos[0] / 1000000,
+                          "", totalNodes[1], totalNanos[1] / 1000000);
+    }
+
+    /** Number of times evaluators evaluates each position. */
+    private static final int EVAL_ROUNDS = 20;
+
+    /** Time the evaluators as described above on SIZExSIZE boards. */
+    private static void evaluators(int size) {
+        List<Board> leaves = new ArrayList<>();
+        for (Board b : positions(Layout.standard(size))) {
+            for (Iterator<Move> legal = b.legalMoves(); legal.hasNext(); ) {
+                Board leaf = new Board(b);
+                leaf.makeMove(legal.next());
+                if (leaf.winner() == null) {
+                    leaves.add(leaf);
+                }
+            }
+        }
+        Territory vector = Territory.create();
+        List<Evaluator> evaluators = new ArrayList<>();
+        evaluators.add(Evaluator.MOBILITY);
+        evaluators.add(new Territory());
+        if (vector.getClass() != Territory.class) {
+            evaluators.add(vector);
+        }
+        if (System.getProperty("amazons.network") != null) {
+            evaluators.add(Network.selected().evaluator());
+        }
+        System.out.printf("%d positions on %s boards%n", leaves.size(),
+                          Grid.of(size));
+        for (int pass = 0; pass < 2; pass += 1) {
+            long scalarTotal = 0;
+            for (Evaluator eval : evaluators) {
+                long total = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < EVAL_ROUNDS; i += 1) {
+                    for (Board b : leaves) {
+                        total += eval.score(b);
+                    }
+                }
+                long nanos = System.nanoTime() - start;
+                String name = eval.name()
+                    + (eval instanceof VectorTerritory ? " (vector)"
+                       : eval instanceof Territory ? " (scalar)" : "");
+                if (pass == 1) {
+                    System.out.printf("  %-22s %8.0f ns/position%n", name,
+                                      (double) nanos / EVAL_ROUNDS
+                                      / leaves.size());
+                }
+                if (eval.getClass() == Territory.class) {
+                    scalarTotal = total;
+                } else if (eval instanceof Territory && total != scalarTotal) {
+                    System.out.printf("  %s disagrees with scalar territory%n",
+                                      name);
+                }
+            }
+        }
+        if (vector.getClass() == Territory.class) {
+            System.out.println("  (vector evaluator unavailable: run java "
+                               + "with --add-modules jdk.incubator.vector)");
+        }
+    }
+
+    /** Return the positions reached from LAYOUT by playing each number
+     *  of moves in PLIES at random (fewer if the game ends first). */
+    private static List<Board> positions(Layout layout) {
+        List<Board> result = new ArrayList<>();
+        Random random = new Random(SEED);
+        for (int plies : PLIES) {
+            Board b = new Board(layout);
+            for (int i = 0; i < plies && b.winner() == null; i += 1) {
+                List<Move> moves = new ArrayList<>();
+                for (Iterator<Move> legal = b.legalMoves();
+                     legal.hasNext(); ) {
+                    moves.add(legal.next());
+                }
+                b.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            if (b.winner() == null) {
+                result.add(b);
+            }
+        }
+        return result;
+    }
+}
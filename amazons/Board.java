@@ -1,38 +1,44 @@
 package amazons;
 
-import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 import static amazons.Piece.WHITE;
 import static amazons.Piece.BLACK;
 import static amazons.Piece.EMPTY;
 import static amazons.Piece.SPEAR;
 import static amazons.Move.mv;
+import static amazons.Utils.error;
 
 
-/** The state of an Amazons Game.
+/** The state of an Amazons Game.  A board has a size (squares on a side)
+ *  and a starting Layout, fixed when it is created; the default is the
+ *  standard 10x10 board.  Contents are kept both in an array indexed by
+ *  Square index and in SquareSets of the empty squares and of each
+ *  side's queens, whose representation is specialized to the board's
+ *  size.  The board also keeps, for each side, the number of its queens
+ *  that can reach each square and the total of those numbers, updating
+ *  only the rays through each square that changes.
  *  @author Wenhan Jin
  */
 class Board {
 
-    /** The number of squares on a side of the board. */
+    /** The number of squares on a side of the standard board. */
     static final int SIZE = 10;
 
-    /** Board is represented by a Hashmap with square as key
-     * and piece as item. */
-    private HashMap<Square, Piece> board = new HashMap<>();
-
-    /** numMove keeps track of the number of move of this board. */
-    private int numMove = 0;
-
-    /** moveRecord keeps track of the moves of this board. */
-    private ArrayList<Square[]> moverecord = new ArrayList<>();
-
-    /** Initializes a game board with SIZE squares on a side in the
-     *  initial position. */
+    /** Initializes a standard game board with SIZE squares on a side in
+     *  the initial position. */
     Board() {
+        this(Layout.STANDARD);
+    }
+
+    /** Initializes a game board in the initial position described by
+     *  LAYOUT. */
+    Board(Layout layout) {
+        setLayout(layout);
         init();
     }
 
@@ -43,86 +49,274 @@ class Board {
 
     /** Copies MODEL into me. */
     void copy(Board model) {
-        board = new HashMap<>();
-        for (Square key : model.board.keySet()) {
-            Piece piece = model.board.get(key);
-            board.put(key, piece);
+        if (_grid != model._grid) {
+            setLayout(model._layout);
         }
+        _layout = model._layout;
+        System.arraycopy(model._contents, 0, _contents, 0, _contents.length);
+        _empty.copy(model._empty);
+        _queens[0].copy(model._queens[0]);
+        _queens[1].copy(model._queens[1]);
+        System.arraycopy(model._hashes, 0, _hashes, 0, _hashes.length);
+        for (int i = 0; i < 2; i += 1) {
+            System.arraycopy(model._attacks[i], 0, _attacks[i], 0,
+                             _attacks[i].length);
+        }
+        _mobility[0] = model._mobility[0];
+        _mobility[1] = model._mobility[1];
+        _regions.copy(model._regions);
+        _accumulator = model._accumulator == null ? null
+            : new Accumulator(model._accumulator);
         _turn = model._turn;
-        numMove = model.numMove;
-        moverecord = model.moverecord;
-        _winner = model._winner;
-    }
-    /** W1 coord. */
-    static final int W1 = 3;
-    /** W2 coord. */
-    static final int W2 = 6;
-    /** W3 coord. */
-    static final int W3 = 30;
-    /** W4 coord. */
-    static final int W4 = 39;
-    /** B1 coord. */
-    static final int B1 = 60;
-    /** B2 coord. */
-    static final int B2 = 69;
-    /** B3 coord. */
-    static final int B3 = 93;
-    /** B4 coord. */
-    static final int B4 = 96;
+        moverecord = new ArrayList<>(model.moverecord);
+    }
+
+    /** Set my geometry and starting position according to LAYOUT,
+     *  allocating my representation. */
+    private void setLayout(Layout layout) {
+        _layout = layout;
+        _grid = layout.grid();
+        _contents = new Piece[_grid.count()];
+        _empty = _grid.newSet();
+        _queens = new SquareSet[] { _grid.newSet(), _grid.newSet() };
+        _origin = _grid.newSet();
+        _open = _grid.newSet();
+        _frontier = _grid.newSet();
+        _hashes = new long[Grid.SYMMETRIES];
+        _attacks = new int[2][_grid.count()];
+        _mobility = new int[2];
+        _regions = new RegionTracker(_grid, _contents);
+        _accumulator = null;
+    }
 
     /** Clears the board to the initial position. */
     void init() {
-        for (int i = 0; i < SIZE * SIZE; i++) {
-            if (i == W1 || i == W2 || i == W3 || i == W4) {
-                board.put(Square.sq(i), WHITE);
-            } else if (i == B1 || i == B2 || i == B3 || i == B4) {
-                board.put(Square.sq(i), BLACK);
-            } else {
-                board.put(Square.sq(i), EMPTY);
-            }
+        for (int k = 0; k < _contents.length; k += 1) {
+            put(EMPTY, k);
+        }
+        for (Square s : _layout.queens(WHITE)) {
+            put(WHITE, s);
+        }
+        for (Square s : _layout.queens(BLACK)) {
+            put(BLACK, s);
         }
         _turn = WHITE;
-        numMove = 0;
-        _winner = EMPTY;
         moverecord = new ArrayList<>();
     }
 
+    /** Return the starting layout of this board. */
+    Layout layout() {
+        return _layout;
+    }
+
+    /** Return the geometry of this board. */
+    Grid grid() {
+        return _grid;
+    }
+
+    /** Return the number of squares on a side of this board. */
+    int size() {
+        return _grid.size();
+    }
+
     /** Return the Piece whose move it is (WHITE or BLACK). */
     Piece turn() {
         return _turn;
     }
 
+    /** Make it SIDE's turn to move. */
+    void setTurn(Piece side) {
+        _turn = side;
+    }
+
+    /** Fill CONTENTS, which must have one element per Square, with the
+     *  ordinals of the Pieces on each Square, indexed by Square index. */
+    void snapshot(byte[] contents) {
+        for (int k = 0; k < contents.length; k += 1) {
+            contents[k] = (byte) _contents[k].ordinal();
+        }
+    }
+
+    /** Return a 64-bit hash of the current position (contents and side
+     *  to move).  It is maintained incrementally as pieces are placed and
+     *  removed, and uses keys that are the same in every run, so it may
+     *  be stored. */
+    long hash() {
+        return _hashes[0] ^ (_turn == BLACK ? _grid.blackToMoveKey() : 0);
+    }
+
+    /** Return the hash of the position obtained by applying symmetry T
+     *  (as for Grid.transform) to the current position. */
+    long hash(int t) {
+        return _hashes[t] ^ (_turn == BLACK ? _grid.blackToMoveKey() : 0);
+    }
+
+    /** Return a hash of the current position that is the same for all
+     *  eight positions related to it by reflections and rotations of the
+     *  board (the least of their hashes).  Caches keyed by it hold one
+     *  entry for all of them; canonicalSymmetry tells how to translate
+     *  moves to and from the common form. */
+    long canonicalHash() {
+        return hash(canonicalSymmetry());
+    }
+
+    /** Return the value canonicalHash() would have after the legal move
+     *  MOVE, without making it. */
+    long canonicalHash(Move move) {
+        int from = move.from().index(), to = move.to().index(),
+            spear = move.spear().index();
+        Piece queen = _contents[from];
+        long result = Long.MAX_VALUE;
+        for (int t = 0; t < Grid.SYMMETRIES; t += 1) {
+            long h = _hashes[t] ^ _grid.key(_grid.transform(t, from), queen)
+                ^ _grid.key(_grid.transform(t, to), queen)
+                ^ _grid.key(_grid.transform(t, spear), SPEAR);
+            result = Math.min(result, h);
+        }
+        return result ^ (_turn == WHITE ? _grid.blackToMoveKey() : 0);
+    }
+
+    /** Return a symmetry T such that hash(T) == canonicalHash().  Applying
+     *  T to a move in the current position gives the corresponding move in
+     *  the canonical position, and applying _grid.inverse(T) translates
+     *  back. */
+    int canonicalSymmetry() {
+        int best = 0;
+        for (int t = 1; t < Grid.SYMMETRIES; t += 1) {
+            if (_hashes[t] < _hashes[best]) {
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    /** Return the label of the region containing the square with index
+     *  K, or -1 if K holds a spear.  Regions are the groups of squares
+     *  without spears that are connected in all eight directions; they
+     *  are maintained as pieces are placed and removed.  Labels are small
+     *  non-negative integers, and are valid until the board next
+     *  changes. */
+    int region(int k) {
+        return _regions.label(k);
+    }
+
+    /** Return the number of empty squares in the region labeled R. */
+    int regionEmpties(int r) {
+        return _regions.empties(r);
+    }
+
+    /** Return the number of SIDE's queens in the region labeled R. */
+    int regionQueens(Piece side, int r) {
+        return _regions.queens(side, r);
+    }
+
+    /** Return the side whose queens are in the region labeled R, EMPTY if
+     *  there are none, or null if there are queens of both sides there. */
+    Piece regionOwner(int r) {
+        int whites = _regions.queens(WHITE, r),
+            blacks = _regions.queens(BLACK, r);
+        if (whites > 0 && blacks > 0) {
+            return null;
+        } else if (whites > 0) {
+            return WHITE;
+        } else if (blacks > 0) {
+            return BLACK;
+        } else {
+            return EMPTY;
+        }
+    }
+
+    /** Return true iff no region holds queens of both sides, so that
+     *  neither side can interfere with the other's moves any longer. */
+    boolean separated() {
+        return _regions.contested() == 0;
+    }
+
+    /** Return the first-layer sums of NETWORK for my position, which I
+     *  keep up to date as my squares change from now on, until I am asked
+     *  for those of a different network.  NETWORK must be for boards of
+     *  my size. */
+    Accumulator accumulator(Network network) {
+        if (_accumulator == null || _accumulator.network() != network) {
+            if (network.grid() != _grid) {
+                throw error("network is for %s boards", network.grid());
+            }
+            _accumulator = new Accumulator(network, _contents);
+        }
+        return _accumulator;
+    }
+
+    /** Return the number of regions that hold queens of both sides. */
+    int contested() {
+        return _regions.contested();
+    }
+
     /** Return the number of moves (that have not been undone) for this
      *  board. */
     int numMoves() {
-        return numMove;
+        return moverecord.size();
     }
 
     /** Return the winner in the current position, or null if the game is
      *  not yet finished. */
     Piece winner() {
-        Iterator<Move> legal = legalMoves(_turn);
-        if (!legal.hasNext()) {
-            return _turn.opponent();
-        } else {
+        if (SearchEvents.recording()) {
+            SearchEvents.Evaluation event = new SearchEvents.Evaluation();
+            event.begin();
+            Piece result = findWinner();
+            if (event.shouldCommit()) {
+                event.routine = "winner";
+                event.ply = numMoves();
+                event.commit();
+            }
+            return result;
+        }
+        return findWinner();
+    }
+
+    /** Return the winner in the current position, or null if the game is
+     *  not yet finished, computing it from scratch. */
+    private Piece findWinner() {
+        if (hasMove(_turn)) {
             return null;
+        } else {
+            return _turn.opponent();
         }
     }
 
-    /** Return the hashmap of this board. */
-    final HashMap<Square, Piece> get() {
-        return board;
+    /** Return true iff SIDE has a legal move.  A queen that can move at
+     *  all can always throw its spear back to where it came from, so this
+     *  is just a test of SIDE's mobility. */
+    boolean hasMove(Piece side) {
+        return _mobility[side(side)] > 0;
+    }
+
+    /** Return the set of squares occupied by queens of SIDE.  The value
+     *  returned should not be modified by the caller. */
+    SquareSet queens(Piece side) {
+        return _queens[side(side)];
+    }
+
+    /** Return the set of empty squares.  The value returned should not be
+     *  modified by the caller. */
+    SquareSet empty() {
+        return _empty;
     }
 
     /** Return the contents the square at S. */
     final Piece get(Square s) {
-        return board.get(s);
+        return _contents[s.index()];
+    }
+
+    /** Return the contents of the square with index K. */
+    final Piece get(int k) {
+        return _contents[k];
     }
 
     /** Return the contents of the square at (COL, ROW), where
-     *  0 <= COL, ROW <= 9. */
+     *  0 <= COL, ROW < size(). */
     final Piece get(int col, int row) {
-        return get(Square.sq(col, row));
+        return get(_grid.sq(col, row));
     }
 
     /** Return the contents of the square at COL ROW. */
@@ -132,13 +326,12 @@ class Board {
 
     /** Set square S to P. */
     final void put(Piece p, Square s) {
-        board.put(s, p);
+        put(p, s.index());
     }
 
     /** Set square (COL, ROW) to P. */
     final void put(Piece p, int col, int row) {
-        put(p, Square.sq(col, row));
-        _winner = EMPTY;
+        put(p, _grid.sq(col, row));
     }
 
     /** Set square COL ROW to P. */
@@ -146,32 +339,68 @@ class Board {
         put(p, col - 'a', row - '1');
     }
 
+    /** Set the square with index K to P. */
+    private void put(Piece p, int k) {
+        Piece old = _contents[k];
+        boolean wasQueen = old == WHITE || old == BLACK,
+            isQueen = p == WHITE || p == BLACK,
+            opened = (old == EMPTY) != (p == EMPTY);
+        if (wasQueen || isQueen || opened) {
+            findRuns(k);
+            if (wasQueen) {
+                attack(k, side(old), -1);
+            }
+            if (opened) {
+                reopen(k, p == EMPTY ? 1 : -1);
+            }
+            if (isQueen) {
+                attack(k, side(p), 1);
+            }
+        }
+        if (old == WHITE || old == BLACK) {
+            _queens[side(old)].remove(k);
+        } else if (old == EMPTY) {
+            _empty.remove(k);
+        }
+        for (int t = 0; t < Grid.SYMMETRIES; t += 1) {
+            int k1 = _grid.transform(t, k);
+            _hashes[t] ^= _grid.key(k1, p)
+                ^ (old == null ? 0 : _grid.key(k1, old));
+        }
+        _contents[k] = p;
+        if (p == WHITE || p == BLACK) {
+            _queens[side(p)].add(k);
+        } else if (p == EMPTY) {
+            _empty.add(k);
+        }
+        _regions.changed(k, old);
+        if (_accumulator != null) {
+            _accumulator.changed(k, old, p);
+        }
+    }
+
     /** Return true iff FROM - TO is an unblocked queen move on the current
      *  board, ignoring the contents of ASEMPTY, if it is encountered.
      *  For this to be true, FROM-TO must be a queen move and the
      *  squares along it, other than FROM and ASEMPTY, must be
      *  empty. ASEMPTY may be null, in which case it has no effect. */
     boolean isUnblockedMove(Square from, Square to, Square asEmpty) {
-        if (from.isQueenMove(to) && (board.get(to) == EMPTY || to == asEmpty)) {
-            int dir = from.direction(to);
-            for (int i = 1;
-                 i <= Math.max((Math.abs(from.col() - to.col())),
-                         Math.abs(from.row() - to.row()));
-                 i++) {
-                if (board.get(from.queenMove(dir, i)) != EMPTY
-                        && from.queenMove(dir, i) != asEmpty) {
-                    return false;
-                }
-            }
-            return true;
-        } else {
+        if (!from.isQueenMove(to)) {
             return false;
         }
+        int[] ray = _grid.ray(from.index(), from.direction(to));
+        int skip = asEmpty == null ? -1 : asEmpty.index();
+        for (int i = 0, n = from.distance(to); i < n; i += 1) {
+            if (_contents[ray[i]] != EMPTY && ray[i] != skip) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /** Return true iff FROM is a valid starting square for a move. */
     boolean isLegal(Square from) {
-        return board.get(from) == _turn;
+        return get(from) == _turn;
     }
 
     /** Return true iff FROM-TO (ASEMPTY) is a valid first
@@ -179,11 +408,11 @@ class Board {
     boolean isLegal(Square from, Square to, Square asEmpty) {
         if (asEmpty != null) {
             return isLegal(from)
-                    && (board.get(to) == EMPTY || to == asEmpty)
+                    && (get(to) == EMPTY || to == asEmpty)
                     && isUnblockedMove(from, to, asEmpty);
         } else {
             return isLegal(from)
-                    && (board.get(to) == EMPTY)
+                    && (get(to) == EMPTY)
                     && isUnblockedMove(from, to, asEmpty);
         }
     }
@@ -192,7 +421,7 @@ class Board {
      *  position. */
     boolean isLegal(Square from, Square to, Square spear, Square asEmpty) {
         return isLegal(from, to, asEmpty)
-                && ((board.get(to) == EMPTY) || (spear == asEmpty))
+                && ((get(to) == EMPTY) || (spear == asEmpty))
                 && isUnblockedMove(to, spear, from);
     }
 
@@ -204,34 +433,165 @@ class Board {
 
     /** Move FROM-TO(SPEAR), assuming this is a legal move. */
     void makeMove(Square from, Square to, Square spear) {
-        Square[] prev = {from, to, spear};
-        moverecord.add(prev);
-        Piece queen = get(from);
-        board.put(from, EMPTY);
-        board.put(to, queen);
-        board.put(spear, SPEAR);
-        numMove++;
-        _turn = _turn.opponent();
+        makeMove(mv(from, to, spear));
     }
 
     /** Move according to MOVE, assuming it is a legal move. */
     void makeMove(Move move) {
-        makeMove(move.from(), move.to(), move.spear());
+        moverecord.add(move);
+        Piece queen = get(move.from());
+        put(EMPTY, move.from());
+        put(queen, move.to());
+        put(SPEAR, move.spear());
+        _turn = _turn.opponent();
     }
 
     /** Undo one move.  Has no effect on the initial board. */
     void undo() {
         if (moverecord.size() > 0) {
-            Piece queen = get(moverecord.get(numMove - 1)[1]);
-            board.put(moverecord.get(numMove - 1)[2], EMPTY);
-            board.put(moverecord.get(numMove - 1)[1], EMPTY);
-            board.put(moverecord.get(numMove - 1)[0], queen);
-            moverecord.remove(numMove - 1);
-            numMove--;
+            Move move = moverecord.remove(moverecord.size() - 1);
+            Piece queen = get(move.to());
+            put(EMPTY, move.spear());
+            put(EMPTY, move.to());
+            put(queen, move.from());
             _turn = _turn.opponent();
         }
     }
 
+    /** Return the last move made (and not undone), or null if there is
+     *  none. */
+    Move lastMove() {
+        return moverecord.isEmpty() ? null
+            : moverecord.get(moverecord.size() - 1);
+    }
+
+    /** Return the total number of squares reachable by unblocked queen
+     *  moves from the queens of SIDE, counting a square once for each
+     *  queen that reaches it. */
+    int mobility(Piece side) {
+        return _mobility[side(side)];
+    }
+
+    /** Return the number of SIDE's queens that can reach the square with
+     *  index K by an unblocked queen move. */
+    int attacks(Piece side, int k) {
+        return _attacks[side(side)][k];
+    }
+
+    /** Set _runs[dir] to the number of empty squares in a row next to
+     *  the square with index K in each direction dir. */
+    private void findRuns(int k) {
+        for (int dir = 0; dir < 8; dir += 1) {
+            int[] ray = _grid.ray(k, dir);
+            int i = 0;
+            while (i < ray.length && _contents[ray[i]] == EMPTY) {
+                i += 1;
+            }
+            _runs[dir] = i;
+        }
+    }
+
+    /** Add DELTA to the attack counts (for side number SIDE) of the
+     *  squares reachable by a queen on the square with index K, given
+     *  the lengths of the runs of empty squares around K (see
+     *  findRuns). */
+    private void attack(int k, int side, int delta) {
+        int[] attacks = _attacks[side];
+        int total = 0;
+        for (int dir = 0; dir < 8; dir += 1) {
+            int[] ray = _grid.ray(k, dir);
+            int run = _runs[dir];
+            for (int i = 0; i < run; i += 1) {
+                attacks[ray[i]] += delta;
+            }
+            total += run;
+        }
+        _mobility[side] += delta * total;
+    }
+
+    /** Add DELTA to the attack counts of the squares that the nearest
+     *  queens along each line through the square with index K can reach
+     *  by passing through K: K itself and the empty squares beyond it,
+     *  given the lengths of the runs of empty squares around K (see
+     *  findRuns).  K is becoming empty if DELTA is 1 and ceasing to be
+     *  empty if it is -1.  Only these counts change when K does. */
+    private void reopen(int k, int delta) {
+        for (int dir = 0; dir < 8; dir += 1) {
+            int[] ray = _grid.ray(k, dir);
+            if (_runs[dir] == ray.length) {
+                continue;
+            }
+            Piece q = _contents[ray[_runs[dir]]];
+            if (q != WHITE && q != BLACK) {
+                continue;
+            }
+            int side = side(q);
+            int[] attacks = _attacks[side], beyond = _grid.ray(k, dir ^ 4);
+            int run = _runs[dir ^ 4];
+            attacks[k] += delta;
+            for (int i = 0; i < run; i += 1) {
+                attacks[beyond[i]] += delta;
+            }
+            _mobility[side] += delta * (run + 1);
+        }
+    }
+
+    /** Set RESULT to the squares reachable by an unblocked queen move
+     *  from the square with index K, treating the square with index
+     *  ASEMPTY (if >= 0) as empty.  The squares are found by sliding
+     *  along each direction a whole set at a time (see SquareSet.slide),
+     *  rather than square by square. */
+    void reach(int k, int asEmpty, SquareSet result) {
+        SquareSet open = _empty;
+        if (asEmpty >= 0 && !_empty.contains(asEmpty)) {
+            _open.copy(_empty);
+            _open.add(asEmpty);
+            open = _open;
+        }
+        _origin.clear();
+        _origin.add(k);
+        result.clear();
+        result.reach(_origin, open);
+    }
+
+    /** Set RESULT to the squares reachable by an unblocked queen move by
+     *  some queen of SIDE. */
+    void reach(Piece side, SquareSet result) {
+        result.clear();
+        result.reach(_queens[side(side)], _empty);
+    }
+
+    /** Set DISTANCES[k], for each square index k, to the least number of
+     *  queen moves in which some queen of SIDE could reach square k if
+     *  no spears were thrown, 0 for the squares of SIDE's queens, and -1
+     *  for squares that cannot be reached.  Each step adds all the
+     *  squares reachable from the last step's squares at once.  Return
+     *  the number of squares reached (other than the queens' own). */
+    int distances(Piece side, int[] distances) {
+        Arrays.fill(distances, -1);
+        SquareSet seen = _origin, frontier = _open, next = _frontier;
+        seen.copy(_queens[side(side)]);
+        frontier.copy(seen);
+        for (int k = seen.next(0); k >= 0; k = seen.next(k + 1)) {
+            distances[k] = 0;
+        }
+        int count = 0;
+        for (int d = 1; !frontier.isEmpty(); d += 1) {
+            next.clear();
+            next.reach(frontier, _empty);
+            next.andNot(seen);
+            for (int k = next.next(0); k >= 0; k = next.next(k + 1)) {
+                distances[k] = d;
+                count += 1;
+            }
+            seen.or(next);
+            SquareSet tmp = frontier;
+            frontier = next;
+            next = tmp;
+        }
+        return count;
+    }
+
     /** Return an Iterator over the Squares that are reachable by an
      *  unblocked queen move from FROM. Does not pay attention to what
      *  piece (if any) is on FROM, nor to whether the game is finished.
@@ -254,176 +614,269 @@ class Board {
         return new LegalMoveIterator(side);
     }
 
-    /** An iterator used by reachableFrom. */
+    /** An iterator used by reachableFrom.  It computes the reachable
+     *  squares when created. */
     private class ReachableFromIterator implements Iterator<Square> {
 
         /** Iterator of all squares reachable by queen move from FROM,
          *  treating ASEMPTY as empty. */
         ReachableFromIterator(Square from, Square asEmpty) {
-            _from = from;
-            _dir = 0;
-            _steps = 1;
-            _asEmpty = asEmpty;
-            toNext();
+            _squares = _grid.newSet();
+            reach(from.index(), asEmpty == null ? -1 : asEmpty.index(),
+                  _squares);
+            _next = _squares.next(0);
         }
 
         @Override
         public boolean hasNext() {
-            return _dir < 8;
+            return _next >= 0;
         }
 
-
         @Override
         public Square next() {
-            Square s = _from.queenMove(_dir, _steps);
-            _steps++;
-            toNext();
-            return s;
-        }
-
-        /** Advance _dir and _steps, so that the next valid Square is
-         *  _steps steps whilein direction _dir from _from. */
-        private void toNext() {
-            while (!isUnblockedMove(_from,
-                    _from.queenMove(_dir, _steps), _asEmpty)) {
-                _dir++;
-                _steps = 1;
-                if (_dir == 8) {
-                    break;
-                }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
+            Square result = _grid.sq(_next);
+            _next = _squares.next(_next + 1);
+            return result;
         }
 
-        /** Starting square. */
-        private Square _from;
-        /** Current direction. */
-        private int _dir;
-        /** Current distance. */
-        private int _steps;
-        /** Square treated as empty. */
-        private Square _asEmpty;
+        /** The reachable squares. */
+        private final SquareSet _squares;
+        /** Index of the next square to deliver, or -1 if none. */
+        private int _next;
     }
 
-    /** An iterator used by legalMoves. */
+    /** An iterator used by legalMoves.  It visits the queens of one side
+     *  in index order, computing each queen's destinations when it gets to
+     *  the queen, and the spear throws from each destination when it gets
+     *  to the destination, so that the board may be modified between
+     *  calls as long as it is restored before the next call. */
     private class LegalMoveIterator implements Iterator<Move> {
 
-        /** Number of legal moves. */
-        private int num = 0;
-
-        /** NUM returns the variable num. */
-        public int num() {
-            return num;
-        }
-
         /** All legal moves for SIDE (WHITE or BLACK). */
         LegalMoveIterator(Piece side) {
-            _startingSquares = Square.iterator();
-            _spearThrows = NO_SQUARES;
-            _pieceMoves = NO_SQUARES;
-            _fromPiece = side;
-            if (_startingSquares.hasNext()) {
-                Square s = _startingSquares.next();
-                while (board.get(s) != _fromPiece
-                        && _startingSquares.hasNext()) {
-                    s = _startingSquares.next();
-                }
-                _start = s;
-                _pieceMoves = new ReachableFromIterator(_start, null);
-            }
+            _queenSet = _queens[side(side)];
+            _from = _to = _spear = -1;
+            _tos = _grid.newSet();
+            _spears = _grid.newSet();
         }
 
         @Override
         public boolean hasNext() {
-            if (!_spearThrows.hasNext()) {
-                if (!_pieceMoves.hasNext()) {
-                    if (!_startingSquares.hasNext()) {
+            while (_spear < 0 && !_done) {
+                _to = _from < 0 ? -1 : _tos.next(_to + 1);
+                while (_to < 0) {
+                    _from = _queenSet.next(_from + 1);
+                    if (_from < 0) {
+                        _done = true;
                         return false;
-                    } else {
-                        num = num + 1;
-                        toNext();
-                        return hasNext();
                     }
-                } else {
-                    toNext();
-                    return hasNext();
+                    reach(_from, -1, _tos);
+                    _to = _tos.next(0);
                 }
+                reach(_to, _from, _spears);
+                _spear = _spears.next(0);
             }
-            _next = mv(_start, _nextSquare, _spearThrows.next());
-            return true;
+            return _spear >= 0;
         }
 
         @Override
         public Move next() {
-            return _next;
-        }
-
-        /** Advance so that the next valid Move is
-         *  _start-_nextSquare(sp), where sp is the next value of
-         *  _spearThrows. */
-        private void toNext() {
-            if (_pieceMoves.hasNext()) {
-                _nextSquare = _pieceMoves.next();
-                _spearThrows = new ReachableFromIterator(_nextSquare, _start);
-                if (!_spearThrows.hasNext()) {
-                    toNext();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Move result = mv(_grid.sq(_from), _grid.sq(_to),
+                             _grid.sq(_spear));
+            _spear = _spears.next(_spear + 1);
+            return result;
+        }
+
+        /** The queens being moved. */
+        private final SquareSet _queenSet;
+        /** Indices of the current queen (-1 before the first), its
+         *  current destination, and the next spear throw (-1 if none). */
+        private int _from, _to, _spear;
+        /** Destinations of the current queen. */
+        private final SquareSet _tos;
+        /** Spear throws from the current destination. */
+        private final SquareSet _spears;
+        /** True once all the moves have been delivered. */
+        private boolean _done;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int row = size() - 1; row >= 0; row -= 1) {
+            result.append("  ");
+            for (int col = 0; col < size(); col += 1) {
+                result.append(" ").append(get(col, row));
+            }
+            result.append("\n");
+        }
+        return result.toString();
+    }
+
+    /** Return my position as a one-line string: the rows from the top
+     *  down, separated by slashes, followed by a space and the side to
+     *  move ("w" or "b").  Each row lists its squares from left to right,
+     *  with W, B, and S for white queens, black queens, and spears, and
+     *  a decimal number for each run of empty squares.  The standard
+     *  initial position is
+     *      "3B2B3/10/10/B8B/10/10/W8W/10/10/3W2W3 w".
+     *  The board size is the number of rows. */
+    String position() {
+        StringBuilder result = new StringBuilder();
+        for (int row = size() - 1; row >= 0; row -= 1) {
+            int empty = 0;
+            for (int col = 0; col < size(); col += 1) {
+                Piece p = get(col, row);
+                if (p == EMPTY) {
+                    empty += 1;
+                    continue;
                 }
-            } else if (_startingSquares.hasNext()) {
-                Square s = _startingSquares.next();
-                while (board.get(s) != _fromPiece
-                        && _startingSquares.hasNext()) {
-                    s = _startingSquares.next();
+                if (empty > 0) {
+                    result.append(empty);
+                    empty = 0;
                 }
-                if (board.get(s) == _fromPiece) {
-                    _start = s;
-                    _pieceMoves = new ReachableFromIterator(_start, _start);
-                    if (!_pieceMoves.hasNext()) {
-                        toNext();
-                    } else {
-                        _nextSquare = _pieceMoves.next();
-                        _spearThrows =
-                                new ReachableFromIterator(_nextSquare, _start);
+                result.append(p);
+            }
+            if (empty > 0) {
+                result.append(empty);
+            }
+            result.append(row > 0 ? "/" : " ");
+        }
+        return result.append(_turn == WHITE ? "w" : "b").toString();
+    }
+
+    /** Return a new board in the position described by POSITION, in the
+     *  format produced by position() (but in either case).  Its starting
+     *  layout has the queens where they are in POSITION, and it has no
+     *  moves to undo. */
+    static Board parse(String position) {
+        String[] parts = position.trim().split("\\s+");
+        if (parts.length != 2 || !parts[1].matches("[wWbB]")) {
+            throw error("position must have the form ROWS SIDE");
+        }
+        String[] rows = parts[0].split("/", -1);
+        Grid grid = Grid.of(rows.length);
+        int size = rows.length;
+        Piece[] contents = new Piece[grid.count()];
+        for (int r = 0; r < size; r += 1) {
+            int row = size - 1 - r, col = 0;
+            String text = rows[r];
+            for (int i = 0; i < text.length(); ) {
+                char c = text.charAt(i);
+                int run = 1;
+                Piece p;
+                if (Character.isDigit(c)) {
+                    int end = i;
+                    while (end < text.length()
+                           && Character.isDigit(text.charAt(end))) {
+                        end += 1;
                     }
+                    run = Integer.parseInt(text.substring(i, end));
+                    i = end;
+                    p = EMPTY;
+                } else {
+                    p = piece(c);
+                    i += 1;
+                }
+                if (run == 0 || col + run > size) {
+                    throw error("row %d does not have %d squares",
+                                row + 1, size);
                 }
+                for (; run > 0; run -= 1, col += 1) {
+                    contents[grid.sq(col, row).index()] = p;
+                }
+            }
+            if (col != size) {
+                throw error("row %d does not have %d squares", row + 1,
+                            size);
             }
         }
-
-        /** Color of side whose moves we are iterating. */
-        private Piece _fromPiece;
-        /** Current starting square. */
-        private Square _start;
-        /** Remaining starting squares to consider. */
-        private Iterator<Square> _startingSquares;
-        /** Current piece's new position. */
-        private Square _nextSquare;
-        /** Remaining moves from _start to consider. */
-        private Iterator<Square> _pieceMoves;
-        /** Remaining spear throws from _piece to consider. */
-        private Iterator<Square> _spearThrows;
-        /** Record of the next move. */
-        private Move _next;
+        return of(grid, contents,
+                  Character.toLowerCase(parts[1].charAt(0)) == 'w'
+                  ? WHITE : BLACK);
     }
 
-    @Override
-    public String toString() {
-        String result = "";
-        for (int i = 9; i > -1; i--) {
-            String row = "  ";
-            for (int j = 0; j < 10; j++) {
-                Square cell = Square.sq(j, i);
-                row += " " + board.get(cell).toString();
+    /** Return a new board with geometry GRID, in which square k contains
+     *  CONTENTS[k] and TURN is to move.  Its starting layout has the
+     *  queens where they are in CONTENTS, and it has no moves to undo. */
+    static Board of(Grid grid, Piece[] contents, Piece turn) {
+        List<Square> whites = new ArrayList<>(), blacks = new ArrayList<>();
+        for (int k = 0; k < contents.length; k += 1) {
+            if (contents[k] == WHITE) {
+                whites.add(grid.sq(k));
+            } else if (contents[k] == BLACK) {
+                blacks.add(grid.sq(k));
+            }
+        }
+        Board result = new Board(new Layout(grid,
+                                            whites.toArray(new Square[0]),
+                                            blacks.toArray(new Square[0])));
+        for (int k = 0; k < contents.length; k += 1) {
+            if (contents[k] == SPEAR) {
+                result.put(SPEAR, k);
             }
-            result += row + "\n";
         }
+        result.setTurn(turn);
         return result;
     }
 
-    /** An empty iterator for initialization. */
-    private static final Iterator<Square> NO_SQUARES =
-        Collections.emptyIterator();
+    /** Return the piece denoted by C (W, B, or S, in either case) in a
+     *  position string. */
+    private static Piece piece(char c) {
+        switch (Character.toUpperCase(c)) {
+        case 'W':
+            return WHITE;
+        case 'B':
+            return BLACK;
+        case 'S':
+            return SPEAR;
+        default:
+            throw error("unknown piece '%c' in position", c);
+        }
+    }
+
+    /** Return the index (0 for WHITE, 1 for BLACK) used for SIDE in
+     *  per-side arrays. */
+    static int side(Piece side) {
+        return side == WHITE ? 0 : 1;
+    }
 
+    /** Starting layout (which also determines my size). */
+    private Layout _layout;
+    /** My geometry. */
+    private Grid _grid;
+    /** Contents of each square, by index. */
+    private Piece[] _contents;
+    /** The empty squares. */
+    private SquareSet _empty;
+    /** The squares occupied by WHITE and BLACK queens, indexed by
+     *  side(). */
+    private SquareSet[] _queens;
+    /** Work space for reach and distances. */
+    private SquareSet _origin, _open, _frontier;
+    /** _attacks[i][k] is the number of queens of side i (as for side())
+     *  that can reach the square with index k. */
+    private int[][] _attacks;
+    /** _mobility[i] is the total of _attacks[i]. */
+    private int[] _mobility;
+    /** Lengths of the runs of empty squares in each direction from the
+     *  square being changed (see findRuns). */
+    private final int[] _runs = new int[8];
+    /** The regions of my contents. */
+    private RegionTracker _regions;
+    /** The sums of the network last used to evaluate me, or null. */
+    private Accumulator _accumulator;
+    /** _hashes[t] is the hash of my contents after applying symmetry t
+     *  (excluding the side to move). */
+    private long[] _hashes;
+    /** The moves made (and not undone) on this board. */
+    private ArrayList<Move> moverecord = new ArrayList<>();
     /** Piece whose turn it is (BLACK or WHITE). */
     private Piece _turn;
-    /** Cached value of winner on this board, or EMPTY if it has not been
-     *  computed. */
-    private Piece _winner;
 }
@@ -3,9 +3,11 @@ package amazons;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import java.util.List;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Random;
 
 import static amazons.Piece.*;
 import static amazons.Move.mv;
@@ -292,6 +294,246 @@ public class BoardTest {
         makeSmile(b);
         assertEquals(SMILE, b.toString());
     }
+
+    /** Checks legalMoves against isLegal on every candidate move, on
+     *  boards small enough to use single-word and multi-word square
+     *  sets. */
+    @Test
+    public void testOtherSizes() {
+        for (int size : new int[] { 6, 9 }) {
+            Board b = new Board(Layout.standard(size));
+            Grid grid = b.grid();
+            assertEquals(size, b.size());
+            assertEquals(4, b.queens(WHITE).size());
+            assertEquals(4, b.queens(BLACK).size());
+            b.makeMove(b.legalMoves().next());
+            HashSet<Move> expected = new HashSet<>();
+            for (Square from : Utils.iterable(grid.iterator())) {
+                for (Square to : Utils.iterable(grid.iterator())) {
+                    for (Square spear : Utils.iterable(grid.iterator())) {
+                        if (from.isQueenMove(to) && to.isQueenMove(spear)
+                            && b.isLegal(mv(from, to, spear), null)) {
+                            expected.add(mv(from, to, spear));
+                        }
+                    }
+                }
+            }
+            HashSet<Move> actual = new HashSet<>();
+            Iterator<Move> iter = b.legalMoves();
+            while (iter.hasNext()) {
+                actual.add(iter.next());
+            }
+            assertEquals(expected, actual);
+            assertEquals(size * size - 9, b.empty().size());
+            b.undo();
+            assertEquals(size * size - 8, b.empty().size());
+        }
+    }
+
+    @Test
+    public void testLayout() {
+        Layout layout = Layout.parse(6, "a1,f1/c6");
+        Board b = new Board(layout);
+        assertEquals(WHITE, b.get(b.grid().sq("f1")));
+        assertEquals(BLACK, b.get(b.grid().sq("c6")));
+        assertEquals(1, b.queens(BLACK).size());
+        assertEquals("a1,f1/c6", layout.toString());
+        assertEquals("d1,g1,a4,j4/a7,j7,d10,g10",
+                     Layout.standard(Board.SIZE).toString());
+        assertSame(sq("a1").grid(), Grid.of(10));
+        assertNotSame(sq("a1"), Grid.of(6).sq("a1"));
+    }
+
+    @Test
+    public void testHash() {
+        Board a = new Board();
+        long start = a.hash();
+        Move m = mv("d1-d7(b7)");
+        long after = a.canonicalHash(m);
+        a.makeMove(m);
+        assertEquals(after, a.canonicalHash());
+        assertNotEquals(start, a.hash());
+        Grid grid = a.grid();
+        for (int t = 0; t < Grid.SYMMETRIES; t += 1) {
+            Board b = new Board();
+            for (Square s : Utils.iterable(grid.iterator())) {
+                b.put(a.get(s), grid.transform(t, s));
+            }
+            b.setTurn(a.turn());
+            assertEquals(a.hash(t), b.hash());
+            assertEquals(a.canonicalHash(), b.canonicalHash());
+            assertEquals(m, grid.transform(grid.inverse(t),
+                                           grid.transform(t, m)));
+        }
+        Board mirror = new Board();
+        mirror.makeMove(grid.transform(1, m));
+        assertNotEquals(a.hash(), mirror.hash());
+        assertEquals(a.canonicalHash(), mirror.canonicalHash());
+        Board c = new Board();
+        c.put(EMPTY, sq("d1"));
+        c.put(WHITE, sq("d7"));
+        c.put(SPEAR, sq("b7"));
+        c.setTurn(BLACK);
+        assertEquals(a.hash(), c.hash());
+        a.undo();
+        assertEquals(start, a.hash());
+        m = mv("g1-g3(g1)");
+        after = a.canonicalHash(m);
+        a.makeMove(m);
+        assertEquals(after, a.canonicalHash());
+    }
+
+    @Test
+    public void testAttacks() {
+        Board b = new Board();
+        Random random = new Random(38);
+        int plies = 0;
+        checkAttacks(b);
+        while (b.winner() == null) {
+            List<Move> moves = new ArrayList<>();
+            b.legalMoves().forEachRemaining(moves::add);
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+            plies += 1;
+            checkAttacks(b);
+            if (random.nextInt(4) == 0) {
+                b.undo();
+                plies -= 1;
+                checkAttacks(b);
+            }
+        }
+        assertFalse(b.hasMove(b.turn()));
+        checkAttacks(new Board(b));
+        for (; plies > 0; plies -= 1) {
+            b.undo();
+            checkAttacks(b);
+        }
+    }
+
+    @Test
+    public void testReach() {
+        for (int size : new int[] { 6, 8, 10, 13 }) {
+            Board b = new Board(Layout.standard(size));
+            Random random = new Random(size);
+            while (b.winner() == null) {
+                checkReach(b);
+                List<Move> moves = new ArrayList<>();
+                b.legalMoves().forEachRemaining(moves::add);
+                b.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            checkReach(b);
+        }
+    }
+
+    /** Check reach and distances on B against walks along the grid's
+     *  rays. */
+    private static void checkReach(Board b) {
+        Grid grid = b.grid();
+        int n = grid.count();
+        SquareSet squares = grid.newSet(), expected = grid.newSet();
+        for (int k = 0; k < n; k += 1) {
+            int asEmpty = (k * 7) % n;
+            b.reach(k, asEmpty, squares);
+            expected.clear();
+            for (int dir = 0; dir < 8; dir += 1) {
+                for (int j : grid.ray(k, dir)) {
+                    if (b.get(j) != EMPTY && j != asEmpty) {
+                        break;
+                    }
+                    expected.add(j);
+                }
+            }
+            assertEquals(expected.toString(), squares.toString());
+        }
+        int[] distances = new int[n];
+        for (Piece side : new Piece[] { WHITE, BLACK }) {
+            SquareSet queens = b.queens(side);
+            expected.clear();
+            for (int k = queens.next(0); k >= 0; k = queens.next(k + 1)) {
+                b.reach(k, -1, squares);
+                expected.or(squares);
+            }
+            b.reach(side, squares);
+            assertEquals(expected.toString(), squares.toString());
+
+            int[] slow = new int[n];
+            Arrays.fill(slow, -1);
+            List<Integer> work = new ArrayList<>();
+            for (int k = queens.next(0); k >= 0; k = queens.next(k + 1)) {
+                slow[k] = 0;
+                work.add(k);
+            }
+            for (int i = 0; i < work.size(); i += 1) {
+                int k = work.get(i);
+                b.reach(k, -1, squares);
+                for (int j = squares.next(0); j >= 0;
+                     j = squares.next(j + 1)) {
+                    if (slow[j] < 0) {
+                        slow[j] = slow[k] + 1;
+                        work.add(j);
+                    }
+                }
+            }
+            assertEquals(work.size() - queens.size(),
+                         b.distances(side, distances));
+            assertArrayEquals(slow, distances);
+        }
+    }
+
+    /** Check B's attack counts and mobility against counts made from
+     *  scratch with reach. */
+    private static void checkAttacks(Board b) {
+        int n = b.grid().count();
+        SquareSet squares = b.grid().newSet();
+        for (Piece side : new Piece[] { WHITE, BLACK }) {
+            int[] counts = new int[n];
+            int total = 0;
+            SquareSet queens = b.queens(side);
+            for (int k = queens.next(0); k >= 0; k = queens.next(k + 1)) {
+                b.reach(k, -1, squares);
+                for (int j = squares.next(0); j >= 0;
+                     j = squares.next(j + 1)) {
+                    counts[j] += 1;
+                }
+                total += squares.size();
+            }
+            for (int k = 0; k < n; k += 1) {
+                assertEquals(counts[k], b.attacks(side, k));
+            }
+            assertEquals(total, b.mobility(side));
+            assertEquals(total > 0, b.hasMove(side));
+        }
+    }
+
+    @Test
+    public void testPosition() {
+        Board b = new Board();
+        assertEquals("3B2B3/10/10/B8B/10/10/W8W/10/10/3W2W3 w",
+                     b.position());
+        Random random = new Random(44);
+        for (int ply = 0; ply < 20 && b.winner() == null; ply += 1) {
+            List<Move> moves = new ArrayList<>();
+            b.legalMoves().forEachRemaining(moves::add);
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+            Board copy = Board.parse(b.position());
+            assertEquals(b.toString(), copy.toString());
+            assertEquals(b.turn(), copy.turn());
+            assertEquals(b.hash(), copy.hash());
+            assertEquals(b.position(), copy.position());
+        }
+        assertEquals("1B2/4/S3/2W1 b",
+                     Board.parse("1b2/4/s3/2w1 B").position());
+        for (String bad : new String[] { "3B2B3/10 w", "4/4/4/4",
+                                         "4/4/4/4 x", "4/4/5/4 w",
+                                         "4/4/3/4 w", "4/4/3Q/4 w" }) {
+            try {
+                Board.parse(bad);
+                fail("accepted " + bad);
+            } catch (IllegalArgumentException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
     @Test
     public void isLegalTest() {
         Board b = new Board();
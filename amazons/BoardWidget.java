@@ -13,7 +13,6 @@ import java.awt.image.BufferedImage;
 import javax.imageio.ImageIO;
 
 import static amazons.Piece.*;
-import static amazons.Square.sq;
 import static amazons.Move.mv;
 
 
@@ -38,15 +37,13 @@ class BoardWidget extends Pad {
 
     /** Size parameters. */
     private static final int
-        SQUARE_SIDE = 30,
-        BOARD_SIDE = SQUARE_SIDE * 10;
+        SQUARE_SIDE = 30;
 
     /** A graphical representation of an Amazons board that sends commands
      *  derived from mouse clicks to COMMANDS.  */
     BoardWidget(ArrayBlockingQueue<String> commands) {
         _commands = commands;
         setMouseHandler("click", this::mouseClicked);
-        setPreferredSize(BOARD_SIDE, BOARD_SIDE);
 
         try {
             _whiteQueen = ImageIO.read(Utils.getResource(WHITE_QUEEN_IMAGE));
@@ -57,43 +54,91 @@ class BoardWidget extends Pad {
             System.exit(1);
         }
         _acceptingMoves = false;
+        resize(new Board());
     }
 
-    /** length of the board. */
-    static final int LENGTH = 300;
-    /** increment of the board. */
-    static final int INCREMENT = 60;
-    /** cell dimension of the board. */
-    static final int CELL = 30;
+    /** Display BOARD, whose size differs from (or is being set for the
+     *  first time to) the one displayed so far. */
+    private void resize(Board board) {
+        _board = new Board(board);
+        _contents = new byte[_board.grid().count()];
+        _snapshot = new byte[_contents.length];
+        _board.snapshot(_contents);
+        setPreferredSize(boardSide(), boardSide());
+        renderImages();
+        repaint();
+    }
 
+    /** Return the width and height of the displayed board in pixels. */
+    private int boardSide() {
+        return SQUARE_SIDE * _board.size();
+    }
 
     /** Draw the bare board G.  */
     private void drawGrid(Graphics2D g) {
         g.setColor(DARK_SQUARE_COLOR);
-        g.fillRect(0, 0, BOARD_SIDE, BOARD_SIDE);
+        g.fillRect(0, 0, boardSide(), boardSide());
         g.setColor(LIGHT_SQUARE_COLOR);
-        for (int k = 0; k <= LENGTH; k += INCREMENT) {
-            for (int j = 0; j <= LENGTH; j += INCREMENT) {
-                g.fillRect(j, k, CELL, CELL);
-                g.fillRect(j + CELL, k + CELL, CELL, CELL);
+        for (int row = 0; row < _board.size(); row += 1) {
+            for (int col = (row + 1) % 2; col < _board.size(); col += 2) {
+                g.fillRect(cx(col), cy(row), SQUARE_SIDE, SQUARE_SIDE);
             }
         }
     }
 
+    /** Create _grid, holding the bare board, and _image, holding the
+     *  board with the pieces in _contents drawn on it. */
+    private void renderImages() {
+        _grid = new BufferedImage(boardSide(), boardSide(),
+                                  BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = _grid.createGraphics();
+        drawGrid(g);
+        g.dispose();
+        _image = new BufferedImage(boardSide(), boardSide(),
+                                   BufferedImage.TYPE_INT_RGB);
+        g = _image.createGraphics();
+        g.drawImage(_grid, 0, 0, null);
+        for (int k = 0; k < _contents.length; k += 1) {
+            drawContents(g, _board.grid().sq(k));
+        }
+        g.dispose();
+    }
+
     @Override
     public synchronized void paintComponent(Graphics2D g) {
-        drawGrid(g);
-        for (Square s : _board.get().keySet()) {
-            if (_board.get().get(s) == WHITE) {
-                drawQueen(g, s, WHITE);
-            } else if (_board.get().get(s) == BLACK) {
-                drawQueen(g, s, BLACK);
-            } else if (_board.get().get(s) == SPEAR) {
-                drawSpear(g, s);
-            }
+        g.drawImage(_image, 0, 0, null);
+    }
+
+    /** Draw the piece (if any) recorded in _contents for square S on G,
+     *  whose square S is assumed to show the bare board. */
+    private void drawContents(Graphics2D g, Square s) {
+        switch (PIECES[_contents[s.index()]]) {
+        case WHITE:
+            drawQueen(g, s, WHITE);
+            break;
+        case BLACK:
+            drawQueen(g, s, BLACK);
+            break;
+        case SPEAR:
+            drawSpear(g, s);
+            break;
+        default:
+            break;
         }
     }
 
+    /** Redraw square S of _image from _grid and _contents, and schedule
+     *  the corresponding part of the screen to be repainted. */
+    private void redraw(Square s) {
+        int x = cx(s), y = cy(s);
+        Graphics2D g = _image.createGraphics();
+        g.drawImage(_grid.getSubimage(x, y, SQUARE_SIDE, SQUARE_SIDE),
+                    x, y, null);
+        drawContents(g, s);
+        g.dispose();
+        repaint(x, y, SQUARE_SIDE, SQUARE_SIDE);
+    }
+
     /** Draw a queen for side PIECE at square S on G.  */
     private void drawQueen(Graphics2D g, Square s, Piece piece) {
         g.drawImage(piece == WHITE ? _whiteQueen : _blackQueen,
@@ -149,17 +194,29 @@ class BoardWidget extends Pad {
     private synchronized void mouseClicked(String unused, MouseEvent e) {
         int xpos = e.getX(), ypos = e.getY();
         int x = xpos / SQUARE_SIDE,
-            y = (BOARD_SIDE - ypos) / SQUARE_SIDE;
-        if (_acceptingMoves
-            && x >= 0 && x < Board.SIZE && y >= 0 && y < Board.SIZE) {
-            click(sq(x, y));
+            y = (boardSide() - ypos) / SQUARE_SIDE;
+        if (_acceptingMoves && _board.grid().exists(x, y)) {
+            click(_board.grid().sq(x, y));
         }
     }
 
-    /** Revise the displayed board according to BOARD. */
+    /** Revise the displayed board according to BOARD, redrawing only
+     *  the squares whose contents have changed. */
     synchronized void update(Board board) {
-        _board.copy(board);
-        repaint();
+        if (board.grid() != _board.grid()) {
+            resize(board);
+            return;
+        }
+        board.snapshot(_snapshot);
+        for (int k = 0; k < _snapshot.length; k += 1) {
+            if (_snapshot[k] != _contents[k]) {
+                Square s = _board.grid().sq(k);
+                _contents[k] = _snapshot[k];
+                _board.put(PIECES[_contents[k]], s);
+                redraw(s);
+            }
+        }
+        _board.setTurn(board.turn());
     }
 
     /** Turn on move collection iff COLLECTING, and clear any current
@@ -179,7 +236,7 @@ class BoardWidget extends Pad {
     /** Return y-pixel coordinate of the upper corners of row Y
      *  relative to the upper-left corner of the board. */
     private int cy(int y) {
-        return (Board.SIZE - y - 1) * SQUARE_SIDE;
+        return (_board.size() - y - 1) * SQUARE_SIDE;
     }
 
     /** Return x-pixel coordinate of the left corner of S
@@ -194,10 +251,23 @@ class BoardWidget extends Pad {
         return cy(s.row());
     }
 
+    /** All Pieces, indexed by ordinal. */
+    private static final Piece[] PIECES = Piece.values();
+
     /** Queue on which to post move commands (from mouse clicks). */
     private ArrayBlockingQueue<String> _commands;
-    /** Board being displayed. */
-    private final Board _board = new Board();
+    /** Board being displayed (used to check the legality of moves). */
+    private Board _board;
+    /** The ordinals of the Pieces displayed on each square, indexed by
+     *  Square index. */
+    private byte[] _contents;
+    /** Scratch space used by update to hold the new contents. */
+    private byte[] _snapshot;
+    /** Image of the bare board, rendered once. */
+    private BufferedImage _grid;
+    /** Image of the board with its pieces, updated a square at a time
+     *  and copied to the screen on repaint. */
+    private BufferedImage _image;
 
     /** Image of white queen. */
     private BufferedImage _whiteQueen;
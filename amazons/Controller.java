@@ -117,6 +117,23 @@ final class Controller {
         _reporter.reportMove(move);
     }
 
+    /** Report to my view that an AI search for SIDE has started, and can
+     *  be stopped through HANDLE. */
+    void searchStarted(Piece side, SearchHandle handle) {
+        _view.searchStarted(side, handle);
+    }
+
+    /** Report to my view that the current search has completed DEPTH,
+     *  finding BEST with value SCORE. */
+    void searchProgress(int depth, Move best, int score) {
+        _view.searchProgress(depth, best, score);
+    }
+
+    /** Report to my view that the current search has ended. */
+    void searchEnded() {
+        _view.searchEnded();
+    }
+
     /** A Command is pair (<pattern>, <processor>), where <pattern> is a
      *  Matcher that matches instances of a particular command, and
      *  <processor> is a functional object whose .accept method takes a
@@ -141,13 +158,18 @@ final class Controller {
         new Command("quit$", this::doQuit),
         new Command("seed\\s+(\\d+)$", this::doSeed),
         new Command("dump$", this::doDump),
-        new Command("new$", this::doNew),
+        new Command("position(?:\\s+(\\S+\\s+[wb]))?$", this::doPosition),
+        new Command("stats(?:\\s+(reset))?$", this::doStats),
+        new Command("solve(?:\\s+(\\d+))?$", this::doSolve),
+        new Command("analyze(?:\\s+(\\d+)(?:\\s+(\\d+))?)?$",
+                    this::doAnalyze),
+        new Command("new(?:\\s+(\\d+)(?:\\s+(\\S+))?)?$", this::doNew),
         new Command("auto\\s+(?i)(white|black)$", this::doAuto),
         new Command("manual\\s+(?i)(white|black)$", this::doManual),
-        new Command("[a-j][1-9]0?-"
-                + "[a-j][1-9]0?\\([a-j][1-9]0?\\)", this::doMove),
-        new Command("[a-j]([1-9]|10)\\s+"
-                + "[a-j]([1-9]|10)\\s+[a-j]([1-9]|10)$", this::doMove),
+        new Command("[a-z][1-9]\\d?-"
+                + "[a-z][1-9]\\d?\\([a-z][1-9]\\d?\\)", this::doMove),
+        new Command("[a-z][1-9]\\d?\\s+"
+                + "[a-z][1-9]\\d?\\s+[a-z][1-9]\\d?$", this::doMove),
         new Command("undo$", this::doUndo)
     };
 
@@ -178,12 +200,34 @@ final class Controller {
         throw error("Bad command: %s", cmnd);
     }
 
-    /** Command "new". */
-    private void doNew(Matcher unused) {
+    /** Command "new", "new SIZE", or "new SIZE LAYOUT", where SIZE and
+     *  LAYOUT are groups 1 and 2 of MAT.  Starts a new game, on a board
+     *  of the given size (by default, the current one) with the given
+     *  starting layout (by default, the standard one for the size). */
+    private void doNew(Matcher mat) {
+        if (mat.group(1) != null) {
+            int size;
+            try {
+                size = Integer.parseInt(mat.group(1));
+            } catch (NumberFormatException excp) {
+                throw error("number too large");
+            }
+            if (mat.group(2) == null) {
+                setLayout(Layout.standard(size));
+            } else {
+                setLayout(Layout.parse(size, mat.group(2)));
+            }
+        }
         _board.init();
         _winner = null;
     }
 
+    /** Replace the board with one of the size and initial position
+     *  given by LAYOUT. */
+    void setLayout(Layout layout) {
+        _board = new Board(layout);
+    }
+
     /** Command "quit". */
     private void doQuit(Matcher unused) {
         _playing = false;
@@ -203,6 +247,93 @@ final class Controller {
         System.out.printf("===%n%s===%n", _board);
     }
 
+    /** Command "position" or "position POSITION" (as indicated by MAT):
+     *  print the current position in the format of Board.position, or
+     *  start a game from POSITION. */
+    private void doPosition(Matcher mat) {
+        if (mat.group(1) == null) {
+            System.out.println(_board.position());
+        } else {
+            _board = Board.parse(mat.group(1));
+            _winner = _board.winner();
+        }
+    }
+
+    /** Command "stats" or "stats reset" (as indicated by MAT): print the
+     *  AI search statistics gathered so far, or clear them. */
+    private void doStats(Matcher mat) {
+        if (!SearchStats.ENABLED) {
+            reportNote("Search statistics are off (enable with"
+                       + " -Damazons.stats=true).");
+        } else if (mat.group(1) != null) {
+            SearchStats.clear();
+        } else {
+            System.out.printf("===%n%s===%n", SearchStats.total().report());
+        }
+    }
+
+    /** Default limit on the positions searched by "solve". */
+    static final long SOLVE_NODES = 100000000;
+
+    /** Command "solve" or "solve NODES" (as indicated by MAT): prove who
+     *  wins the current position by a proof-number search (see
+     *  ProofSearch) of at most NODES positions (default SOLVE_NODES), and
+     *  report the verdict, the size of the proof, and the search
+     *  rate. */
+    private void doSolve(Matcher mat) {
+        long limit;
+        try {
+            limit = mat.group(1) == null ? SOLVE_NODES
+                : Long.parseLong(mat.group(1));
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+        if (_prover == null) {
+            _prover = new ProofSearch();
+        }
+        ProofSearch.Result result = _prover.solve(_board, limit);
+        if (result.winner == null) {
+            reportNote("Unsolved after %d positions (proof number %d,"
+                       + " disproof number %d); %d positions/s.",
+                       result.nodes, result.phi, result.delta,
+                       result.nodesPerSecond());
+            return;
+        }
+        reportNote("%s wins%s: proof of %d positions, %d positions"
+                   + " searched in %.1f s (%d/s), %d table collections.",
+                   result.winner == WHITE ? "White" : "Black",
+                   result.move == null ? "" : " with " + result.move,
+                   result.proofSize, result.nodes, result.nanos * 1e-9,
+                   result.nodesPerSecond(), result.collections);
+    }
+
+    /** Default number of lines and depth for "analyze". */
+    static final int ANALYZE_LINES = 3, ANALYZE_DEPTH = 3;
+
+    /** Command "analyze", "analyze LINES", or "analyze LINES DEPTH" (as
+     *  indicated by MAT): report the best LINES moves (default
+     *  ANALYZE_LINES) in the current position, with their values (for
+     *  white) and principal variations, after each depth of a search to
+     *  DEPTH plies (default ANALYZE_DEPTH). */
+    private void doAnalyze(Matcher mat) {
+        int lines, depth;
+        try {
+            lines = mat.group(1) == null ? ANALYZE_LINES
+                : Integer.parseInt(mat.group(1));
+            depth = mat.group(2) == null ? ANALYZE_DEPTH
+                : Integer.parseInt(mat.group(2));
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+        if (_winner != null) {
+            throw error("game is over");
+        } else if (depth < 1) {
+            throw error("depth must be positive");
+        }
+        new AI(_board.turn(), this).analyze(new Board(_board), depth, lines,
+                                            null);
+    }
+
     /** Command "auto piece" identified by MAT
      * where piece is the side that AI is representing. */
     private void doAuto(Matcher mat) {
@@ -220,7 +351,7 @@ final class Controller {
 
     /** Command doMove using MAT. */
     private void doMove(Matcher mat) {
-        Move m = Move.mv(mat.group(0));
+        Move m = Move.mv(mat.group(0), _board.grid());
         if (m == null) {
             reportError("Illegal move, please try again.");
         } else if (!_board.get(m.from()).equals(_board.turn())) {
@@ -284,6 +415,9 @@ final class Controller {
     /** The current templates for manual and automated players. */
     private Player _autoPlayerTemplate, _manualPlayerTemplate;
 
+    /** Proof-number searcher for "solve", created when first needed. */
+    private ProofSearch _prover;
+
     /** Reporter for messages and errors. */
     private Reporter _reporter;
 
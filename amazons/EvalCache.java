@@ -0,0 +1,92 @@
+package amazons;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/** A fixed-size cache of static values of positions, keyed by their
+ *  64-bit hashes (Board.hash), that any number of threads may read and
+ *  write at once without locking.  Each entry is a single long holding
+ *  the upper 32 bits of a hash, which verify that the entry belongs to
+ *  the position being looked up, and a 32-bit value; the slot of a hash
+ *  is chosen by its low bits.  Entries are read and written whole with
+ *  opaque accesses, so a reader sees either an old or a new entry,
+ *  never a mixture of the two.  A new value always replaces whatever
+ *  occupies its slot.  A zero entry is empty, so a zero value of a hash
+ *  whose upper bits are zero is never remembered.
+ *  @author Wenhan Jin
+ */
+final class EvalCache {
+
+    /** Default base-2 logarithm of the number of entries. */
+    static final int DEFAULT_BITS = 20;
+    /** The result of get for a hash that has no entry. */
+    static final int MISSING = Integer.MIN_VALUE;
+
+    /** An empty cache of 2**BITS entries, where 1 <= BITS <= 30. */
+    EvalCache(int bits) {
+        if (bits < 1 || bits > MAX_BITS) {
+            throw Utils.error("cache size must be 2**1 to 2**%d entries",
+                              MAX_BITS);
+        }
+        _entries = new long[1 << bits];
+        _mask = (1 << bits) - 1;
+    }
+
+    /** Return the number of entries. */
+    int size() {
+        return _entries.length;
+    }
+
+    /** Return the value cached for HASH, or MISSING if there is none. */
+    int get(long hash) {
+        long entry = (long) ENTRIES.getOpaque(_entries, (int) hash & _mask);
+        if (entry != 0 && ((entry ^ hash) & KEY) == 0) {
+            return (int) entry;
+        }
+        return MISSING;
+    }
+
+    /** Cache VALUE (which is not MISSING) for HASH. */
+    void put(long hash, int value) {
+        ENTRIES.setOpaque(_entries, (int) hash & _mask,
+                          (hash & KEY) | (value & ~KEY));
+    }
+
+    /** Remove all entries.  Entries being written concurrently may
+     *  survive. */
+    void clear() {
+        Arrays.fill(_entries, 0);
+    }
+
+    /** Return the cache shared by all AIs, with 2**amazons.evalCache
+     *  entries (default 2**DEFAULT_BITS), or null if that property is 0.
+     *  It is created the first time it is asked for. */
+    static synchronized EvalCache shared() {
+        if (!_sharedOpened) {
+            int bits = Integer.getInteger("amazons.evalCache", DEFAULT_BITS);
+            _shared = bits == 0 ? null : new EvalCache(bits);
+            _sharedOpened = true;
+        }
+        return _shared;
+    }
+
+    /** Largest base-2 logarithm of the number of entries. */
+    private static final int MAX_BITS = 30;
+    /** The bits of an entry that hold the verification bits of a
+     *  hash. */
+    private static final long KEY = 0xffffffff00000000L;
+    /** Atomic access to the elements of _entries. */
+    private static final VarHandle ENTRIES =
+        MethodHandles.arrayElementVarHandle(long[].class);
+
+    /** The value of shared(), once it has been asked for. */
+    private static EvalCache _shared;
+    /** True iff shared() has been called. */
+    private static boolean _sharedOpened;
+
+    /** The entries, indexed by the low bits of their hashes. */
+    private final long[] _entries;
+    /** Mask selecting the index bits of a hash. */
+    private final int _mask;
+}
@@ -0,0 +1,92 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the cache of static values.
+ *  @author Wenhan Jin
+ */
+public class EvalCacheTest {
+
+    @Test
+    public void testGetPut() {
+        EvalCache cache = new EvalCache(4);
+        assertEquals(16, cache.size());
+        long h = 0x123456789abcdef1L;
+        assertEquals(EvalCache.MISSING, cache.get(h));
+        cache.put(h, -37);
+        assertEquals(-37, cache.get(h));
+        long other = h ^ 0x100000000L;
+        assertEquals(EvalCache.MISSING, cache.get(other));
+        cache.put(other, 1 << 24);
+        assertEquals(1 << 24, cache.get(other));
+        assertEquals(EvalCache.MISSING, cache.get(h));
+        cache.put(h + 1, 5);
+        assertEquals(5, cache.get(h + 1));
+        assertEquals(1 << 24, cache.get(other));
+        cache.clear();
+        assertEquals(EvalCache.MISSING, cache.get(h + 1));
+        assertSame(EvalCache.shared(), EvalCache.shared());
+        try {
+            new EvalCache(0);
+            fail("empty cache accepted");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testPositions() {
+        EvalCache cache = new EvalCache(16);
+        Territory eval = Territory.create();
+        Random random = new Random(50);
+        Board b = new Board();
+        List<Board> seen = new ArrayList<>();
+        while (b.winner() == null) {
+            cache.put(b.hash(), eval.score(b));
+            seen.add(new Board(b));
+            List<Move> moves = new ArrayList<>();
+            b.legalMoves().forEachRemaining(moves::add);
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        for (Board p : seen) {
+            int score = cache.get(p.hash());
+            assertTrue(score == EvalCache.MISSING || score == eval.score(p));
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        EvalCache cache = new EvalCache(6);
+        Thread[] threads = new Thread[4];
+        boolean[] failed = new boolean[1];
+        for (int t = 0; t < threads.length; t += 1) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 200000; i += 1) {
+                    long hash = random.nextInt(1000) * 0x9e3779b97f4a7c15L;
+                    int score = cache.get(hash);
+                    if (score != EvalCache.MISSING && score != value(hash)) {
+                        failed[0] = true;
+                    }
+                    cache.put(hash, value(hash));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(failed[0]);
+    }
+
+    /** Return the value stored for HASH by testConcurrent. */
+    private static int value(long hash) {
+        return (int) (hash >>> 40) - (1 << 23);
+    }
+}
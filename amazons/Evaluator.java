@@ -0,0 +1,71 @@
+package amazons;
+
+import static amazons.Piece.*;
+
+/** A static evaluation function, used by the AI at the leaves of its
+ *  search.  An Evaluator may keep work space between calls, so each
+ *  search thread needs its own (see create).  The kind of evaluator is
+ *  chosen by the system property amazons.eval: "mobility" (the default),
+ *  "territory" (see Territory), "weighted" (see Weighted), or the
+ *  experimental "network" (see Network), which needs a network file and
+ *  is not yet a replacement for the others.
+ *  @author Wenhan Jin
+ */
+interface Evaluator {
+
+    /** Return a heuristic value of BOARD, a position in which the side
+     *  to move has a move.  Positive values favor white. */
+    int score(Board board);
+
+    /** Return a cheap estimate of score(BOARD), computed from counts that
+     *  BOARD keeps up to date as moves are made, or NO_ESTIMATE if I have
+     *  none.  The AI uses it to skip score where the estimate is far
+     *  outside its search window (see AI.LAZY_MARGIN). */
+    default int estimate(Board board) {
+        return NO_ESTIMATE;
+    }
+
+    /** Return my name, as for the amazons.eval property. */
+    String name();
+
+    /** The result of estimate for an evaluator that has no estimate. */
+    int NO_ESTIMATE = Integer.MIN_VALUE;
+
+    /** The evaluator named by the amazons.eval system property. */
+    String SELECTED = System.getProperty("amazons.eval", "mobility");
+
+    /** Return a new evaluator of the kind named by the amazons.eval
+     *  system property. */
+    static Evaluator create() {
+        return create(SELECTED);
+    }
+
+    /** Return a new evaluator of the kind named NAME: "mobility",
+     *  "territory", "weighted", or "network". */
+    static Evaluator create(String name) {
+        if (name.equals("mobility")) {
+            return MOBILITY;
+        } else if (name.equals("territory")) {
+            return Territory.create();
+        } else if (name.equals("weighted")) {
+            return Weighted.create();
+        } else if (name.equals("network")) {
+            return Network.selected().evaluator();
+        }
+        throw Utils.error("unknown evaluator %s", name);
+    }
+
+    /** The difference between the numbers of queen moves available to
+     *  white and to black. */
+    Evaluator MOBILITY = new Evaluator() {
+        @Override
+        public int score(Board board) {
+            return board.mobility(WHITE) - board.mobility(BLACK);
+        }
+
+        @Override
+        public String name() {
+            return "mobility";
+        }
+    };
+}
@@ -8,6 +8,8 @@ import java.util.regex.Pattern;
 
 import java.util.concurrent.ArrayBlockingQueue;
 
+import javax.swing.SwingUtilities;
+
 
 
 /** The GUI controller for an Amazons board and buttons.
@@ -30,11 +32,28 @@ class GUI extends TopLevel implements View, Reporter {
             new LayoutSpec("y", 1,
                            "height", 1,
                            "width", 3));
+        addLabel("", "Progress",
+                 new LayoutSpec("y", 0, "x", 0, "width", 2));
+        addButton("Move now", this::moveNow,
+                  new LayoutSpec("y", 0, "x", 2));
     }
 
-    /** Response to "Quit" button click. */
-    private void quit(String dummy) {
-        _pendingCommands.offer("quit");
+    /** Response to "Quit" button click.  Stops any AI search in
+     *  progress, having its player quit instead of moving. */
+    private synchronized void quit(String dummy) {
+        if (_search != null) {
+            _search.abort("quit");
+        } else {
+            _pendingCommands.offer("quit");
+        }
+    }
+
+    /** Response to "Move now" button click: have any AI search in
+     *  progress play the best move it has found so far. */
+    private synchronized void moveNow(String dummy) {
+        if (_search != null) {
+            _search.moveNow();
+        }
     }
 
     /** Pattern describing the 'seed' command's arguments. */
@@ -77,6 +96,32 @@ class GUI extends TopLevel implements View, Reporter {
         _widget.update(board);
     }
 
+    @Override
+    public synchronized void searchStarted(Piece side,
+                                           SearchHandle handle) {
+        _search = handle;
+        _searchSide = side;
+        showProgress(String.format("%s is thinking...", side.toName()));
+    }
+
+    @Override
+    public void searchProgress(int depth, Move best, int score) {
+        showProgress(String.format("%s: depth %d, best %s, value %d",
+                                   _searchSide.toName(), depth, best,
+                                   score));
+    }
+
+    /** Display TEXT as the search progress.  May be called from any
+     *  thread: the label is changed on the event-dispatching thread. */
+    private void showProgress(String text) {
+        SwingUtilities.invokeLater(() -> setLabel("Progress", text));
+    }
+
+    @Override
+    public synchronized void searchEnded() {
+        _search = null;
+    }
+
     @Override
     public void reportError(String fmt, Object... args) {
         showMessage(String.format(fmt, args), "Amazons Error", "error");
@@ -94,6 +139,11 @@ class GUI extends TopLevel implements View, Reporter {
     /** The board widget. */
     private BoardWidget _widget;
 
+    /** Handle on the AI search in progress, or null if there is none. */
+    private SearchHandle _search;
+    /** The side for which _search is searching. */
+    private volatile Piece _searchSide;
+
     /** Queue of pending commands resulting from menu clicks and moves on the
      *  board.  We use a blocking queue because the responses to clicks
      *  on the board and on menus happen in parallel to the methods that
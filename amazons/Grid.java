@@ -0,0 +1,299 @@
+package amazons;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static amazons.Utils.*;
+
+/** The geometry of a square Amazons board of a given size: its Squares,
+ *  and tables describing the lines and neighborhoods through each of
+ *  them.  Squares are numbered from 0 (lower-left corner) row by row to
+ *  size() * size() - 1 (upper-right corner).  As for Squares, there is
+ *  one Grid for each size (obtained with the factory method of), so
+ *  Grids may be compared with ==.
+ *  @author Wenhan Jin
+ */
+final class Grid {
+
+    /** The smallest supported board size. */
+    static final int MIN_SIZE = 4;
+    /** The largest supported board size (limited by the letters used to
+     *  name columns). */
+    static final int MAX_SIZE = 26;
+
+    /** The number of symmetries of a square board (rotations and
+     *  reflections, including the identity). */
+    static final int SYMMETRIES = 8;
+
+    /** Return the (unique) Grid for boards with SIZE squares on a side. */
+    static Grid of(int size) {
+        if (size < MIN_SIZE || size > MAX_SIZE) {
+            throw error("board size must be between %d and %d",
+                        MIN_SIZE, MAX_SIZE);
+        }
+        synchronized (GRIDS) {
+            if (GRIDS[size] == null) {
+                GRIDS[size] = new Grid(size);
+            }
+            return GRIDS[size];
+        }
+    }
+
+    /** Return the number of squares on a side. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the total number of squares. */
+    int count() {
+        return _squares.length;
+    }
+
+    /** Return true iff COL ROW is a square of mine. */
+    boolean exists(int col, int row) {
+        return row >= 0 && col >= 0 && row < _size && col < _size;
+    }
+
+    /** Return my (unique) Square denoting COL ROW. */
+    Square sq(int col, int row) {
+        if (!exists(col, row)) {
+            throw error("row or column out of bounds");
+        }
+        return _squares[row * _size + col];
+    }
+
+    /** Return my (unique) Square with index INDEX. */
+    Square sq(int index) {
+        return _squares[index];
+    }
+
+    /** Return my (unique) Square denoted by POSN in the standard text
+     *  format for a square (e.g., a4). */
+    Square sq(String posn) {
+        if (!posn.matches(Square.SQ)) {
+            throw error("bad square designation: %s", posn);
+        }
+        return sq(posn.charAt(0) - 'a', Integer.parseInt(posn.substring(1))
+                  - 1);
+    }
+
+    /** Return an iterator over all my Squares, in index order. */
+    Iterator<Square> iterator() {
+        return _squareList.iterator();
+    }
+
+    /** Return the indices of the squares reached by going 1, 2, ...
+     *  steps from the square with index INDEX in direction DIR (as for
+     *  Square.queenMove), stopping at the edge of the board. */
+    int[] ray(int index, int dir) {
+        return _rays[index][dir];
+    }
+
+    /** Return the set of squares adjacent (in any of the eight
+     *  directions) to the square with index INDEX. */
+    SquareSet neighbors(int index) {
+        return _neighbors[index];
+    }
+
+    /** Return the indices of the squares adjacent to the square with index
+     *  INDEX (the members of neighbors(INDEX), in the order of
+     *  Square.DIR).  The caller must not modify the result. */
+    int[] adjacent(int index) {
+        return _adjacent[index];
+    }
+
+    /** Return the difference between the index of a square and that of
+     *  the square one step from it in direction DIR (as for
+     *  Square.DIR). */
+    int shift(int dir) {
+        return Square.DIR[dir][0] + Square.DIR[dir][1] * _size;
+    }
+
+    /** Return the set of squares that can be reached by one step in
+     *  direction DIR (as for Square.DIR) from some square.  A set of
+     *  squares shifted by shift(DIR) and intersected with this set has
+     *  each member moved one step in direction DIR, dropping those that
+     *  would leave the board. */
+    SquareSet steps(int dir) {
+        return _steps[dir];
+    }
+
+    /** Return a new, empty set of my squares. */
+    SquareSet newSet() {
+        return SquareSet.create(this);
+    }
+
+    /** Return the index of the square to which the square with index K
+     *  is carried by symmetry T, 0 <= T < SYMMETRIES.  Symmetry 0 is the
+     *  identity.  Otherwise, bit 2 of T reflects the board about its
+     *  lower-left to upper-right diagonal, then bit 0 reflects it
+     *  left-to-right and bit 1 top-to-bottom. */
+    int transform(int t, int k) {
+        return _transforms[t][k];
+    }
+
+    /** Return the Square to which S is carried by symmetry T. */
+    Square transform(int t, Square s) {
+        return _squares[_transforms[t][s.index()]];
+    }
+
+    /** Return the Move to which MOVE is carried by symmetry T. */
+    Move transform(int t, Move move) {
+        return Move.mv(transform(t, move.from()), transform(t, move.to()),
+                       transform(t, move.spear()));
+    }
+
+    /** Return the symmetry that undoes symmetry T. */
+    int inverse(int t) {
+        return _inverses[t];
+    }
+
+    /** Return the hash key for Piece P on the square with index K.
+     *  Keys are fixed pseudo-random numbers (the same in every run), and
+     *  the key of EMPTY is 0. */
+    long key(int k, Piece p) {
+        return _keys[k * PIECES + p.ordinal()];
+    }
+
+    /** Return the hash key that is included when black is to move. */
+    long blackToMoveKey() {
+        return _blackToMove;
+    }
+
+    /** Return the cache used by Move.mv for moves from the square with
+     *  index FROM.  Its elements (indexed by the index of the destination
+     *  square) are allocated lazily. */
+    Move[][] moves(int from) {
+        return _moves[from];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%dx%d", _size, _size);
+    }
+
+    /** A Grid for boards with SIZE squares on a side. */
+    private Grid(int size) {
+        _size = size;
+        int n = size * size;
+        _squares = new Square[n];
+        for (int k = 0; k < n; k += 1) {
+            _squares[k] = new Square(this, k);
+        }
+        _squareList = Collections.unmodifiableList(Arrays.asList(_squares));
+        _rays = new int[n][8][];
+        _neighbors = new SquareSet[n];
+        _adjacent = new int[n][];
+        _steps = new SquareSet[8];
+        for (int dir = 0; dir < 8; dir += 1) {
+            _steps[dir] = SquareSet.create(this);
+        }
+        for (int k = 0; k < n; k += 1) {
+            int col = k % size, row = k / size;
+            _neighbors[k] = SquareSet.create(this);
+            for (int dir = 0; dir < 8; dir += 1) {
+                int len;
+                for (len = 0;
+                     exists(col + (len + 1) * Square.DIR[dir][0],
+                            row + (len + 1) * Square.DIR[dir][1]);
+                     len += 1) {
+                    continue;
+                }
+                _rays[k][dir] = new int[len];
+                for (int i = 0; i < len; i += 1) {
+                    _rays[k][dir][i] = (row + (i + 1) * Square.DIR[dir][1])
+                        * size + col + (i + 1) * Square.DIR[dir][0];
+                }
+                if (len > 0) {
+                    _neighbors[k].add(_rays[k][dir][0]);
+                    _steps[dir].add(_rays[k][dir][0]);
+                }
+            }
+            _adjacent[k] = new int[_neighbors[k].size()];
+            for (int dir = 0, i = 0; dir < 8; dir += 1) {
+                if (_rays[k][dir].length > 0) {
+                    _adjacent[k][i++] = _rays[k][dir][0];
+                }
+            }
+        }
+        _moves = new Move[n][n][];
+
+        _transforms = new int[SYMMETRIES][n];
+        for (int t = 0; t < SYMMETRIES; t += 1) {
+            for (int k = 0; k < n; k += 1) {
+                int col = k % size, row = k / size;
+                if ((t & 4) != 0) {
+                    int tmp = col;
+                    col = row;
+                    row = tmp;
+                }
+                if ((t & 1) != 0) {
+                    col = size - 1 - col;
+                }
+                if ((t & 2) != 0) {
+                    row = size - 1 - row;
+                }
+                _transforms[t][k] = row * size + col;
+            }
+        }
+        _inverses = new int[SYMMETRIES];
+        for (int t = 0; t < SYMMETRIES; t += 1) {
+            for (int u = 0; u < SYMMETRIES; u += 1) {
+                if (_transforms[u][_transforms[t][1]] == 1
+                    && _transforms[u][_transforms[t][size]] == size) {
+                    _inverses[t] = u;
+                }
+            }
+        }
+
+        SplittableRandom keyGen = new SplittableRandom(KEY_SEED + size);
+        _keys = new long[n * PIECES];
+        for (int k = 0; k < n; k += 1) {
+            for (Piece p : Piece.values()) {
+                if (p != Piece.EMPTY) {
+                    _keys[k * PIECES + p.ordinal()] = keyGen.nextLong();
+                }
+            }
+        }
+        _blackToMove = keyGen.nextLong();
+    }
+
+    /** Number of kinds of Piece. */
+    private static final int PIECES = Piece.values().length;
+
+    /** Seed for the generator of hash keys. */
+    private static final long KEY_SEED = 0x616d617a6f6e73L;
+
+    /** The Grids created so far, indexed by size. */
+    private static final Grid[] GRIDS = new Grid[MAX_SIZE + 1];
+
+    /** Number of squares on a side. */
+    private final int _size;
+    /** My Squares, by index. */
+    private final Square[] _squares;
+    /** _squares viewed as a List. */
+    private final List<Square> _squareList;
+    /** _rays[k][d] is the value of ray(k, d). */
+    private final int[][][] _rays;
+    /** _neighbors[k] is the value of neighbors(k). */
+    private final SquareSet[] _neighbors;
+    /** _adjacent[k] is the value of adjacent(k). */
+    private final int[][] _adjacent;
+    /** _steps[dir] is the value of steps(dir). */
+    private final SquareSet[] _steps;
+    /** Cache of Moves, indexed by the indices of from, to, and spear
+     *  squares. */
+    private final Move[][][] _moves;
+    /** _transforms[t][k] is the value of transform(t, k). */
+    private final int[][] _transforms;
+    /** _inverses[t] is the value of inverse(t). */
+    private final int[] _inverses;
+    /** Hash keys: the key for piece p on square k is
+     *  _keys[k * PIECES + p.ordinal()]. */
+    private final long[] _keys;
+    /** Value of blackToMoveKey(). */
+    private final long _blackToMove;
+}
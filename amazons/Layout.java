@@ -0,0 +1,113 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static amazons.Utils.*;
+
+/** A starting arrangement of queens on a board of a given size.
+ *  Layouts are written as two comma-separated lists of squares, white's
+ *  and then black's, separated by a slash: the standard 10x10 layout is
+ *  "d1,g1,a4,j4/a7,j7,d10,g10".
+ *  @author Wenhan Jin
+ */
+final class Layout {
+
+    /** The standard layout for the standard board. */
+    static final Layout STANDARD = standard(Board.SIZE);
+
+    /** Return the standard layout for a board with SIZE squares on a
+     *  side.  It generalizes the 10x10 layout: each side has four queens,
+     *  two on its home row and one on each edge, about a third of the way
+     *  in from the corners. */
+    static Layout standard(int size) {
+        Grid grid = Grid.of(size);
+        int k = (size - 1) / 3, far = size - 1;
+        return new Layout(grid,
+                          new Square[] {
+                              grid.sq(k, 0), grid.sq(far - k, 0),
+                              grid.sq(0, k), grid.sq(far, k) },
+                          new Square[] {
+                              grid.sq(0, far - k), grid.sq(far, far - k),
+                              grid.sq(k, far), grid.sq(far - k, far) });
+    }
+
+    /** Return the layout on a board with SIZE squares on a side that is
+     *  described by SPEC, in the format described above. */
+    static Layout parse(int size, String spec) {
+        Grid grid = Grid.of(size);
+        String[] sides = spec.trim().split("/");
+        if (sides.length != 2) {
+            throw error("layout must have the form WHITES/BLACKS");
+        }
+        return new Layout(grid, parseSquares(grid, sides[0]),
+                          parseSquares(grid, sides[1]));
+    }
+
+    /** Return the squares of GRID listed, separated by commas, in LIST. */
+    private static Square[] parseSquares(Grid grid, String list) {
+        List<Square> result = new ArrayList<>();
+        for (String posn : list.split(",")) {
+            result.add(grid.sq(posn.trim()));
+        }
+        return result.toArray(new Square[result.size()]);
+    }
+
+    /** A layout on GRID with white queens on WHITES and black queens
+     *  on BLACKS. */
+    Layout(Grid grid, Square[] whites, Square[] blacks) {
+        if (whites.length == 0 || blacks.length == 0) {
+            throw error("each side needs at least one queen");
+        }
+        List<Square> all = new ArrayList<>(Arrays.asList(whites));
+        all.addAll(Arrays.asList(blacks));
+        for (Square s : all) {
+            if (s.grid() != grid) {
+                throw error("square %s is not on a %s board", s, grid);
+            } else if (all.indexOf(s) != all.lastIndexOf(s)) {
+                throw error("two queens on %s", s);
+            }
+        }
+        _grid = grid;
+        _whites = whites.clone();
+        _blacks = blacks.clone();
+    }
+
+    /** Return the Grid of the board I describe. */
+    Grid grid() {
+        return _grid;
+    }
+
+    /** Return the number of squares on a side of the board I describe. */
+    int size() {
+        return _grid.size();
+    }
+
+    /** Return the initial squares of the queens of SIDE. */
+    Square[] queens(Piece side) {
+        return (side == Piece.WHITE ? _whites : _blacks).clone();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s/%s", join(_whites), join(_blacks));
+    }
+
+    /** Return the names of SQUARES, separated by commas. */
+    private static String join(Square[] squares) {
+        StringBuilder result = new StringBuilder();
+        for (Square s : squares) {
+            if (result.length() > 0) {
+                result.append(",");
+            }
+            result.append(s);
+        }
+        return result.toString();
+    }
+
+    /** The board geometry. */
+    private final Grid _grid;
+    /** Initial squares of the white and black queens. */
+    private final Square[] _whites, _blacks;
+}
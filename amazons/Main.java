@@ -1,10 +1,14 @@
 package amazons;
 
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Paths;
 
 import static amazons.Utils.error;
 
@@ -15,17 +19,56 @@ import ucb.util.CommandArgs;
  */
 public class Main {
 
-    /** The main program.  ARGS may contain the option --display. */
+    /** The main program.  ARGS may contain the options --display and
+     *  --size=N (play on an NxN board), or --evaluate=FILE and
+     *  --depth=N (score the positions in FILE on the standard output, by
+     *  searches to depth N if it is positive; see BatchEvaluator), or
+     *  --annotate=FILE and --depth=N (annotate the game recorded in FILE
+     *  on the standard output, using searches to depth N; see
+     *  Annotator), or --selfplay=FILE, --games=N, --depth=N, --seed=N,
+     *  --dedup, and --size=N (write training samples from N self-play
+     *  games to FILE; see SelfPlay). */
     public static void main(String... args) {
 
         CommandArgs options =
-            new CommandArgs("--display --log={0,1} --={0,2}", args);
+            new CommandArgs("--display --log={0,1} --size=(\\d+){0,1}"
+                            + " --evaluate={0,1} --annotate={0,1}"
+                            + " --selfplay={0,1} --games=(\\d+){0,1}"
+                            + " --seed=(\\d+){0,1} --dedup"
+                            + " --depth=(\\d+){0,1}"
+                            + " --={0,2}", args);
         if (!options.ok()) {
             System.err.println("Usage: java amazons.Main [--display]"
-                               + " [--log=FILE] [INPUT [OUTPUT]]");
+                               + " [--log=FILE] [--size=N]"
+                               + " [INPUT [OUTPUT]]");
+            System.err.println("       java amazons.Main --evaluate=FILE"
+                               + " [--depth=N]");
+            System.err.println("       java amazons.Main --annotate=FILE"
+                               + " [--depth=N]");
+            System.err.println("       java amazons.Main --selfplay=FILE"
+                               + " [--games=N] [--depth=N] [--seed=N]"
+                               + " [--dedup] [--size=N]");
             System.exit(1);
         }
 
+        if (options.contains("--evaluate")) {
+            evaluate(options.getFirst("--evaluate"),
+                     options.contains("--depth")
+                     ? Integer.parseInt(options.getFirst("--depth")) : 0);
+            System.exit(0);
+        }
+        if (options.contains("--annotate")) {
+            annotate(options.getFirst("--annotate"),
+                     options.contains("--depth")
+                     ? Integer.parseInt(options.getFirst("--depth"))
+                     : Annotator.DEPTH);
+            System.exit(0);
+        }
+        if (options.contains("--selfplay")) {
+            selfPlay(options);
+            System.exit(0);
+        }
+
         List<String> files = options.get("--");
         if (!files.isEmpty()) {
             try {
@@ -54,6 +97,85 @@ public class Main {
 
     }
 
+    /** Score the positions in FILE, searching to DEPTH plies if it is
+     *  positive, and write the results on the standard output (see
+     *  BatchEvaluator). */
+    private static void evaluate(String file, int depth) {
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            long start = System.nanoTime();
+            long count = new BatchEvaluator(depth, ForkJoinPool.commonPool())
+                .run(in, System.out);
+            double seconds = (System.nanoTime() - start) * 1e-9;
+            System.err.printf("%d positions in %.1f s (%.0f/s)%n", count,
+                              seconds, count / seconds);
+        } catch (IOException excp) {
+            System.err.printf("Could not read positions: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Annotate the game recorded in FILE, searching to DEPTH plies, and
+     *  write the results on the standard output (see Annotator). */
+    private static void annotate(String file, int depth) {
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            long start = System.nanoTime();
+            long count = new Annotator(depth, ForkJoinPool.commonPool())
+                .run(in, System.out);
+            double seconds = (System.nanoTime() - start) * 1e-9;
+            System.err.printf("%d moves in %.1f s (%.1f/s)%n", count,
+                              seconds, count / seconds);
+        } catch (IOException excp) {
+            System.err.printf("Could not read game: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Write samples from self-play games to a file as directed by
+     *  OPTIONS (see SelfPlay). */
+    private static void selfPlay(CommandArgs options) {
+        try {
+            Layout layout =
+                options.contains("--size")
+                ? Layout.standard(Integer.parseInt(options.getFirst("--size")))
+                : Layout.STANDARD;
+            int games =
+                options.contains("--games")
+                ? Integer.parseInt(options.getFirst("--games"))
+                : SelfPlay.GAMES;
+            int depth =
+                options.contains("--depth")
+                ? Integer.parseInt(options.getFirst("--depth"))
+                : SelfPlay.DEPTH;
+            long seed =
+                options.contains("--seed")
+                ? Long.parseLong(options.getFirst("--seed"))
+                : System.nanoTime();
+            long start = System.nanoTime();
+            long count =
+                new SelfPlay(layout, depth, seed, options.contains("--dedup"),
+                             ForkJoinPool.commonPool())
+                .run(games, Paths.get(options.getFirst("--selfplay")));
+            double seconds = (System.nanoTime() - start) * 1e-9;
+            System.err.printf("%d games, %d samples in %.1f s (%.0f/s)%n",
+                              games, count, seconds, count / seconds);
+        } catch (IOException excp) {
+            System.err.printf("Could not write samples: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
     /** Return an appropriate Controller as indicated by OPTIONS. */
     private static Controller getController(CommandArgs options) {
         Player manualPlayer;
@@ -83,6 +205,12 @@ public class Main {
             }
         }
 
-        return new Controller(view, log, reporter, manualPlayer, new AI());
+        Controller control =
+            new Controller(view, log, reporter, manualPlayer, new AI());
+        if (options.contains("--size")) {
+            control.setLayout(Layout.standard(
+                Integer.parseInt(options.getFirst("--size"))));
+        }
+        return control;
     }
 }
@@ -3,13 +3,14 @@ package amazons;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
-import static amazons.Square.sq;
 import static amazons.Square.SQ;
 
 /** A move in the game of Amazons. As for Squares, Moves are immutable
  *  and unique: there is only one move object for each possible move
  *  (generated by the factory method  mv, the constructor being private).
- *  As for Squares, you can freely use == to compare Moves.
+ *  As for Squares, you can freely use == to compare Moves.  Moves are
+ *  cached in the Grid of their squares, and may be created concurrently
+ *  by several threads.
  *  @author P. N. Hilfinger
  */
 final class Move {
@@ -37,25 +38,44 @@ final class Move {
         return _spear;
     }
 
-    /** Return the unique Move FROM-TO(SPEAR). */
+    /** Return the unique Move FROM-TO(SPEAR).  The three squares must
+     *  belong to the same Grid. */
     static Move mv(Square from, Square to, Square spear) {
-        if (MOVES[from.index()][to.index()][spear.index()] == null) {
-            MOVES[from.index()][to.index()][spear.index()] =
-                new Move(from, to, spear);
+        Move[][] cache = from.grid().moves(from.index());
+        Move[] row = cache[to.index()];
+        Move result = row == null ? null : row[spear.index()];
+        if (result == null) {
+            synchronized (cache) {
+                if (cache[to.index()] == null) {
+                    cache[to.index()] = new Move[from.grid().count()];
+                }
+                row = cache[to.index()];
+                if (row[spear.index()] == null) {
+                    row[spear.index()] = new Move(from, to, spear);
+                }
+                result = row[spear.index()];
+            }
         }
-        return MOVES[from.index()][to.index()][spear.index()];
+        return result;
     }
 
-    /** Return the Move denoted by STR, if STR denotes a move with
-     *  valid syntax in which the piece move and spear throw are proper
-     *  queen moves, and null otherwise. */
+    /** Return the Move on the standard board denoted by STR, if STR
+     *  denotes a move with valid syntax in which the piece move and spear
+     *  throw are proper queen moves, and null otherwise. */
     static Move mv(String str) {
-        _moveMatcher.reset(str);
-        if (_moveMatcher.matches()) {
-            int k = _moveMatcher.group(1) != null ? 1 : 4;
-            Square from = sq(_moveMatcher.group(k)),
-                to = sq(_moveMatcher.group(k + 1)),
-                spear = sq(_moveMatcher.group(k + 2));
+        return mv(str, Grid.of(Board.SIZE));
+    }
+
+    /** Return the Move on the board with geometry GRID denoted by STR, if
+     *  STR denotes a move with valid syntax in which the piece move and
+     *  spear throw are proper queen moves, and null otherwise. */
+    static Move mv(String str, Grid grid) {
+        Matcher moveMatcher = MOVE_PATTERN.matcher(str);
+        if (moveMatcher.matches()) {
+            int k = moveMatcher.group(1) != null ? 1 : 4;
+            Square from = grid.sq(moveMatcher.group(k)),
+                to = grid.sq(moveMatcher.group(k + 1)),
+                spear = grid.sq(moveMatcher.group(k + 2));
             if (from.isQueenMove(to) && to.isQueenMove(spear)) {
                 return mv(from, to, spear);
             }
@@ -66,8 +86,7 @@ final class Move {
     /** Return true iff STR has the right format for a Move, ignoring whether
      *  its piece-move and spear-throw are valid queen moves. */
     static boolean isGrammaticalMove(String str) {
-        _moveMatcher.reset(str);
-        return _moveMatcher.matches();
+        return MOVE_PATTERN.matcher(str).matches();
     }
 
     @Override
@@ -81,14 +100,9 @@ final class Move {
         _str = String.format("%s-%s(%s)", from, to, spear);
     }
 
-    /** The cache of all Moves created. */
-    private static final Move[][][] MOVES = new Move[100][100][100];
-
     /** The components of a Move. */
     private final Square _from, _to, _spear;
     /** The printed form of a Move. */
-    private String _str;
-    /**  A utility Matcher for moves, using MOVE_PATTERN. */
-    private static Matcher _moveMatcher = MOVE_PATTERN.matcher("");
+    private final String _str;
 }
 
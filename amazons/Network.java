@@ -0,0 +1,330 @@
+package amazons;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static amazons.Piece.*;
+import static amazons.Utils.error;
+
+/** A small quantized neural network that evaluates positions on boards
+ *  of one size, in the style of an NNUE ("efficiently updatable neural
+ *  network").  Its inputs are one feature for each (square, piece)
+ *  pair with the piece (WHITE, BLACK, or SPEAR) on the square.  The
+ *  first layer maps them to HIDDEN 16-bit sums, which a Board keeps up
+ *  to date as its pieces move (see Accumulator), so that evaluating a
+ *  position costs only the two small dense layers that follow:
+ *      h1 = clamp(accumulator, 0, 127)                   (HIDDEN values)
+ *      h2 = clamp((B2 + W2 h1) >> SHIFT, 0, 127)         (SECOND values)
+ *      value = (B3[side to move] + W3 h2) >> OUTPUT_SHIFT
+ *  with 8-bit weights W2 and W3 and 32-bit biases B2 and B3.  The value
+ *  is for white, in the units of the other evaluators.
+ *
+ *  A network is read from a file (see read) named by the property
+ *  amazons.network, and used by the "network" evaluator (see
+ *  Evaluator.create).  A network is immutable and may be shared by any
+ *  number of threads; each thread evaluates through its own evaluator
+ *  (see evaluator).
+ *
+ *  The network evaluator is experimental.  No trained network is
+ *  provided, and at 256 x 32 a position costs more to evaluate than
+ *  with VectorTerritory, so it is not yet a replacement for the other
+ *  evaluators.
+ *  @author Wenhan Jin
+ */
+final class Network {
+
+    /** The first int of a network file ("AMZN"). */
+    static final int MAGIC = 0x414d5a4e;
+    /** The format version of network files. */
+    static final int VERSION = 1;
+    /** Number of input features per square. */
+    static final int PIECES = 3;
+    /** Largest output of a clamped layer. */
+    static final int CLAMP = 127;
+
+    /** A network for SIZE x SIZE boards with HIDDEN first-layer outputs
+     *  and SECOND second-layer outputs, whose second-layer sums are
+     *  shifted right by SHIFT and whose output is shifted right by
+     *  OUTPUTSHIFT, and with weights and biases W1, B1, W2, B2, W3, and B3
+     *  (see above).  W1[f * HIDDEN + j] is the weight of feature f (see
+     *  feature) in first-layer output j, and W2[i * HIDDEN + j] that of
+     *  h1[j] in h2[i].  Since a square holds at most one piece, the
+     *  magnitude of first-layer sum j is at most |B1[j]| plus, for each
+     *  square, the largest magnitude of its features' weights in output
+     *  j; that bound must fit in a short, so that the sums kept by
+     *  Accumulators can never overflow. */
+    Network(int size, int hidden, int second, int shift, int outputShift,
+            short[] w1, short[] b1, byte[] w2, int[] b2, byte[] w3,
+            int[] b3) {
+        int features = PIECES * size * size;
+        if (size < Grid.MIN_SIZE || size > Grid.MAX_SIZE || hidden <= 0
+            || second <= 0 || shift < 0 || shift > 31 || outputShift < 0
+            || outputShift > 31 || w1.length != features * hidden
+            || b1.length != hidden || w2.length != second * hidden
+            || b2.length != second || w3.length != second
+            || b3.length != 2) {
+            throw error("inconsistent network dimensions");
+        }
+        for (int j = 0; j < hidden; j += 1) {
+            int bound = Math.abs(b1[j]);
+            for (int k = 0; k < size * size; k += 1) {
+                int most = 0;
+                for (int p = 0; p < PIECES; p += 1) {
+                    most = Math.max(most,
+                                    Math.abs(w1[(PIECES * k + p) * hidden
+                                                + j]));
+                }
+                bound += most;
+            }
+            if (bound > Short.MAX_VALUE) {
+                throw error("first-layer weights of output %d are too large"
+                            + " for 16-bit sums", j);
+            }
+        }
+        _grid = Grid.of(size);
+        _hidden = hidden;
+        _second = second;
+        _shift = shift;
+        _outputShift = outputShift;
+        _w1 = w1;
+        _b1 = b1;
+        _w2 = w2;
+        _b2 = b2;
+        _w3 = w3;
+        _b3 = b3;
+    }
+
+    /** Return the network in the file named by the property
+     *  amazons.network, reading it the first time. */
+    static synchronized Network selected() {
+        if (_selected == null) {
+            String file = System.getProperty("amazons.network");
+            if (file == null) {
+                throw error("no network file (set amazons.network)");
+            }
+            try {
+                _selected = read(Paths.get(file));
+            } catch (IOException excp) {
+                throw error("could not read network: %s", excp.getMessage());
+            }
+        }
+        return _selected;
+    }
+
+    /** Return a network for SIZE x SIZE boards with HIDDEN and SECOND
+     *  outputs in its first two layers and small random weights chosen
+     *  using SEED. */
+    static Network random(int size, int hidden, int second, long seed) {
+        Random random = new Random(seed);
+        short[] w1 = new short[PIECES * size * size * hidden];
+        short[] b1 = new short[hidden];
+        byte[] w2 = new byte[second * hidden];
+        int[] b2 = new int[second];
+        byte[] w3 = new byte[second];
+        for (int i = 0; i < w1.length; i += 1) {
+            w1[i] = (short) (random.nextInt(17) - 8);
+        }
+        for (int j = 0; j < hidden; j += 1) {
+            b1[j] = (short) random.nextInt(64);
+        }
+        random.nextBytes(w2);
+        for (int i = 0; i < second; i += 1) {
+            b2[i] = random.nextInt(1 << 12) - (1 << 11);
+        }
+        random.nextBytes(w3);
+        return new Network(size, hidden, second, 6, 4, w1, b1, w2, b2, w3,
+                           new int[] { 0, -16 });
+    }
+
+    /** Return the geometry of my boards. */
+    Grid grid() {
+        return _grid;
+    }
+
+    /** Return the number of first-layer outputs. */
+    int hidden() {
+        return _hidden;
+    }
+
+    /** Return the input feature for P (WHITE, BLACK, or SPEAR) on the
+     *  square with index K. */
+    static int feature(int k, Piece p) {
+        return PIECES * k + p.ordinal() - 1;
+    }
+
+    /** Set ACCUMULATOR to the first-layer sums for a board with contents
+     *  CONTENTS (indexed by square index; null is treated as EMPTY). */
+    void refresh(short[] accumulator, Piece[] contents) {
+        System.arraycopy(_b1, 0, accumulator, 0, _hidden);
+        for (int k = 0; k < contents.length; k += 1) {
+            if (contents[k] != null && contents[k] != EMPTY) {
+                add(accumulator, feature(k, contents[k]), 1);
+            }
+        }
+    }
+
+    /** Add SIGN (1 or -1) times the first-layer weights of FEATURE to
+     *  ACCUMULATOR. */
+    void add(short[] accumulator, int feature, int sign) {
+        int base = feature * _hidden;
+        for (int j = 0; j < _hidden; j += 1) {
+            accumulator[j] += sign * _w1[base + j];
+        }
+    }
+
+    /** Return the value for white of a position with first-layer sums
+     *  ACCUMULATOR and TURN to move, using WORK, of at least workSize()
+     *  elements, as work space. */
+    int evaluate(short[] accumulator, Piece turn, int[] work) {
+        for (int j = 0; j < _hidden; j += 1) {
+            work[j] = clamp(accumulator[j]);
+        }
+        int out = _b3[turn == WHITE ? 0 : 1];
+        for (int i = 0; i < _second; i += 1) {
+            int base = i * _hidden;
+            int sum = _b2[i];
+            for (int j = 0; j < _hidden; j += 1) {
+                sum += _w2[base + j] * work[j];
+            }
+            out += _w3[i] * clamp(sum >> _shift);
+        }
+        return out >> _outputShift;
+    }
+
+    /** Return the number of elements of work space needed by
+     *  evaluate. */
+    int workSize() {
+        return _hidden;
+    }
+
+    /** Return the value for white of BOARD, computed from scratch. */
+    int evaluate(Board board) {
+        Piece[] contents = new Piece[_grid.count()];
+        for (int k = 0; k < contents.length; k += 1) {
+            contents[k] = board.get(k);
+        }
+        short[] accumulator = new short[_hidden];
+        refresh(accumulator, contents);
+        return evaluate(accumulator, board.turn(), new int[workSize()]);
+    }
+
+    /** Return X limited to 0 .. CLAMP. */
+    private static int clamp(int x) {
+        return Math.max(0, Math.min(CLAMP, x));
+    }
+
+    /** Return a new evaluator using this network.  It keeps work space,
+     *  so each thread needs its own. */
+    Evaluator evaluator() {
+        return new Evaluator() {
+            @Override
+            public int score(Board board) {
+                return evaluate(board.accumulator(Network.this).values(),
+                                board.turn(), _work);
+            }
+
+            @Override
+            public String name() {
+                return "network";
+            }
+
+            /** Work space for evaluate. */
+            private final int[] _work = new int[workSize()];
+        };
+    }
+
+    /** Return the network in the network file FILE, which holds, as
+     *  little-endian values, the ints MAGIC, VERSION, the board size,
+     *  HIDDEN, SECOND, SHIFT, and OUTPUTSHIFT, followed by W1 and B1 as
+     *  shorts, W2 as bytes, B2 as ints, W3 as bytes, and B3 as ints (see
+     *  the constructor). */
+    static Network read(Path file) throws IOException {
+        ByteBuffer in =
+            ByteBuffer.wrap(Files.readAllBytes(file))
+            .order(ByteOrder.LITTLE_ENDIAN);
+        if (in.remaining() < HEADER_INTS * Integer.BYTES
+            || in.getInt() != MAGIC) {
+            throw error("%s is not a network file", file);
+        }
+        if (in.getInt() != VERSION) {
+            throw error("%s has an unknown network format", file);
+        }
+        int size = in.getInt(), hidden = in.getInt(), second = in.getInt(),
+            shift = in.getInt(), outputShift = in.getInt();
+        if (size < Grid.MIN_SIZE || size > Grid.MAX_SIZE || hidden <= 0
+            || second <= 0 || hidden > MAX_WIDTH || second > MAX_WIDTH) {
+            throw error("%s has bad network dimensions", file);
+        }
+        long needed = 2L * (PIECES * size * size + 1) * hidden
+            + (long) second * hidden + 4L * second + second + 4L * 2;
+        if (in.remaining() != needed) {
+            throw error("%s has the wrong length", file);
+        }
+        short[] w1 = new short[PIECES * size * size * hidden];
+        short[] b1 = new short[hidden];
+        byte[] w2 = new byte[second * hidden];
+        int[] b2 = new int[second];
+        byte[] w3 = new byte[second];
+        int[] b3 = new int[2];
+        in.asShortBuffer().get(w1).get(b1);
+        in.position(in.position() + 2 * (w1.length + b1.length));
+        in.get(w2);
+        in.asIntBuffer().get(b2);
+        in.position(in.position() + 4 * b2.length);
+        in.get(w3);
+        in.asIntBuffer().get(b3);
+        return new Network(size, hidden, second, shift, outputShift, w1, b1,
+                           w2, b2, w3, b3);
+    }
+
+    /** Write me to FILE in the form accepted by read. */
+    void write(Path file) throws IOException {
+        ByteBuffer out =
+            ByteBuffer.allocate(HEADER_INTS * Integer.BYTES
+                                + 2 * (_w1.length + _b1.length)
+                                + _w2.length + 4 * _b2.length + _w3.length
+                                + 4 * _b3.length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(_grid.size())
+            .putInt(_hidden).putInt(_second).putInt(_shift)
+            .putInt(_outputShift);
+        out.asShortBuffer().put(_w1).put(_b1);
+        out.position(out.position() + 2 * (_w1.length + _b1.length));
+        out.put(_w2);
+        out.asIntBuffer().put(_b2);
+        out.position(out.position() + 4 * _b2.length);
+        out.put(_w3);
+        out.asIntBuffer().put(_b3);
+        Files.write(file, out.array());
+    }
+
+    /** Number of ints in the header of a network file. */
+    private static final int HEADER_INTS = 7;
+    /** Largest layer width accepted in a network file. */
+    private static final int MAX_WIDTH = 1 << 12;
+
+    /** The network named by amazons.network, once read. */
+    private static Network _selected;
+
+    /** Geometry of my boards. */
+    private final Grid _grid;
+    /** Layer widths. */
+    private final int _hidden, _second;
+    /** Right shifts of the second-layer sums and of the output. */
+    private final int _shift, _outputShift;
+    /** First-layer weights and biases. */
+    private final short[] _w1, _b1;
+    /** Second-layer weights. */
+    private final byte[] _w2;
+    /** Second-layer biases. */
+    private final int[] _b2;
+    /** Output weights. */
+    private final byte[] _w3;
+    /** Output biases, for white and black to move. */
+    private final int[] _b3;
+}
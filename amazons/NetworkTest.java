@@ -0,0 +1,114 @@
+package amazons;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the network evaluator and its accumulators.
+ *  @author Wenhan Jin
+ */
+public class NetworkTest {
+
+    /** Play random games on SIZE x SIZE boards with a random network,
+     *  checking after each move and each undo that the value from the
+     *  board's accumulator is that computed from scratch. */
+    private void checkIncremental(int size) {
+        Network net = Network.random(size, 32, 8, size);
+        Evaluator eval = net.evaluator();
+        Random random = new Random(48);
+        for (int game = 0; game < 4; game += 1) {
+            Board b = new Board(Layout.standard(size));
+            assertEquals(net.evaluate(b), eval.score(b));
+            List<Move> moves = new ArrayList<>();
+            while (b.winner() == null) {
+                moves.clear();
+                b.legalMoves().forEachRemaining(moves::add);
+                b.makeMove(moves.get(random.nextInt(moves.size())));
+                assertEquals(net.evaluate(b), eval.score(b));
+                if (random.nextInt(4) == 0) {
+                    b.undo();
+                    assertEquals(net.evaluate(b), eval.score(b));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIncremental() {
+        checkIncremental(6);
+        checkIncremental(10);
+    }
+
+    @Test
+    public void testCopy() {
+        Network net = Network.random(10, 16, 4, 1);
+        Evaluator eval = net.evaluator();
+        Board b = new Board(Layout.standard(10));
+        eval.score(b);
+        Board copy = new Board(b);
+        copy.makeMove(copy.legalMoves().next());
+        assertEquals(net.evaluate(copy), eval.score(copy));
+        assertEquals(net.evaluate(b), eval.score(b));
+        assertNotSame(b.accumulator(net), copy.accumulator(net));
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        Network net = Network.random(6, 16, 4, 2);
+        Path file = Files.createTempFile("amazons", ".nnue");
+        try {
+            net.write(file);
+            Network read = Network.read(file);
+            Board b = new Board(Layout.standard(6));
+            b.makeMove(b.legalMoves().next());
+            assertEquals(net.evaluate(b), read.evaluate(b));
+            assertEquals(net.evaluate(b), read.evaluator().score(b));
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+            try {
+                Network.read(file);
+                fail("truncated network file accepted");
+            } catch (IllegalArgumentException excp) {
+                /* Expected. */
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testWeightLimit() {
+        int size = 6, hidden = 2, n = Network.PIECES * size * size;
+        short[] w1 = new short[n * hidden];
+        Arrays.fill(w1, (short) (Short.MAX_VALUE / (size * size)));
+        short[] b1 = new short[hidden];
+        new Network(size, hidden, 1, 0, 0, w1, b1, new byte[hidden],
+                    new int[1], new byte[1], new int[2]);
+        b1[1] = (short) (size * size);
+        try {
+            new Network(size, hidden, 1, 0, 0, w1, b1, new byte[hidden],
+                        new int[1], new byte[1], new int[2]);
+            fail("accepted weights whose sums may overflow");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testWrongSize() {
+        Network net = Network.random(6, 16, 4, 3);
+        try {
+            net.evaluator().score(new Board(Layout.standard(10)));
+            fail("network used on the wrong size of board");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+}
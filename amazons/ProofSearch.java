@@ -0,0 +1,390 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/** A depth-first proof-number (df-pn) search, which proves that the
+ *  side to move in a position wins or loses.  Unlike the AI's
+ *  alpha-beta search, it needs no evaluation function: it expands the
+ *  part of the tree whose outcome would settle the most with the least
+ *  work, as measured by proof and disproof numbers (see Nagai, "Df-pn
+ *  Algorithm for Searching AND/OR Trees and Its Applications", 2002).
+ *
+ *  Each position is described from the point of view of the side to
+ *  move by phi (the least number of leaves that must be shown to be
+ *  wins for that side to prove that it wins) and delta (the same for a
+ *  loss).  For a position with successors c, phi = min delta(c) and
+ *  delta = sum phi(c).  Positions whose regions are separated (see
+ *  Regions) are scored exactly, and, as in the AI, only one move is
+ *  considered in each small region held by one side alone.
+ *
+ *  Values are kept in a table of a fixed number of entries
+ *  (2**amazons.proof.table, default 2**DEFAULT_TABLE_BITS), grouped into
+ *  buckets of WAYS entries keyed by Board.canonicalHash.  Memory is
+ *  reclaimed in three ways: once a position is solved, the entries for
+ *  its successors are discarded (the proof size is kept in the
+ *  position's own entry); a full bucket evicts the entry that took the
+ *  least work to compute; and whenever the table is more than
+ *  three-quarters full, a collection discards all entries below a work
+ *  threshold, doubling the threshold until at least half the table is
+ *  free.  So searches of any number of nodes run in a fixed heap.
+ *  @author Wenhan Jin
+ */
+final class ProofSearch {
+
+    /** Default base-2 logarithm of the number of table entries. */
+    static final int DEFAULT_TABLE_BITS = 20;
+
+    /** Number of entries in a bucket. */
+    private static final int WAYS = 4;
+    /** Proof and disproof numbers of solved positions. */
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    /** The result of a search. */
+    static final class Result {
+        /** The winner, or null if the search was cut off first. */
+        final Piece winner;
+        /** A winning move for the side to move, or null if there is none
+         *  (or the search was cut off). */
+        final Move move;
+        /** Number of positions in the proof tree found, counting each
+         *  solved transposition once for each path. */
+        final long proofSize;
+        /** Number of positions searched. */
+        final long nodes;
+        /** Search time in nanoseconds. */
+        final long nanos;
+        /** Proof and disproof numbers at the root for the side to move
+         *  when the search ended. */
+        final int phi, delta;
+        /** Number of garbage collections of the table. */
+        final int collections;
+
+        /** A result with the given field values. */
+        Result(Piece winner, Move move, long proofSize, long nodes,
+               long nanos, int phi, int delta, int collections) {
+            this.winner = winner;
+            this.move = move;
+            this.proofSize = proofSize;
+            this.nodes = nodes;
+            this.nanos = nanos;
+            this.phi = phi;
+            this.delta = delta;
+            this.collections = collections;
+        }
+
+        /** Return the number of positions searched per second. */
+        long nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1000000000L / nanos;
+        }
+    }
+
+    /** A searcher whose table has 2**amazons.proof.table entries. */
+    ProofSearch() {
+        this(Integer.getInteger("amazons.proof.table", DEFAULT_TABLE_BITS));
+    }
+
+    /** A searcher whose table has 2**BITS entries. */
+    ProofSearch(int bits) {
+        if (bits < 2 || bits > 28) {
+            throw Utils.error("table size must be between 2**2 and 2**28");
+        }
+        int capacity = 1 << bits;
+        _keys = new long[capacity];
+        _phi = new int[capacity];
+        _delta = new int[capacity];
+        _work = new long[capacity];
+        _size = new long[capacity];
+    }
+
+    /** Return the number of table entries in use. */
+    int used() {
+        return _used;
+    }
+
+    /** Prove who wins BOARD, searching at most MAXNODES positions.
+     *  BOARD is unchanged on return. */
+    Result solve(Board board, long maxNodes) {
+        long start = System.nanoTime();
+        Board b = new Board(board);
+        _maxNodes = maxNodes;
+        _nodes = 0;
+        _collections = 0;
+        _move = null;
+        if (b.winner() != null) {
+            return new Result(b.winner(), null, 1, 0, 0, INFINITY, 0, 0);
+        }
+        remove(key(b));
+        search(b, INFINITY, INFINITY, 0);
+        if (_move == null && exact(b) > 0) {
+            _move = exactMove(b);
+        }
+        int slot = find(key(b));
+        int phi = slot < 0 ? 1 : _phi[slot],
+            delta = slot < 0 ? 1 : _delta[slot];
+        Piece winner = phi == 0 ? b.turn()
+            : delta == 0 ? b.turn().opponent() : null;
+        return new Result(winner, phi == 0 ? _move : null,
+                          winner == null || slot < 0 ? 0 : _size[slot],
+                          _nodes, System.nanoTime() - start,
+                          phi, delta, _collections);
+    }
+
+    /** Search BOARD, which is PLY plies from the root, until its phi
+     *  reaches THPHI or its delta reaches THDELTA, recording the result
+     *  in the table.  Gives up (leaving the table consistent) once
+     *  _maxNodes positions have been searched. */
+    private void search(Board board, int thPhi, int thDelta, int ply) {
+        long key = key(board);
+        int known = find(key);
+        if (known >= 0
+            && (_phi[known] >= thPhi || _delta[known] >= thDelta)) {
+            return;
+        }
+        _nodes += 1;
+        long startNodes = _nodes;
+        int exact = exact(board);
+        if (exact != 0) {
+            store(key, exact > 0 ? 0 : INFINITY, exact > 0 ? INFINITY : 0,
+                  1, 1);
+            return;
+        }
+        List<Move> moves = moves(board);
+        int n = moves.size();
+        long[] keys = new long[n];
+        int[] phis = new int[n], deltas = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            keys[i] = key(board.canonicalHash(moves.get(i)));
+            int slot = find(keys[i]);
+            phis[i] = slot >= 0 ? _phi[slot] : 1;
+            deltas[i] = slot >= 0 ? _delta[slot] : 1;
+        }
+        int phi, delta;
+        while (true) {
+            phi = INFINITY;
+            long sum = 0;
+            boolean won = false;
+            int best = 0, second = INFINITY;
+            for (int i = 0; i < n; i += 1) {
+                if (deltas[i] < phi) {
+                    second = phi;
+                    phi = deltas[i];
+                    best = i;
+                } else if (deltas[i] < second) {
+                    second = deltas[i];
+                }
+                sum += phis[i];
+                won |= phis[i] == INFINITY;
+            }
+            delta = won ? INFINITY : (int) Math.min(sum, INFINITY - 1);
+            if (phi >= thPhi || delta >= thDelta || _nodes >= _maxNodes) {
+                break;
+            }
+            int childThPhi = (int) Math.min((long) thDelta + phis[best]
+                                            - delta, INFINITY);
+            int childThDelta = (int) Math.min(thPhi,
+                                              second + second / 4L + 1);
+            board.makeMove(moves.get(best));
+            search(board, childThPhi, childThDelta, ply + 1);
+            board.undo();
+            int slot = find(keys[best]);
+            if (slot >= 0) {
+                phis[best] = _phi[slot];
+                deltas[best] = _delta[slot];
+            }
+        }
+        long size = 1;
+        if (phi == 0 || delta == 0) {
+            size = proofSize(phi == 0, keys, phis, deltas, moves, ply);
+            for (long k : keys) {
+                remove(k);
+            }
+        }
+        int slot = find(key);
+        long work = _nodes - startNodes + 1 + (slot >= 0 ? _work[slot] : 0);
+        store(key, phi, delta, work, size);
+    }
+
+    /** Return the size of the proof tree of a position whose successors
+     *  have keys KEYS, phis PHIS, and deltas DELTAS, and are reached by
+     *  MOVES; the position is PLY plies from the root and is a win for
+     *  the side to move iff WIN.  For a win, this is one more than the
+     *  smallest proof among the successors that are losses for the
+     *  opponent, and for a loss, one more than the total of the proofs of
+     *  all the successors.  Sets _move to the winning move if PLY is 0. */
+    private long proofSize(boolean win, long[] keys, int[] phis,
+                           int[] deltas, List<Move> moves, int ply) {
+        long total = 0, least = Long.MAX_VALUE;
+        for (int i = 0; i < keys.length; i += 1) {
+            int slot = find(keys[i]);
+            long size = slot >= 0 ? _size[slot] : 1;
+            if (win && deltas[i] == 0 && size < least) {
+                least = size;
+                if (ply == 0) {
+                    _move = moves.get(i);
+                }
+            }
+            total += size;
+        }
+        return 1 + (win ? least : total);
+    }
+
+    /** Return 1 if the side to move in BOARD is known to win, -1 if it
+     *  is known to lose, and otherwise 0.  The side to move loses if it
+     *  has no moves, and once the regions are separated, wins iff it has
+     *  more moves left in its regions than its opponent. */
+    private int exact(Board board) {
+        if (!board.hasMove(board.turn())) {
+            return -1;
+        } else if (!board.separated()) {
+            return 0;
+        }
+        Regions regions = new Regions(board);
+        int mine = regions.moves(board.turn()),
+            theirs = regions.moves(board.turn().opponent());
+        if (mine < 0 || theirs < 0) {
+            return 0;
+        }
+        return mine > theirs ? 1 : -1;
+    }
+
+    /** Return a move in BOARD, which is a win for the side to move by
+     *  exact(BOARD), after which the opponent loses by exact. */
+    private Move exactMove(Board board) {
+        for (Move m : moves(board)) {
+            board.makeMove(m);
+            int e = exact(board);
+            board.undo();
+            if (e < 0) {
+                return m;
+            }
+        }
+        throw new IllegalStateException("no winning move");
+    }
+
+    /** Return the moves from BOARD that are searched: all legal moves,
+     *  except that in a region that holds only queens of the side to
+     *  move and is small enough to solve, only the fill (see
+     *  Regions.fill) is included. */
+    private List<Move> moves(Board board) {
+        List<Move> result = new ArrayList<>();
+        Regions regions = null;
+        Move[] fills = null;
+        for (Iterator<Move> legal = board.legalMoves(); legal.hasNext(); ) {
+            Move m = legal.next();
+            int r = board.region(m.from().index());
+            if (board.regionOwner(r) == board.turn()
+                && board.regionEmpties(r) <= Regions.SOLVE_LIMIT) {
+                if (regions == null) {
+                    regions = new Regions(board);
+                    fills = new Move[regions.count()];
+                }
+                int s = regions.region(m.from().index());
+                if (fills[s] == null) {
+                    fills[s] = regions.fill(s);
+                }
+                if (fills[s] != null && fills[s] != m) {
+                    continue;
+                }
+            }
+            result.add(m);
+        }
+        return result;
+    }
+
+    /** Return the table key of BOARD (never 0). */
+    private static long key(Board board) {
+        return key(board.canonicalHash());
+    }
+
+    /** Return the table key for a position whose canonical hash is
+     *  HASH (never 0). */
+    private static long key(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+
+    /** Return the index of the first entry of KEY's bucket. */
+    private int bucket(long key) {
+        return (int) (key ^ (key >>> 32)) & (_keys.length - WAYS);
+    }
+
+    /** Return the entry holding KEY, or -1 if there is none. */
+    private int find(long key) {
+        int b = bucket(key);
+        for (int i = b; i < b + WAYS; i += 1) {
+            if (_keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Record PHI, DELTA, WORK, and proof size SIZE for KEY, replacing
+     *  the entry of least work in KEY's bucket if it is full. */
+    private void store(long key, int phi, int delta, long work, long size) {
+        int slot = find(key);
+        if (slot < 0) {
+            int b = bucket(key);
+            slot = b;
+            for (int i = b; i < b + WAYS && _keys[slot] != 0; i += 1) {
+                if (_keys[i] == 0 || _work[i] < _work[slot]) {
+                    slot = i;
+                }
+            }
+        }
+        if (_keys[slot] == 0) {
+            _used += 1;
+        }
+        _keys[slot] = key;
+        _phi[slot] = phi;
+        _delta[slot] = delta;
+        _work[slot] = work;
+        _size[slot] = size;
+        if (_used > _keys.length / 4 * 3) {
+            collect();
+        }
+    }
+
+    /** Discard the entry for KEY, if any. */
+    private void remove(long key) {
+        int slot = find(key);
+        if (slot >= 0) {
+            _keys[slot] = 0;
+            _used -= 1;
+        }
+    }
+
+    /** Discard the entries of least work until at most half the table
+     *  is in use. */
+    private void collect() {
+        _collections += 1;
+        for (long threshold = 1; _used > _keys.length / 2;
+             threshold *= 2) {
+            for (int i = 0; i < _keys.length; i += 1) {
+                if (_keys[i] != 0 && _work[i] <= threshold) {
+                    _keys[i] = 0;
+                    _used -= 1;
+                }
+            }
+        }
+    }
+
+    /** Keys of the table entries (0 for unused entries). */
+    private final long[] _keys;
+    /** Phi and delta of each entry. */
+    private final int[] _phi, _delta;
+    /** Number of positions searched to compute each entry. */
+    private final long[] _work;
+    /** Proof size of each solved entry. */
+    private final long[] _size;
+    /** Number of entries in use. */
+    private int _used;
+    /** Number of positions searched and the limit on that number in the
+     *  current search. */
+    private long _nodes, _maxNodes;
+    /** Number of collections in the current search. */
+    private int _collections;
+    /** A winning move at the root, once one is proved. */
+    private Move _move;
+}
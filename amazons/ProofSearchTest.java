@@ -0,0 +1,103 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static amazons.Piece.*;
+
+/** Tests of the proof-number search.
+ *  @author Wenhan Jin
+ */
+public class ProofSearchTest {
+
+    @Test
+    public void testFinished() {
+        Board b = new Board(Layout.parse(4, "a1/d4"));
+        for (String s : new String[] { "a2", "b2", "b1" }) {
+            b.put(SPEAR, b.grid().sq(s));
+        }
+        ProofSearch.Result result = new ProofSearch(4).solve(b, 1000);
+        assertEquals(BLACK, result.winner);
+        assertNull(result.move);
+        assertEquals(1, result.proofSize);
+    }
+
+    @Test
+    public void testAgainstSearch() {
+        Random random = new Random(42);
+        ProofSearch large = new ProofSearch(16), small = new ProofSearch(6);
+        int checked = 0;
+        for (int game = 0; game < 40; game += 1) {
+            Board b = new Board(Layout.parse(4, "a1,d1/a4,d4"));
+            while (b.winner() == null) {
+                if (countEmpty(b) <= 7) {
+                    Piece expected = whiteWins(b) ? WHITE : BLACK;
+                    for (ProofSearch prover : List.of(large, small)) {
+                        ProofSearch.Result result =
+                            prover.solve(b, Long.MAX_VALUE);
+                        assertEquals(expected, result.winner);
+                        assertTrue(result.proofSize > 0);
+                        if (expected == b.turn()) {
+                            b.makeMove(result.move);
+                            assertEquals(expected == WHITE, whiteWins(b));
+                            b.undo();
+                        } else {
+                            assertNull(result.move);
+                        }
+                    }
+                    checked += 1;
+                }
+                List<Move> moves = new ArrayList<>();
+                b.legalMoves().forEachRemaining(moves::add);
+                b.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+        assertTrue(checked > 100);
+        assertTrue(small.used() <= 1 << 6);
+    }
+
+    @Test
+    public void testNodeLimit() {
+        Board b = new Board(Layout.parse(5, "a1,e1/a5,e5"));
+        ProofSearch.Result result = new ProofSearch(10).solve(b, 1000);
+        assertNull(result.winner);
+        assertNull(result.move);
+        assertTrue(result.nodes <= 1000);
+        assertTrue(result.phi > 0 && result.delta > 0);
+    }
+
+    /** Return true iff white wins B with best play, by exhaustive
+     *  search. */
+    private static boolean whiteWins(Board b) {
+        Piece winner = b.winner();
+        if (winner != null) {
+            return winner == WHITE;
+        }
+        List<Move> moves = new ArrayList<>();
+        b.legalMoves().forEachRemaining(moves::add);
+        for (Move m : moves) {
+            b.makeMove(m);
+            boolean white = whiteWins(b);
+            b.undo();
+            if (white == (b.turn() == WHITE)) {
+                return white;
+            }
+        }
+        return b.turn() != WHITE;
+    }
+
+    /** Return the number of empty squares of B. */
+    private static int countEmpty(Board b) {
+        int count = 0;
+        for (int k = 0; k < b.grid().count(); k += 1) {
+            if (b.get(k) == EMPTY) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+}
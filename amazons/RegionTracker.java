@@ -0,0 +1,378 @@
+package amazons;
+
+import java.util.Arrays;
+
+import static amazons.Piece.*;
+
+/** The regions of a Board (the connected groups, in all eight
+ *  directions, of squares not holding spears), kept up to date as the
+ *  Board's squares change.  Each region has a label (a small
+ *  non-negative integer, reused once the region disappears) and counts
+ *  of its empty squares and of each side's queens.  Moving a queen
+ *  changes only counts.  Removing a spear joins the regions around it,
+ *  relabeling all but the largest.  Placing a spear may split its
+ *  region; when the squares around the spear are still adjacent to each
+ *  other, it cannot, and otherwise a search from one of them usually
+ *  finds the others quickly.
+ *  @author Wenhan Jin
+ */
+final class RegionTracker {
+
+    /** A tracker for the regions of a board on GRID with contents
+     *  CONTENTS (indexed by Square index), which initially are all null
+     *  (and treated as spears). */
+    RegionTracker(Grid grid, Piece[] contents) {
+        int n = grid.count();
+        _grid = grid;
+        _contents = contents;
+        _label = new int[n];
+        Arrays.fill(_label, -1);
+        _size = new int[n];
+        _empties = new int[n];
+        _queens = new int[][] { new int[n], new int[n] };
+        _free = new int[n];
+        for (int r = 0; r < n; r += 1) {
+            _free[r] = n - 1 - r;
+        }
+        _freeCount = n;
+        _cols = new int[n];
+        _rows = new int[n];
+        for (int k = 0; k < n; k += 1) {
+            _cols[k] = k % grid.size();
+            _rows[k] = k / grid.size();
+        }
+        _mark = new int[n];
+        _group = new int[n];
+        _queue = new int[n];
+        _queues = new int[8][n];
+    }
+
+    /** Make my state the same as that of OTHER, which tracks a board of
+     *  the same size. */
+    void copy(RegionTracker other) {
+        System.arraycopy(other._label, 0, _label, 0, _label.length);
+        System.arraycopy(other._size, 0, _size, 0, _size.length);
+        System.arraycopy(other._empties, 0, _empties, 0, _empties.length);
+        for (int i = 0; i < 2; i += 1) {
+            System.arraycopy(other._queens[i], 0, _queens[i], 0,
+                             _queens[i].length);
+        }
+        System.arraycopy(other._free, 0, _free, 0, _free.length);
+        _freeCount = other._freeCount;
+        _contested = other._contested;
+    }
+
+    /** Return the label of the region containing the square with index K,
+     *  or -1 if it holds a spear. */
+    int label(int k) {
+        return _label[k];
+    }
+
+    /** Return the number of empty squares in the region labeled R. */
+    int empties(int r) {
+        return _empties[r];
+    }
+
+    /** Return the number of SIDE's queens in the region labeled R. */
+    int queens(Piece side, int r) {
+        return _queens[Board.side(side)][r];
+    }
+
+    /** Return the number of regions containing queens of both sides. */
+    int contested() {
+        return _contested;
+    }
+
+    /** Record that the square with index K, which held OLD (null if it
+     *  has never been set), now holds its current contents. */
+    void changed(int k, Piece old) {
+        Piece p = _contents[k];
+        boolean was = old != null && old != SPEAR, is = p != SPEAR;
+        if (was && is) {
+            count(_label[k], p, 1);
+            count(_label[k], old, -1);
+        } else if (was) {
+            int r = _label[k];
+            count(r, old, -1);
+            _label[k] = -1;
+            split(k, r);
+        } else if (is) {
+            join(k);
+            count(_label[k], p, 1);
+        }
+    }
+
+    /** Add DELTA to the count of pieces P (and of squares) in region R,
+     *  keeping _contested up to date, and freeing R if it becomes
+     *  empty. */
+    private void count(int r, Piece p, int delta) {
+        boolean contested = isContested(r);
+        _size[r] += delta;
+        if (p == EMPTY) {
+            _empties[r] += delta;
+        } else {
+            _queens[Board.side(p)][r] += delta;
+        }
+        if (isContested(r) != contested) {
+            _contested += contested ? -1 : 1;
+        }
+        if (_size[r] == 0) {
+            _free[_freeCount++] = r;
+        }
+    }
+
+    /** Return true iff region R contains queens of both sides. */
+    private boolean isContested(int r) {
+        return _queens[0][r] > 0 && _queens[1][r] > 0;
+    }
+
+    /** Give the square with index K, which no longer holds a spear (and
+     *  is not yet counted), the label of the largest region next to it,
+     *  merging any other neighboring regions into that one. */
+    private void join(int k) {
+        int n = neighbors(k);
+        int target = -1;
+        for (int i = 0; i < n; i += 1) {
+            int r = _label[_around[i]];
+            if (target == -1 || _size[r] > _size[target]) {
+                target = r;
+            }
+        }
+        if (target == -1) {
+            target = _free[--_freeCount];
+        }
+        _label[k] = target;
+        for (int i = 0; i < n; i += 1) {
+            int r = _label[_around[i]];
+            if (r != target) {
+                relabel(_around[i], r, target);
+            }
+        }
+    }
+
+    /** Relabel all squares of the region labeled FROM, which includes the
+     *  square with index START, as TO, moving its counts to TO. */
+    private void relabel(int start, int from, int to) {
+        int contested = (isContested(to) ? 1 : 0)
+            + (isContested(from) ? 1 : 0);
+        int head = 0, tail = 0;
+        _label[start] = to;
+        _queue[tail++] = start;
+        while (head < tail) {
+            int k = _queue[head++];
+            for (int j : _grid.adjacent(k)) {
+                if (_label[j] == from) {
+                    _label[j] = to;
+                    _queue[tail++] = j;
+                }
+            }
+        }
+        _size[to] += _size[from];
+        _empties[to] += _empties[from];
+        _queens[0][to] += _queens[0][from];
+        _queens[1][to] += _queens[1][from];
+        _contested += (isContested(to) ? 1 : 0) - contested;
+        _size[from] = _empties[from] = 0;
+        _queens[0][from] = _queens[1][from] = 0;
+        _free[_freeCount++] = from;
+    }
+
+    /** Having just placed a spear on the square with index K, formerly in
+     *  region R, give each part of R that is no longer connected to the
+     *  rest a new label.  The squares around K fall into groups that are
+     *  adjacent to each other; if there is only one, R is still
+     *  connected.  Otherwise, searches from all the groups proceed in
+     *  turn, one square at a time.  Groups whose searches meet are
+     *  connected; a group whose search runs out of squares first is a
+     *  separate part.  The work done is thus roughly proportional to the
+     *  number of groups times the size of the smaller parts (or the
+     *  length of the path joining them). */
+    private void split(int k, int r) {
+        int n = neighbors(k);
+        if (n <= 1) {
+            return;
+        }
+        int groups = 0;
+        _stamp += 1;
+        for (int i = 0; i < n; i += 1) {
+            int a = _around[i];
+            int g = -1;
+            for (int j = 0; j < i; j += 1) {
+                if (touching(a, _around[j])) {
+                    int h = find(_group[_around[j]]);
+                    if (g == -1) {
+                        g = h;
+                    } else if (g != h) {
+                        _parent[h] = g;
+                        groups -= 1;
+                    }
+                }
+            }
+            if (g == -1) {
+                g = i;
+                _parent[g] = g;
+                groups += 1;
+            }
+            _mark[a] = _stamp;
+            _group[a] = i;
+            _parent[i] = g;
+            _queues[i][0] = a;
+            _heads[i] = 0;
+            _tails[i] = 1;
+        }
+        while (groups > 1) {
+            for (int i = 0; i < n && groups > 1; i += 1) {
+                int g = find(i);
+                if (g < 0) {
+                    continue;
+                }
+                if (_heads[i] < _tails[i]) {
+                    int j = _queues[i][_heads[i]++];
+                    for (int x : _grid.adjacent(j)) {
+                        if (_label[x] != r) {
+                            continue;
+                        }
+                        if (_mark[x] != _stamp) {
+                            _mark[x] = _stamp;
+                            _group[x] = i;
+                            _queues[i][_tails[i]++] = x;
+                        } else if (_group[x] != i) {
+                            int h = find(_group[x]);
+                            if (h != g && h >= 0) {
+                                _parent[h] = g;
+                                groups -= 1;
+                            }
+                        }
+                    }
+                } else if (exhausted(g, n)) {
+                    detach(_around[i], r);
+                    for (int m = 0; m < n; m += 1) {
+                        _parent[m] = find(m);
+                    }
+                    for (int m = 0; m < n; m += 1) {
+                        if (_parent[m] == g) {
+                            _heads[m] = _tails[m];
+                            _parent[m] = -1;
+                        }
+                    }
+                    groups -= 1;
+                }
+            }
+        }
+    }
+
+    /** Return the group (see split) to which group G has been joined,
+     *  or -1 if it has been detached, halving the path from G as it
+     *  goes. */
+    private int find(int g) {
+        while (g >= 0 && _parent[g] != g) {
+            int p = _parent[g];
+            if (p >= 0) {
+                _parent[g] = _parent[p];
+            }
+            g = _parent[g];
+        }
+        return g;
+    }
+
+    /** Return true iff the searches of all of the first N groups that
+     *  have been joined to G have run out of squares. */
+    private boolean exhausted(int g, int n) {
+        for (int i = 0; i < n; i += 1) {
+            if (find(i) == g && _heads[i] < _tails[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Give the part of region R containing the square with index START
+     *  a new label, moving its counts from R. */
+    private void detach(int start, int r) {
+        int target = _free[--_freeCount];
+        boolean contested = isContested(r);
+        int head = 0, tail = 0;
+        _label[start] = target;
+        _queue[tail++] = start;
+        while (head < tail) {
+            int j = _queue[head++];
+            Piece p = _contents[j];
+            _size[target] += 1;
+            _size[r] -= 1;
+            if (p == EMPTY) {
+                _empties[target] += 1;
+                _empties[r] -= 1;
+            } else {
+                _queens[Board.side(p)][target] += 1;
+                _queens[Board.side(p)][r] -= 1;
+            }
+            for (int x : _grid.adjacent(j)) {
+                if (_label[x] == r) {
+                    _label[x] = target;
+                    _queue[tail++] = x;
+                }
+            }
+        }
+        _contested += (isContested(r) ? 1 : 0) + (isContested(target) ? 1 : 0)
+            - (contested ? 1 : 0);
+    }
+
+    /** Fill _around with the indices of the squares next to the square
+     *  with index K that do not hold spears, and return their number. */
+    private int neighbors(int k) {
+        int n = 0;
+        for (int j : _grid.adjacent(k)) {
+            if (_label[j] >= 0) {
+                _around[n++] = j;
+            }
+        }
+        return n;
+    }
+
+    /** Return true iff the squares with indices A and B are next to each
+     *  other. */
+    private boolean touching(int a, int b) {
+        return Math.abs(_cols[a] - _cols[b]) <= 1
+            && Math.abs(_rows[a] - _rows[b]) <= 1;
+    }
+
+    /** The board geometry. */
+    private final Grid _grid;
+    /** Column and row of each square, by index. */
+    private final int[] _cols, _rows;
+    /** The board's contents, by square index. */
+    private final Piece[] _contents;
+    /** _label[k] is label(k). */
+    private final int[] _label;
+    /** Numbers of squares and of empty squares in each region. */
+    private final int[] _size, _empties;
+    /** _queens[i][r] is the number of queens of side i (as for
+     *  Board.side) in region r. */
+    private final int[][] _queens;
+    /** A stack of unused labels; the first _freeCount are valid. */
+    private final int[] _free;
+    /** Number of unused labels. */
+    private int _freeCount;
+    /** Value of contested(). */
+    private int _contested;
+
+    /** Squares next to the square being changed (see neighbors). */
+    private final int[] _around = new int[8];
+    /** Squares visited by the current search are marked with _stamp. */
+    private final int[] _mark;
+    /** Current mark for searches. */
+    private int _stamp;
+    /** For squares marked by split, the search that reached them. */
+    private final int[] _group;
+    /** Work queue for relabeling. */
+    private final int[] _queue;
+    /** Work queues, with their heads and tails, of the searches made by
+     *  split from each square in _around. */
+    private final int[][] _queues;
+    /** See _queues. */
+    private final int[] _heads = new int[8], _tails = new int[8];
+    /** _parent[i] is the search joined with search i (i itself if none),
+     *  or -1 if search i's part has been detached (which is then true of
+     *  every search joined with it). */
+    private final int[] _parent = new int[8];
+}
@@ -0,0 +1,430 @@
+package amazons;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import static amazons.Piece.*;
+
+/** The division of an Amazons position into regions: the connected
+ *  (in all eight directions) groups of squares not holding spears, which
+ *  the Board maintains as its contents change.  Once
+ *  no region holds queens of both sides, the players can no longer
+ *  interfere with each other, and the game is decided by the number of
+ *  moves each can still make in its own regions.  For regions with few
+ *  enough empty squares, that number is computed exactly, and cached by
+ *  the region's shape and queen placement.
+ *  @author Wenhan Jin
+ */
+final class Regions {
+
+    /** The largest number of empty squares in a region whose number of
+     *  moves is computed exactly. */
+    static final int SOLVE_LIMIT = 14;
+
+    /** The regions of BOARD, as maintained by BOARD (see Board.region),
+     *  numbered from 0 in order of their first squares. */
+    Regions(Board board) {
+        int n = board.grid().count();
+        _region = new int[n];
+        _index = new int[n];
+        _labels = new int[n];
+        _empties = new int[n];
+        _owners = new Piece[n];
+        _moves = new int[n];
+        update(board);
+    }
+
+    /** Make me describe the regions of BOARD as they are now, reusing my
+     *  storage.  BOARD must have the size of the board I was created
+     *  for. */
+    void update(Board board) {
+        int n = _region.length;
+        if (board.grid().count() != n) {
+            throw Utils.error("board must have %d squares", n);
+        }
+        int[] index = _index, labels = _labels;
+        Arrays.fill(index, -1);
+        int count = 0;
+        for (int k = 0; k < n; k += 1) {
+            int label = board.region(k);
+            if (label < 0) {
+                _region[k] = -1;
+            } else {
+                if (index[label] < 0) {
+                    index[label] = count;
+                    labels[count] = label;
+                    count += 1;
+                }
+                _region[k] = index[label];
+            }
+        }
+        _board = board;
+        _count = count;
+        for (int r = 0; r < count; r += 1) {
+            _empties[r] = board.regionEmpties(labels[r]);
+            _owners[r] = board.regionOwner(labels[r]);
+        }
+        Arrays.fill(_moves, 0, count, UNSOLVED);
+    }
+
+    /** Limit later exact solutions (see moves and fill) to regions of at
+     *  most LIMIT empty squares, searching at most NODES positions for
+     *  each, and giving up as soon as STOP, if not null, returns true.
+     *  Regions not solved within these limits count as too large to
+     *  solve.  Initially, regions of up to SOLVE_LIMIT empty squares are
+     *  solved, without limit on the positions searched. */
+    void limit(int limit, long nodes, BooleanSupplier stop) {
+        _limit = limit;
+        _nodes = nodes;
+        _stop = stop;
+    }
+
+    /** Return the number of regions. */
+    int count() {
+        return _count;
+    }
+
+    /** Return the region containing the square with index K, or -1 if K
+     *  holds a spear. */
+    int region(int k) {
+        return _region[k];
+    }
+
+    /** Return the number of empty squares in region R. */
+    int empties(int r) {
+        return _empties[r];
+    }
+
+    /** Return the side whose queens are in region R, EMPTY if there are
+     *  none, or null if there are queens of both sides. */
+    Piece owner(int r) {
+        return _owners[r];
+    }
+
+    /** Return true iff no region contains queens of both sides. */
+    boolean separated() {
+        return _board.separated();
+    }
+
+    /** Return the largest number of moves that the queens in region R can
+     *  make there, supposing that no other pieces move, or -1 if R
+     *  contains queens of both sides or is too large to solve exactly
+     *  (see limit). */
+    int moves(int r) {
+        if (_moves[r] == UNSOLVED) {
+            _moves[r] = solve(r);
+        }
+        return _moves[r];
+    }
+
+    /** Return the total of moves(r) over the regions r owned by SIDE, or
+     *  -1 if any of them is -1. */
+    int moves(Piece side) {
+        int total = 0;
+        for (int r = 0; r < _count; r += 1) {
+            if (owner(r) == side) {
+                int m = moves(r);
+                if (m < 0) {
+                    return -1;
+                }
+                total += m;
+            }
+        }
+        return total;
+    }
+
+    /** Return a move by one of the queens in region R that leaves them
+     *  as many further moves there as possible (moves(R) - 1), or null if
+     *  they have no moves, moves(R) is -1, or the move is not found
+     *  within the limits on solving (see limit).  Any other move in R can
+     *  only leave fewer, so that for the side owning R, this move is at
+     *  least as good as any other in R. */
+    Move fill(int r) {
+        int moves = moves(r);
+        if (moves <= 0) {
+            return null;
+        }
+        int[] box = bounds(r);
+        int width = box[2], height = box[3];
+        long empty = contents(r, box, EMPTY),
+            queens = contents(r, box, owner(r));
+        Grid grid = _board.grid();
+        _left = _nodes;
+        for (long qs = queens; qs != 0; qs &= qs - 1) {
+            int from = Long.numberOfTrailingZeros(qs);
+            long vacated = empty | (1L << from);
+            for (int[] dir : Square.DIR) {
+                for (int to = step(width, height, from, dir);
+                     to >= 0 && (empty & (1L << to)) != 0;
+                     to = step(width, height, to, dir)) {
+                    long moved = vacated & ~(1L << to);
+                    for (int[] dir2 : Square.DIR) {
+                        for (int spear = step(width, height, to, dir2);
+                             spear >= 0 && (moved & (1L << spear)) != 0;
+                             spear = step(width, height, spear, dir2)) {
+                            int value = solve(width, height,
+                                              moved & ~(1L << spear),
+                                              queens & ~(1L << from)
+                                              | (1L << to));
+                            if (value < 0) {
+                                return null;
+                            } else if (1 + value == moves) {
+                                return Move.mv(square(grid, box, from),
+                                               square(grid, box, to),
+                                               square(grid, box, spear));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("no move achieves solved value");
+    }
+
+    /** Return the threshold in TABLE (see Tablebase) of region R, which
+     *  holds queens of both sides, with TOMOVE to move: the least number
+     *  of spare moves that white needs to win (a negative number being
+     *  spare moves for black), or Tablebase.UNKNOWN if R is not in
+     *  TABLE. */
+    int threshold(int r, Piece toMove, Tablebase table) {
+        if (owner(r) != null) {
+            throw new IllegalStateException("region is not contested");
+        }
+        int[] box = bounds(r);
+        if (box[2] * box[3] > Long.SIZE) {
+            return Tablebase.UNKNOWN;
+        }
+        return table.threshold(box[2], box[3], contents(r, box, EMPTY),
+                               contents(r, box, WHITE),
+                               contents(r, box, BLACK), toMove);
+    }
+
+    /** Return the value of moves(R), computed from scratch (but using
+     *  the caches of solved and abandoned shapes). */
+    private int solve(int r) {
+        if (owner(r) == null || _empties[r] > _limit) {
+            return -1;
+        } else if (owner(r) == EMPTY || _empties[r] == 0) {
+            return 0;
+        }
+        int[] box = bounds(r);
+        if (box[2] * box[3] > Long.SIZE) {
+            return -1;
+        }
+        long empty = contents(r, box, EMPTY),
+            queens = contents(r, box, owner(r));
+        Shape key = new Shape(box[2], empty, queens);
+        Long tried = ABANDONED.get(key);
+        if (tried != null && tried >= _nodes) {
+            return -1;
+        }
+        _left = _nodes;
+        _stopped = false;
+        int moves = solve(box[2], box[3], empty, queens);
+        if (moves < 0 && !_stopped) {
+            if (ABANDONED.size() >= CACHE_LIMIT) {
+                ABANDONED.clear();
+            }
+            ABANDONED.merge(key, _nodes, Math::max);
+        }
+        return moves;
+    }
+
+    /** Return the bounding rectangle of region R as { leftmost column,
+     *  lowest row, width, height }. */
+    private int[] bounds(int r) {
+        int size = _board.grid().size();
+        int minCol = size, maxCol = -1, minRow = size, maxRow = -1;
+        for (int k = 0; k < _region.length; k += 1) {
+            if (_region[k] == r) {
+                minCol = Math.min(minCol, k % size);
+                maxCol = Math.max(maxCol, k % size);
+                minRow = Math.min(minRow, k / size);
+                maxRow = Math.max(maxRow, k / size);
+            }
+        }
+        return new int[] { minCol, minRow, maxCol - minCol + 1,
+                           maxRow - minRow + 1 };
+    }
+
+    /** Return the squares of region R, whose bounding rectangle is BOX
+     *  (as for bounds), that hold PIECE (EMPTY, WHITE, or BLACK), as bits
+     *  of the rectangle (as for solve(int, int, long, long)), which must
+     *  have at most 64 squares. */
+    private long contents(int r, int[] box, Piece piece) {
+        int size = _board.grid().size();
+        long result = 0;
+        for (int k = 0; k < _region.length; k += 1) {
+            if (_region[k] == r && _board.get(k) == piece) {
+                result |= 1L << ((k / size - box[1]) * box[2]
+                                 + k % size - box[0]);
+            }
+        }
+        return result;
+    }
+
+    /** Return the square of GRID denoted by bit K of the rectangle BOX
+     *  (as for contents). */
+    private static Square square(Grid grid, int[] box, int k) {
+        return grid.sq(box[0] + k % box[2], box[1] + k / box[2]);
+    }
+
+    /** Return the largest number of moves that can be made one after
+     *  another by queens QUEENS in a WIDTH x HEIGHT rectangle whose empty
+     *  squares are EMPTY.  Bit c + WIDTH * r of EMPTY or QUEENS denotes
+     *  column c and row r of the rectangle.  Squares in neither are
+     *  blocked.  Return -1 instead if more than _left positions not
+     *  already in SOLVED would have to be searched, or _stop says to
+     *  stop (then setting _stopped), deducting the positions searched
+     *  from _left.  Only complete results are cached. */
+    private int solve(int width, int height, long empty, long queens) {
+        Shape key = new Shape(width, empty, queens);
+        Integer known = SOLVED.get(key);
+        if (known != null) {
+            return known;
+        }
+        if (_left <= 0) {
+            return -1;
+        } else if ((_left & STOP_INTERVAL) == 0 && _stop != null
+                   && _stop.getAsBoolean()) {
+            _left = 0;
+            _stopped = true;
+            return -1;
+        }
+        _left -= 1;
+        int limit = Long.bitCount(empty);
+        int best = 0;
+    search:
+        for (long qs = queens; qs != 0; qs &= qs - 1) {
+            int from = Long.numberOfTrailingZeros(qs);
+            long vacated = empty | (1L << from);
+            for (int[] dir : Square.DIR) {
+                for (int to = step(width, height, from, dir);
+                     to >= 0 && (empty & (1L << to)) != 0;
+                     to = step(width, height, to, dir)) {
+                    long moved = vacated & ~(1L << to);
+                    for (int[] dir2 : Square.DIR) {
+                        for (int spear = step(width, height, to, dir2);
+                             spear >= 0 && (moved & (1L << spear)) != 0;
+                             spear = step(width, height, spear, dir2)) {
+                            int value = solve(width, height,
+                                              moved & ~(1L << spear),
+                                              queens & ~(1L << from)
+                                              | (1L << to));
+                            if (value < 0) {
+                                return -1;
+                            }
+                            value += 1;
+                            if (value > best) {
+                                best = value;
+                                if (best == limit) {
+                                    break search;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (SOLVED.size() >= CACHE_LIMIT) {
+            SOLVED.clear();
+        }
+        SOLVED.put(key, best);
+        return best;
+    }
+
+    /** Return the index of the square one step from K in direction DIR
+     *  (as for Square.DIR) in a WIDTH x HEIGHT rectangle, or -1 if that
+     *  is off the rectangle. */
+    static int step(int width, int height, int k, int[] dir) {
+        int col = k % width + dir[0], row = k / width + dir[1];
+        if (col < 0 || col >= width || row < 0 || row >= height) {
+            return -1;
+        }
+        return row * width + col;
+    }
+
+    /** The contents of a region, translated to the lower-left corner of
+     *  its bounding rectangle, as a key for SOLVED. */
+    private static final class Shape {
+        /** The contents of a region of width WIDTH, with empty squares
+         *  EMPTY and queens QUEENS (as for solve). */
+        Shape(int width, long empty, long queens) {
+            _width = width;
+            _empty = empty;
+            _queens = queens;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Shape)) {
+                return false;
+            }
+            Shape other = (Shape) obj;
+            return _width == other._width && _empty == other._empty
+                && _queens == other._queens;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_width, _empty, _queens);
+        }
+
+        /** Width of the bounding rectangle. */
+        private final int _width;
+        /** Empty squares and queens, as for solve. */
+        private final long _empty, _queens;
+    }
+
+    /** Marks an element of _moves that has not yet been computed. */
+    private static final int UNSOLVED = -2;
+
+    /** One less than the number of positions searched by solve between
+     *  checks of _stop (a power of 2). */
+    private static final long STOP_INTERVAL = (1 << 10) - 1;
+
+    /** The number of shapes at which SOLVED is cleared. */
+    private static final int CACHE_LIMIT = 1 << 20;
+
+    /** Maps each region shape solved so far to its number of moves.
+     *  Shared among all threads. */
+    private static final Map<Shape, Integer> SOLVED =
+        new ConcurrentHashMap<>();
+
+    /** Maps each region shape whose solution was abandoned for lack of
+     *  positions (see limit) to the largest number tried, so that it is
+     *  not tried again with as few.  Shared among all threads. */
+    private static final Map<Shape, Long> ABANDONED =
+        new ConcurrentHashMap<>();
+
+    /** The board analyzed. */
+    private Board _board;
+    /** Number of regions. */
+    private int _count;
+    /** _region[k] is the region containing square k, or -1 for spears. */
+    private final int[] _region;
+    /** Work space for update: the region numbers of the board's region
+     *  labels, and the labels of the regions. */
+    private final int[] _index, _labels;
+    /** Number of empty squares in each region. */
+    private final int[] _empties;
+    /** owner(r) for each region r. */
+    private final Piece[] _owners;
+    /** _moves[r] caches moves(r), or is UNSOLVED. */
+    private final int[] _moves;
+    /** Largest number of empty squares in a region solved (see limit). */
+    private int _limit = SOLVE_LIMIT;
+    /** Number of positions that solving one region may search (see
+     *  limit). */
+    private long _nodes = Long.MAX_VALUE;
+    /** Number of positions left to the current solution. */
+    private long _left;
+    /** Says when to give up solving, or null. */
+    private BooleanSupplier _stop;
+    /** True iff the last solution was abandoned because _stop said to
+     *  stop. */
+    private boolean _stopped;
+}
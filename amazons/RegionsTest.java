@@ -0,0 +1,230 @@
+package amazons;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static amazons.Piece.*;
+
+/** Tests of region detection and the region solver.
+ *  @author Wenhan Jin
+ */
+public class RegionsTest {
+
+    /** Return a 6x6 board with a white queen on b1 and a black queen on
+     *  f6, and spears on each of the squares in SPEARS. */
+    private static Board board(String... spears) {
+        Board b = new Board(Layout.parse(6, "b1/f6"));
+        for (String s : spears) {
+            b.put(SPEAR, b.grid().sq(s));
+        }
+        return b;
+    }
+
+    @Test
+    public void testInitial() {
+        Regions regions = new Regions(new Board());
+        assertEquals(1, regions.count());
+        assertNull(regions.owner(0));
+        assertEquals(92, regions.empties(0));
+        assertFalse(regions.separated());
+        assertFalse(new Board().separated());
+        assertEquals(0, regions.moves(WHITE));
+    }
+
+    @Test
+    public void testSeparated() {
+        Board b = board("a2", "b2", "c2", "d2", "d1");
+        Regions regions = new Regions(b);
+        assertTrue(regions.separated());
+        assertTrue(b.separated());
+        assertEquals(2, regions.count());
+        int white = regions.region(b.grid().sq("b1").index());
+        assertEquals(WHITE, regions.owner(white));
+        assertEquals(2, regions.empties(white));
+        assertEquals(-1, regions.region(b.grid().sq("a2").index()));
+        assertEquals(2, regions.moves(white));
+        assertEquals(2, regions.moves(WHITE));
+        assertEquals(-1, regions.moves(BLACK));
+    }
+
+    @Test
+    public void testSolve() {
+        Board b = board("a3", "b3", "c3", "c2", "c1");
+        Regions regions = new Regions(b);
+        assertEquals(3, regions.moves(WHITE));
+        b.put(SPEAR, b.grid().sq("a2"));
+        assertEquals(2, new Regions(b).moves(WHITE));
+        b = board("a2", "b2", "c2", "d2", "d1");
+        b.put(SPEAR, b.grid().sq("e5"));
+        b.put(SPEAR, b.grid().sq("f5"));
+        b.put(SPEAR, b.grid().sq("e6"));
+        regions = new Regions(b);
+        assertEquals(3, regions.count());
+        assertEquals(0, regions.moves(BLACK));
+        assertEquals(EMPTY,
+                     regions.owner(regions.region(b.grid().sq("f1")
+                                                  .index())));
+    }
+
+    @Test
+    public void testLimit() {
+        Board b = board("a3", "b3", "c3", "c2", "c1");
+        Regions regions = new Regions(b);
+        regions.limit(2, Long.MAX_VALUE, null);
+        regions.update(b);
+        assertEquals(-1, regions.moves(WHITE));
+        assertNull(regions.fill(regions.region(b.grid().sq("b1").index())));
+        regions.limit(3, Long.MAX_VALUE, () -> false);
+        regions.update(b);
+        assertEquals(3, regions.moves(WHITE));
+    }
+
+    @Test
+    public void testCorners() {
+        Board b = new Board(Layout.parse(6, "e6/a1"));
+        for (String s : new String[] { "d6", "d5", "e5", "f5",
+                                       "b1", "b2", "a2" }) {
+            b.put(SPEAR, b.grid().sq(s));
+        }
+        Regions regions = new Regions(b);
+        assertTrue(regions.separated());
+        assertEquals(1, regions.moves(WHITE));
+        assertEquals(0, regions.moves(BLACK));
+    }
+
+    @Test
+    public void testAgainstBoard() {
+        Board b = board("d1", "d2", "d3", "d4", "a4", "b4", "c4",
+                        "e5", "f5", "e6");
+        b.put(SPEAR, b.grid().sq("c3"));
+        Regions regions = new Regions(b);
+        int white = regions.region(b.grid().sq("b1").index());
+        assertEquals(7, regions.empties(white));
+        assertEquals(longest(b, WHITE, new HashMap<>()),
+                     regions.moves(white));
+        b.put(WHITE, b.grid().sq("a3"));
+        assertEquals(longest(b, WHITE, new HashMap<>()),
+                     new Regions(b).moves(WHITE));
+    }
+
+    @Test
+    public void testFill() {
+        Board b = board("d1", "d2", "d3", "d4", "a4", "b4", "c4",
+                        "e5", "f5", "e6");
+        b.put(WHITE, b.grid().sq("a3"));
+        Regions regions = new Regions(b);
+        int white = regions.region(b.grid().sq("b1").index());
+        int moves = regions.moves(white);
+        Move fill = regions.fill(white);
+        assertNotNull(fill);
+        assertEquals(white, regions.region(fill.from().index()));
+        b.setTurn(WHITE);
+        assertTrue(b.isLegal(fill, null));
+        b.makeMove(fill);
+        assertEquals(moves - 1, new Regions(b).moves(WHITE));
+        assertNull(regions.fill(regions.region(b.grid().sq("f6")
+                                               .index())));
+    }
+
+    /** Return the largest number of moves SIDE can make in a row on B,
+     *  memoizing results by position hash in MEMO. */
+    private static int longest(Board b, Piece side, Map<Long, Integer> memo) {
+        b.setTurn(side);
+        Integer known = memo.get(b.hash());
+        if (known != null) {
+            return known;
+        }
+        int best = 0;
+        Iterator<Move> legal = b.legalMoves(side);
+        while (legal.hasNext()) {
+            b.makeMove(legal.next());
+            best = Math.max(best, 1 + longest(b, side, memo));
+            b.undo();
+            b.setTurn(side);
+        }
+        memo.put(b.hash(), best);
+        return best;
+    }
+
+    @Test
+    public void testIncremental() {
+        for (int size : new int[] { 6, 10 }) {
+            Board b = new Board(Layout.standard(size));
+            Random random = new Random(size);
+            int plies = 0;
+            while (b.winner() == null) {
+                List<Move> moves = new ArrayList<>();
+                b.legalMoves().forEachRemaining(moves::add);
+                b.makeMove(moves.get(random.nextInt(moves.size())));
+                plies += 1;
+                checkRegions(b);
+                if (random.nextInt(4) == 0) {
+                    b.undo();
+                    plies -= 1;
+                    checkRegions(b);
+                }
+            }
+            checkRegions(new Board(b));
+            while (plies > 0) {
+                b.undo();
+                plies -= 1;
+                checkRegions(b);
+            }
+        }
+    }
+
+    /** Check B's regions against a fresh flood fill of its squares. */
+    private static void checkRegions(Board b) {
+        Grid grid = b.grid();
+        int n = grid.count();
+        int[] fill = new int[n];
+        Arrays.fill(fill, -1);
+        boolean separated = true;
+        for (int k0 = 0; k0 < n; k0 += 1) {
+            if (fill[k0] >= 0 || b.get(k0) == SPEAR) {
+                continue;
+            }
+            ArrayDeque<Integer> work = new ArrayDeque<>();
+            work.add(k0);
+            fill[k0] = k0;
+            int empties = 0, whites = 0, blacks = 0;
+            while (!work.isEmpty()) {
+                int k = work.remove();
+                empties += b.get(k) == EMPTY ? 1 : 0;
+                whites += b.get(k) == WHITE ? 1 : 0;
+                blacks += b.get(k) == BLACK ? 1 : 0;
+                assertEquals(b.region(k0), b.region(k));
+                SquareSet around = grid.neighbors(k);
+                for (int j = around.next(0); j >= 0; j = around.next(j + 1)) {
+                    if (fill[j] < 0 && b.get(j) != SPEAR) {
+                        fill[j] = k0;
+                        work.add(j);
+                    }
+                }
+            }
+            int r = b.region(k0);
+            assertEquals(empties, b.regionEmpties(r));
+            assertEquals(whites, b.regionQueens(WHITE, r));
+            assertEquals(blacks, b.regionQueens(BLACK, r));
+            separated &= whites == 0 || blacks == 0;
+        }
+        for (int k = 0; k < n; k += 1) {
+            for (int j = 0; j < n; j += 1) {
+                if (fill[k] >= 0 && fill[j] >= 0 && fill[k] != fill[j]) {
+                    assertNotEquals(b.region(k), b.region(j));
+                }
+            }
+            assertEquals(fill[k] < 0, b.region(k) < 0);
+        }
+        assertEquals(separated, b.separated());
+    }
+}
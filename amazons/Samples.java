@@ -0,0 +1,322 @@
+package amazons;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static amazons.Piece.*;
+import static amazons.Utils.error;
+
+/** A sequence of labelled positions, as generated by SelfPlay for
+ *  fitting evaluation functions.  Each sample holds a position on a
+ *  board of a fixed size, the side to move, a search value of the
+ *  position for white, and the winner of the game it occurred in.
+ *
+ *  Samples are stored by column: the positions packed two bits per
+ *  square (the ordinal of the Piece on square k in bits 2k and 2k+1,
+ *  counting from the least significant bit of the first byte), one bit
+ *  per sample each for the side to move (1 for black) and the winner (1
+ *  for white), and one int per sample for the value.  A sample file is
+ *  a header (MAGIC, VERSION, and the board size, as little-endian ints)
+ *  followed by chunks, each the sample count followed by the four
+ *  columns in that order: boards, sides to move, values, and winners
+ *  (see write).
+ *  @author Wenhan Jin
+ */
+final class Samples {
+
+    /** The first int of a sample file ("AMZS"). */
+    static final int MAGIC = 0x414d5a53;
+    /** The format version of sample files. */
+    static final int VERSION = 1;
+
+    /** An empty sequence of samples on SIZE x SIZE boards. */
+    Samples(int size) {
+        _size = size;
+        _grid = Grid.of(size);
+        _bytesPerBoard = (size * size + 3) / 4;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /** Return the board size of my samples. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the number of samples. */
+    int count() {
+        return _count;
+    }
+
+    /** Return the number of bytes holding each packed position. */
+    int bytesPerBoard() {
+        return _bytesPerBoard;
+    }
+
+    /** Return the packed positions of all samples, sample I occupying
+     *  bytesPerBoard() bytes starting at I * bytesPerBoard().  The
+     *  array should not be modified. */
+    byte[] boards() {
+        return _boards;
+    }
+
+    /** Add a sample for the position of BOARD, which must have my size,
+     *  with value SCORE for white, and return its index.  Its winner is
+     *  black until set by setWinner. */
+    int add(Board board, int score) {
+        if (board.size() != _size) {
+            throw error("sample board size must be %d", _size);
+        }
+        ensureCapacity(_count + 1);
+        int i = _count;
+        int base = i * _bytesPerBoard;
+        Arrays.fill(_boards, base, base + _bytesPerBoard, (byte) 0);
+        for (int k = 0; k < _grid.count(); k += 1) {
+            _boards[base + (k >> 2)] |=
+                board.get(k).ordinal() << (k & 3) * 2;
+        }
+        setBit(_turns, i, board.turn() == BLACK);
+        setBit(_winners, i, false);
+        _scores[i] = score;
+        _count += 1;
+        return i;
+    }
+
+    /** Set the winner of samples FROM to count() - 1 to WINNER. */
+    void setWinner(int from, Piece winner) {
+        for (int i = from; i < _count; i += 1) {
+            setBit(_winners, i, winner == WHITE);
+        }
+    }
+
+    /** Add copies of all samples of OTHER, which must have my size. */
+    void addAll(Samples other) {
+        if (other._size != _size) {
+            throw error("sample board size must be %d", _size);
+        }
+        ensureCapacity(_count + other._count);
+        System.arraycopy(other._boards, 0, _boards, _count * _bytesPerBoard,
+                         other._count * _bytesPerBoard);
+        System.arraycopy(other._scores, 0, _scores, _count, other._count);
+        for (int i = 0; i < other._count; i += 1) {
+            setBit(_turns, _count + i, bit(other._turns, i));
+            setBit(_winners, _count + i, bit(other._winners, i));
+        }
+        _count += other._count;
+    }
+
+    /** Remove all samples. */
+    void clear() {
+        _count = 0;
+    }
+
+    /** Return the contents of square K in the position of sample I. */
+    Piece get(int i, int k) {
+        int b = _boards[i * _bytesPerBoard + (k >> 2)];
+        return PIECES[(b >> (k & 3) * 2) & 3];
+    }
+
+    /** Return the side to move in sample I. */
+    Piece turn(int i) {
+        return bit(_turns, i) ? BLACK : WHITE;
+    }
+
+    /** Return the value for white of sample I. */
+    int score(int i) {
+        return _scores[i];
+    }
+
+    /** Return the winner of the game of sample I. */
+    Piece winner(int i) {
+        return bit(_winners, i) ? WHITE : BLACK;
+    }
+
+    /** Return a new board in the position of sample I. */
+    Board board(int i) {
+        Piece[] contents = new Piece[_grid.count()];
+        for (int k = 0; k < contents.length; k += 1) {
+            contents[k] = get(i, k);
+        }
+        return Board.of(_grid, contents, turn(i));
+    }
+
+    /** Write the header of a sample file for SIZE x SIZE boards to
+     *  OUT. */
+    static void writeHeader(WritableByteChannel out, int size)
+        throws IOException {
+        ByteBuffer header =
+            ByteBuffer.allocate(3 * Integer.BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(size).flip();
+        writeFully(out, header);
+    }
+
+    /** Write my samples to OUT as one chunk of a sample file. */
+    void write(WritableByteChannel out) throws IOException {
+        int bits = (_count + 7) / 8;
+        ByteBuffer count =
+            ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        count.putInt(_count).flip();
+        ByteBuffer scores =
+            ByteBuffer.allocate(_count * Integer.BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        scores.asIntBuffer().put(_scores, 0, _count);
+        writeFully(out, count);
+        writeFully(out,
+                   ByteBuffer.wrap(_boards, 0, _count * _bytesPerBoard));
+        writeFully(out, ByteBuffer.wrap(_turns, 0, bits));
+        writeFully(out, scores);
+        writeFully(out, ByteBuffer.wrap(_winners, 0, bits));
+    }
+
+    /** Return all samples in the sample file FILE. */
+    static Samples read(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file,
+                                               StandardOpenOption.READ)) {
+            ByteBuffer header =
+                ByteBuffer.allocate(3 * Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            if (!readFully(in, header) || header.getInt() != MAGIC) {
+                throw error("%s is not a sample file", file);
+            }
+            if (header.getInt() != VERSION) {
+                throw error("%s has an unknown sample format", file);
+            }
+            int size = header.getInt();
+            if (size < Grid.MIN_SIZE || size > Grid.MAX_SIZE) {
+                throw error("%s has a bad board size", file);
+            }
+            Samples result = new Samples(size);
+            ByteBuffer count =
+                ByteBuffer.allocate(Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            while (readFully(in, count)) {
+                int n = count.getInt();
+                count.clear();
+                if (n < 0 || n > in.size() - in.position()) {
+                    throw error("%s is truncated", file);
+                }
+                result.readChunk(in, n, file);
+            }
+            return result;
+        }
+    }
+
+    /** Read the columns of a chunk of N samples of FILE from IN,
+     *  appending them to my samples. */
+    private void readChunk(ReadableByteChannel in, int n, Path file)
+        throws IOException {
+        ensureCapacity(_count + n);
+        int bits = (n + 7) / 8;
+        ByteBuffer boards =
+            ByteBuffer.wrap(_boards, _count * _bytesPerBoard,
+                            n * _bytesPerBoard);
+        ByteBuffer turns = ByteBuffer.allocate(bits);
+        ByteBuffer scores =
+            ByteBuffer.allocate(n * Integer.BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer winners = ByteBuffer.allocate(bits);
+        if (!readFully(in, boards) || !readFully(in, turns)
+            || !readFully(in, scores) || !readFully(in, winners)) {
+            throw error("%s is truncated", file);
+        }
+        scores.asIntBuffer().get(_scores, _count, n);
+        for (int i = 0; i < n; i += 1) {
+            setBit(_turns, _count + i, bit(turns.array(), i));
+            setBit(_winners, _count + i, bit(winners.array(), i));
+        }
+        _count += n;
+    }
+
+    /** Write all remaining bytes of BUF to OUT. */
+    private static void writeFully(WritableByteChannel out, ByteBuffer buf)
+        throws IOException {
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+
+    /** Fill the remaining bytes of BUF from IN, and reset its position.
+     *  Return false if IN is at its end before any bytes are read, and
+     *  throw an IOException if it ends before BUF is filled. */
+    private static boolean readFully(ReadableByteChannel in, ByteBuffer buf)
+        throws IOException {
+        int start = buf.position();
+        while (buf.hasRemaining()) {
+            if (in.read(buf) < 0) {
+                if (buf.position() == start) {
+                    return false;
+                }
+                throw new IOException("sample file is truncated");
+            }
+        }
+        buf.position(start);
+        return true;
+    }
+
+    /** Return bit I of BITS. */
+    private static boolean bit(byte[] bits, int i) {
+        return (bits[i >> 3] & (1 << (i & 7))) != 0;
+    }
+
+    /** Set bit I of BITS to VALUE. */
+    private static void setBit(byte[] bits, int i, boolean value) {
+        if (value) {
+            bits[i >> 3] |= 1 << (i & 7);
+        } else {
+            bits[i >> 3] &= ~(1 << (i & 7));
+        }
+    }
+
+    /** Make room for at least N samples. */
+    private void ensureCapacity(int n) {
+        if (n > _scores.length) {
+            allocate(Math.max(n, 2 * _scores.length));
+        }
+    }
+
+    /** Resize my columns to hold CAPACITY samples, keeping their
+     *  contents. */
+    private void allocate(int capacity) {
+        int bits = (capacity + 7) / 8;
+        if (_scores == null) {
+            _boards = new byte[capacity * _bytesPerBoard];
+            _scores = new int[capacity];
+            _turns = new byte[bits];
+            _winners = new byte[bits];
+        } else {
+            _boards = Arrays.copyOf(_boards, capacity * _bytesPerBoard);
+            _scores = Arrays.copyOf(_scores, capacity);
+            _turns = Arrays.copyOf(_turns, bits);
+            _winners = Arrays.copyOf(_winners, bits);
+        }
+    }
+
+    /** Initial number of samples allocated. */
+    private static final int INITIAL_CAPACITY = 128;
+    /** The Pieces, by ordinal. */
+    private static final Piece[] PIECES = Piece.values();
+
+    /** Board size. */
+    private final int _size;
+    /** Geometry of my boards. */
+    private final Grid _grid;
+    /** Bytes per packed position. */
+    private final int _bytesPerBoard;
+    /** Number of samples. */
+    private int _count;
+    /** Packed positions. */
+    private byte[] _boards;
+    /** Values for white. */
+    private int[] _scores;
+    /** Side-to-move bits (1 for black). */
+    private byte[] _turns;
+    /** Winner bits (1 for white). */
+    private byte[] _winners;
+}
@@ -0,0 +1,119 @@
+package amazons;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/** Java Flight Recorder events describing AI searches, so that a running
+ *  engine can be profiled with standard tools (e.g., jcmd PID JFR.start)
+ *  without restarting it.  Sites that emit events first test RECORDING,
+ *  which is true only while some recording is running, so that no event
+ *  objects are created otherwise.
+ *  @author Wenhan Jin
+ */
+final class SearchEvents {
+
+    /** Not instantiable. */
+    private SearchEvents() {
+    }
+
+    /** True iff a flight recording may be in progress. */
+    static boolean recording() {
+        return _recording;
+    }
+
+    /** One complete search for a move. */
+    @Name("amazons.Search")
+    @Label("Search")
+    @Category({ "Amazons", "Search" })
+    @Description("Choosing one move for an AI player")
+    @StackTrace(false)
+    static final class Search extends Event {
+        /** Side to move. */
+        @Label("Side")
+        String side;
+        /** Depth of the deepest completed iteration. */
+        @Label("Depth")
+        int depth;
+        /** Positions visited. */
+        @Label("Nodes")
+        long nodes;
+        /** Move chosen. */
+        @Label("Move")
+        String move;
+    }
+
+    /** One completed iteration of iterative deepening. */
+    @Name("amazons.Iteration")
+    @Label("Iteration")
+    @Category({ "Amazons", "Search" })
+    @Description("Searching the current position to one depth")
+    @StackTrace(false)
+    static final class Iteration extends Event {
+        /** Depth searched. */
+        @Label("Depth")
+        int depth;
+        /** Positions visited during this iteration. */
+        @Label("Nodes")
+        long nodes;
+        /** Value found (positive favors white). */
+        @Label("Score")
+        int score;
+        /** Best move found. */
+        @Label("Best Move")
+        String move;
+    }
+
+    /** One call on an evaluation routine that took longer than its
+     *  threshold. */
+    @Name("amazons.Evaluation")
+    @Label("Evaluation")
+    @Category({ "Amazons", "Evaluation" })
+    @Description("A slow call on a position-evaluation routine")
+    @Threshold("20 us")
+    @StackTrace(false)
+    static final class Evaluation extends Event {
+        /** Routine called, such as "staticScore" or "winner". */
+        @Label("Routine")
+        String routine;
+        /** Number of moves made on the board evaluated. */
+        @Label("Ply")
+        int ply;
+    }
+
+    /** Value of recording(). */
+    private static volatile boolean _recording;
+
+    /** Set _recording according to whether any recording is running. */
+    private static void update() {
+        boolean running = false;
+        for (Recording r : FlightRecorder.getFlightRecorder().getRecordings()) {
+            running |= r.getState() == RecordingState.RUNNING;
+        }
+        _recording = running;
+    }
+
+    static {
+        try {
+            FlightRecorder.addListener(new FlightRecorderListener() {
+                @Override
+                public void recordingStateChanged(Recording unused) {
+                    update();
+                }
+            });
+            if (FlightRecorder.isInitialized()) {
+                update();
+            }
+        } catch (IllegalStateException | SecurityException excp) {
+            _recording = false;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package amazons;
+
+/** A handle on an AI search in progress, through which another thread
+ *  (typically the GUI's) may ask it to stop early.
+ *  @author Wenhan Jin
+ */
+final class SearchHandle {
+
+    /** Ask the search to stop and play the best move found so far. */
+    void moveNow() {
+        _stopped = true;
+    }
+
+    /** Ask the search to stop and have the player return COMMAND (such
+     *  as "quit") instead of a move. */
+    void abort(String command) {
+        _command = command;
+        _stopped = true;
+    }
+
+    /** Return true iff the search has been asked to stop. */
+    boolean stopped() {
+        return _stopped;
+    }
+
+    /** Return the command supplied to abort, or null if there is none. */
+    String command() {
+        return _command;
+    }
+
+    /** True iff the search has been asked to stop. */
+    private volatile boolean _stopped;
+    /** Command to return in place of a move, or null. */
+    private volatile String _command;
+}
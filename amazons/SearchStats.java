@@ -0,0 +1,454 @@
+package amazons;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/** Counters describing the work done by AI searches.  Each searching
+ *  thread updates its own Counters object (obtained from local()), so
+ *  recording costs a plain field increment; the per-thread counts are
+ *  summed only when total() is called.  The counts of threads that have
+ *  ended are then folded into a single retired total, so that only
+ *  live threads are tracked individually.  Collection is enabled by
+ *  the system property amazons.stats (e.g., java -Damazons.stats=true).
+ *  When it is off, ENABLED is a constant false, every recording site is
+ *  guarded by it, and the JIT compiler drops the guarded code.
+ *  @author Wenhan Jin
+ */
+final class SearchStats implements SearchStatsMBean {
+
+    /** True iff search statistics are collected. */
+    static final boolean ENABLED = Boolean.getBoolean("amazons.stats");
+
+    /** Largest iteration depth that has its own histogram entry.  Deeper
+     *  iterations are counted in the last entry. */
+    static final int MAX_DEPTH = 32;
+
+    /** Number of buckets in the branching-factor histogram.  Bucket k
+     *  counts interior nodes with between 2**(k-1) and 2**k - 1 legal
+     *  moves (bucket 0 counts nodes with none). */
+    static final int BRANCH_BUCKETS = 16;
+
+    /** The name under which the statistics are registered with JMX. */
+    static final String OBJECT_NAME = "amazons:type=SearchStats";
+
+    /** Counts maintained by a single thread.  Fields are written only by
+     *  the owning thread and read (without synchronization, so possibly
+     *  slightly stale) by aggregation. */
+    static final class Counters {
+        /** Positions visited by search. */
+        long nodes;
+        /** Positions evaluated statically. */
+        long leaves;
+        /** Positions whose children were searched. */
+        long interior;
+        /** Children searched from interior positions. */
+        long children;
+        /** Interior positions at which the search was cut off. */
+        long cutoffs;
+        /** Cheap estimates of static values (see Evaluator.estimate). */
+        long estimates;
+        /** Estimates that settled a value without a full evaluation. */
+        long settled;
+        /** Full static evaluations. */
+        long evaluations;
+        /** Lookups in search caches. */
+        long cacheProbes;
+        /** Lookups in search caches that found an entry. */
+        long cacheHits;
+        /** Completed searches (one per move chosen). */
+        long searches;
+        /** Wall-clock time spent in completed searches (ns). */
+        long searchNanos;
+        /** Nanoseconds spent in completed iterations, by depth. */
+        final long[] depthNanos = new long[MAX_DEPTH + 1];
+        /** Nodes visited in completed iterations, by depth. */
+        final long[] depthNodes = new long[MAX_DEPTH + 1];
+        /** Number of completed iterations, by depth. */
+        final long[] depthCount = new long[MAX_DEPTH + 1];
+        /** Histogram of children searched per interior node. */
+        final long[] branching = new long[BRANCH_BUCKETS];
+
+        /** Record that a position has been visited. */
+        void node() {
+            nodes += 1;
+        }
+
+        /** Record that a position has been statically evaluated. */
+        void leaf() {
+            leaves += 1;
+        }
+
+        /** Record an interior position at which N children were searched,
+         *  and which was cut off iff CUTOFF. */
+        void interior(int n, boolean cutoff) {
+            interior += 1;
+            children += n;
+            if (cutoff) {
+                cutoffs += 1;
+            }
+            branching[Math.min(BRANCH_BUCKETS - 1,
+                               32 - Integer.numberOfLeadingZeros(n))] += 1;
+        }
+
+        /** Record an estimate of a static value, which settled the value
+         *  iff SETTLED. */
+        void estimate(boolean settled) {
+            estimates += 1;
+            if (settled) {
+                this.settled += 1;
+            }
+        }
+
+        /** Record a full static evaluation. */
+        void evaluation() {
+            evaluations += 1;
+        }
+
+        /** Record a lookup in a search cache, which succeeded iff HIT. */
+        void cacheProbe(boolean hit) {
+            cacheProbes += 1;
+            if (hit) {
+                cacheHits += 1;
+            }
+        }
+
+        /** Record a completed iteration to DEPTH that took NANOS
+         *  nanoseconds and visited COUNT nodes. */
+        void iteration(int depth, long nanos, long count) {
+            int k = Math.min(depth, MAX_DEPTH);
+            depthNanos[k] += nanos;
+            depthNodes[k] += count;
+            depthCount[k] += 1;
+        }
+
+        /** Record a completed search that took NANOS nanoseconds. */
+        void search(long nanos) {
+            searches += 1;
+            searchNanos += nanos;
+        }
+
+        /** Add my counts to TOTAL. */
+        void addTo(Counters total) {
+            total.nodes += nodes;
+            total.leaves += leaves;
+            total.interior += interior;
+            total.children += children;
+            total.cutoffs += cutoffs;
+            total.estimates += estimates;
+            total.settled += settled;
+            total.evaluations += evaluations;
+            total.cacheProbes += cacheProbes;
+            total.cacheHits += cacheHits;
+            total.searches += searches;
+            total.searchNanos += searchNanos;
+            for (int k = 0; k <= MAX_DEPTH; k += 1) {
+                total.depthNanos[k] += depthNanos[k];
+                total.depthNodes[k] += depthNodes[k];
+                total.depthCount[k] += depthCount[k];
+            }
+            for (int k = 0; k < BRANCH_BUCKETS; k += 1) {
+                total.branching[k] += branching[k];
+            }
+        }
+
+        /** Return a copy of my current counts. */
+        Counters copy() {
+            Counters result = new Counters();
+            addTo(result);
+            return result;
+        }
+
+        /** Set all my counts to 0. */
+        void clear() {
+            nodes = leaves = interior = children = cutoffs = 0;
+            estimates = settled = evaluations = 0;
+            cacheProbes = cacheHits = searches = searchNanos = 0;
+            Arrays.fill(depthNanos, 0);
+            Arrays.fill(depthNodes, 0);
+            Arrays.fill(depthCount, 0);
+            Arrays.fill(branching, 0);
+        }
+
+        /** Return the counts in me that were not yet in EARLIER, a copy
+         *  of me taken before. */
+        Counters since(Counters earlier) {
+            Counters result = copy();
+            result.nodes -= earlier.nodes;
+            result.leaves -= earlier.leaves;
+            result.interior -= earlier.interior;
+            result.children -= earlier.children;
+            result.cutoffs -= earlier.cutoffs;
+            result.estimates -= earlier.estimates;
+            result.settled -= earlier.settled;
+            result.evaluations -= earlier.evaluations;
+            result.cacheProbes -= earlier.cacheProbes;
+            result.cacheHits -= earlier.cacheHits;
+            result.searches -= earlier.searches;
+            result.searchNanos -= earlier.searchNanos;
+            for (int k = 0; k <= MAX_DEPTH; k += 1) {
+                result.depthNanos[k] -= earlier.depthNanos[k];
+                result.depthNodes[k] -= earlier.depthNodes[k];
+                result.depthCount[k] -= earlier.depthCount[k];
+            }
+            for (int k = 0; k < BRANCH_BUCKETS; k += 1) {
+                result.branching[k] -= earlier.branching[k];
+            }
+            return result;
+        }
+
+        /** Return the fraction of interior nodes that were cut off. */
+        double cutoffRate() {
+            return ratio(cutoffs, interior);
+        }
+
+        /** Return the average number of children searched per interior
+         *  node. */
+        double branchingFactor() {
+            return ratio(children, interior);
+        }
+
+        /** Return the fraction of estimates that settled values without
+         *  full evaluations. */
+        double lazyRate() {
+            return ratio(settled, estimates);
+        }
+
+        /** Return the fraction of cache probes that hit. */
+        double cacheHitRatio() {
+            return ratio(cacheHits, cacheProbes);
+        }
+
+        /** Return the search speed in nodes per second. */
+        double nodesPerSecond() {
+            return searchNanos == 0 ? 0.0 : nodes * 1e9 / searchNanos;
+        }
+
+        /** Return a one-line summary of my counts. */
+        String summary() {
+            return String.format("nodes %d, %.0f nodes/s, cutoffs %.1f%%,"
+                                 + " branching %.1f, lazy %.1f%%, %s",
+                                 nodes, nodesPerSecond(), 100 * cutoffRate(),
+                                 branchingFactor(), 100 * lazyRate(),
+                                 cacheSummary());
+        }
+
+        /** Return a description of the lookups in the evaluation cache:
+         *  their hit rate, or why there were none. */
+        private String cacheSummary() {
+            if (cacheProbes != 0) {
+                return String.format("cache hits %.1f%%",
+                                     100 * cacheHitRatio());
+            } else if (Evaluator.SELECTED.equals("mobility")) {
+                return "cache off (mobility is not cached)";
+            } else {
+                return "cache unused";
+            }
+        }
+
+        /** Return a multi-line report of my counts, including the
+         *  histograms. */
+        String report() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("searches %d, %.3f s%n", searches,
+                                     searchNanos * 1e-9));
+            out.append(String.format("%s%n", summary()));
+            out.append(String.format("leaves %d, interior %d%n",
+                                     leaves, interior));
+            out.append(String.format("estimates %d (%d settled),"
+                                     + " full evaluations %d%n",
+                                     estimates, settled, evaluations));
+            if (cacheProbes != 0) {
+                out.append(String.format("cache probes %d, hits %d%n",
+                                         cacheProbes, cacheHits));
+            } else {
+                out.append(String.format("%s%n", cacheSummary()));
+            }
+            for (int k = 0; k <= MAX_DEPTH; k += 1) {
+                if (depthCount[k] != 0) {
+                    out.append(String.format("depth %2d: %d iterations,"
+                                             + " %.3f s, %d nodes%n",
+                                             k, depthCount[k],
+                                             depthNanos[k] * 1e-9,
+                                             depthNodes[k]));
+                }
+            }
+            for (int k = 0; k < BRANCH_BUCKETS; k += 1) {
+                if (branching[k] != 0) {
+                    out.append(String.format("children < %5d: %d%n",
+                                             1 << k, branching[k]));
+                }
+            }
+            return out.toString();
+        }
+    }
+
+    /** Return the Counters for the current thread. */
+    static Counters local() {
+        return LOCAL.get();
+    }
+
+    /** Return the sum of the counts of all threads. */
+    static synchronized Counters total() {
+        retire();
+        Counters result = RETIRED.copy();
+        for (Tracked t : ALL) {
+            t.counters.addTo(result);
+        }
+        return result;
+    }
+
+    /** Set the counts of all threads to 0.  Counts being recorded
+     *  concurrently may survive. */
+    static synchronized void clear() {
+        retire();
+        RETIRED.clear();
+        for (Tracked t : ALL) {
+            t.counters.clear();
+        }
+    }
+
+    /** Return the number of threads whose counts are tracked
+     *  individually. */
+    static synchronized int tracked() {
+        retire();
+        return ALL.size();
+    }
+
+    /** Return new Counters for the current thread, tracking them. */
+    private static synchronized Counters track() {
+        retire();
+        Tracked t = new Tracked(Thread.currentThread());
+        ALL.add(t);
+        return t.counters;
+    }
+
+    /** Add the counts of threads that have ended to RETIRED, and stop
+     *  tracking them.  A thread's writes are all visible once it is seen
+     *  to have ended. */
+    private static void retire() {
+        for (Iterator<Tracked> i = ALL.iterator(); i.hasNext(); ) {
+            Tracked t = i.next();
+            Thread thread = t.thread.get();
+            if (thread == null || !thread.isAlive()) {
+                t.counters.addTo(RETIRED);
+                i.remove();
+            }
+        }
+    }
+
+    /** The Counters of a thread, which is referred to weakly so that
+     *  tracking it does not keep it from being collected. */
+    private static final class Tracked {
+        /** Counters for THREAD. */
+        Tracked(Thread thread) {
+            this.thread = new WeakReference<>(thread);
+        }
+
+        /** The thread. */
+        final WeakReference<Thread> thread;
+        /** Its counts. */
+        final Counters counters = new Counters();
+    }
+
+    /** Return NUM / DEN, or 0 if DEN is 0. */
+    private static double ratio(long num, long den) {
+        return den == 0 ? 0.0 : (double) num / den;
+    }
+
+    /** Register the statistics with the platform MBean server, if they
+     *  are enabled and not already registered. */
+    private static void register() {
+        if (!ENABLED) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(new SearchStats(), new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException excp) {
+            System.err.printf("Could not register search statistics: %s%n",
+                              excp.getMessage());
+        }
+    }
+
+    @Override
+    public long getNodes() {
+        return total().nodes;
+    }
+
+    @Override
+    public long getLeaves() {
+        return total().leaves;
+    }
+
+    @Override
+    public long getSearches() {
+        return total().searches;
+    }
+
+    @Override
+    public double getNodesPerSecond() {
+        return total().nodesPerSecond();
+    }
+
+    @Override
+    public double getCutoffRate() {
+        return total().cutoffRate();
+    }
+
+    @Override
+    public double getBranchingFactor() {
+        return total().branchingFactor();
+    }
+
+    @Override
+    public double getLazyRate() {
+        return total().lazyRate();
+    }
+
+    @Override
+    public double getCacheHitRatio() {
+        return total().cacheHitRatio();
+    }
+
+    @Override
+    public long[] getDepthNanos() {
+        return total().depthNanos;
+    }
+
+    @Override
+    public long[] getBranchingHistogram() {
+        return total().branching;
+    }
+
+    @Override
+    public String report() {
+        return total().report();
+    }
+
+    @Override
+    public void reset() {
+        clear();
+    }
+
+    /** The Counters of every live thread that has recorded statistics.
+     *  Guarded by the class's lock. */
+    private static final List<Tracked> ALL = new ArrayList<>();
+
+    /** The sum of the counts of the threads that have ended.  Guarded by
+     *  the class's lock. */
+    private static final Counters RETIRED = new Counters();
+
+    /** The Counters of the current thread. */
+    private static final ThreadLocal<Counters> LOCAL =
+        ThreadLocal.withInitial(SearchStats::track);
+
+    static {
+        register();
+    }
+}
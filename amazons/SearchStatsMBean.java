@@ -0,0 +1,49 @@
+package amazons;
+
+/** The management interface for AI search statistics, registered under
+ *  SearchStats.OBJECT_NAME when statistics are enabled.  (JMX requires
+ *  standard MBean interfaces to be public.)
+ *  @author Wenhan Jin
+ */
+public interface SearchStatsMBean {
+
+    /** Return the number of positions visited. */
+    long getNodes();
+
+    /** Return the number of positions evaluated statically. */
+    long getLeaves();
+
+    /** Return the number of completed searches. */
+    long getSearches();
+
+    /** Return the average search speed in nodes per second. */
+    double getNodesPerSecond();
+
+    /** Return the fraction of interior positions that were cut off. */
+    double getCutoffRate();
+
+    /** Return the average number of children searched per interior
+     *  position. */
+    double getBranchingFactor();
+
+    /** Return the fraction of cheap estimates that settled values
+     *  without full evaluations. */
+    double getLazyRate();
+
+    /** Return the fraction of cache lookups that succeeded. */
+    double getCacheHitRatio();
+
+    /** Return the time spent in completed iterations (ns), indexed by
+     *  depth. */
+    long[] getDepthNanos();
+
+    /** Return the histogram of children searched per interior position,
+     *  by powers of 2. */
+    long[] getBranchingHistogram();
+
+    /** Return a multi-line textual report of all statistics. */
+    String report();
+
+    /** Set all statistics to 0. */
+    void reset();
+}
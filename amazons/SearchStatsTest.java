@@ -0,0 +1,30 @@
+package amazons;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the search statistics counters.
+ *  @author Wenhan Jin
+ */
+public class SearchStatsTest {
+
+    @Test
+    public void testRetiredThreads() throws InterruptedException {
+        long before = SearchStats.total().nodes;
+        int tracked = SearchStats.tracked();
+        for (int round = 0; round < 50; round += 1) {
+            Thread worker = new Thread(() -> {
+                    SearchStats.local().node();
+                    SearchStats.local().node();
+                });
+            worker.start();
+            worker.join();
+        }
+        assertEquals(before + 100, SearchStats.total().nodes);
+        assertEquals(tracked, SearchStats.tracked());
+        SearchStats.local().node();
+        assertEquals(before + 101, SearchStats.total().nodes);
+        SearchStats.clear();
+        assertEquals(0, SearchStats.total().nodes);
+    }
+}
@@ -0,0 +1,220 @@
+package amazons;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/** Generates training samples (see Samples) by playing the AI against
+ *  itself, as for
+ *      java amazons.Main --selfplay=FILE [--games=N] [--depth=N]
+ *                        [--seed=N] [--dedup] [--size=N]
+ *  Every position of every game is searched to a fixed depth, and
+ *  becomes a sample with the value of that search and the eventual
+ *  winner.  The move played is the one found by the search, except
+ *  that the first RANDOM_PLIES moves of each game, and each later move
+ *  with probability RANDOM_MOVES, are chosen uniformly at random from
+ *  the legal moves, so that the games differ.  The random choices of
+ *  each game come from its own generator, seeded from the overall seed
+ *  and the game number, so they do not depend on which thread plays the
+ *  game.  Optionally, a position (up to symmetry) that has already been
+ *  sampled is skipped.
+ *
+ *  Games are played in parallel by fork-join tasks, each worker thread
+ *  having its own AI.  The samples of finished games are collected in
+ *  a buffer of CHUNK samples, which is written to the output file as a
+ *  chunk when full, so the order of games in the file is the order in
+ *  which they finish.
+ *  @author Wenhan Jin
+ */
+final class SelfPlay {
+
+    /** Default number of games. */
+    static final int GAMES = 1000;
+    /** Default search depth. */
+    static final int DEPTH = 1;
+    /** Number of random moves opening each game, as given by the
+     *  property amazons.randomPlies. */
+    static final int RANDOM_PLIES =
+        Integer.getInteger("amazons.randomPlies", 6);
+    /** Probability of a random move after the opening, as given by the
+     *  property amazons.randomMoves. */
+    static final double RANDOM_MOVES =
+        Double.parseDouble(System.getProperty("amazons.randomMoves",
+                                              "0.05"));
+    /** Log2 of the number of positions remembered for deduplication, as
+     *  given by the property amazons.dedupBits. */
+    static final int DEDUP_BITS = Integer.getInteger("amazons.dedupBits", 24);
+    /** Number of samples buffered before writing. */
+    static final int CHUNK = 1 << 16;
+
+    /** A generator of self-play games on boards with LAYOUT, searching
+     *  each position to DEPTH plies, with random choices seeded from
+     *  SEED, skipping repeated positions iff DEDUP, and playing games on
+     *  the threads of POOL. */
+    SelfPlay(Layout layout, int depth, long seed, boolean dedup,
+             ForkJoinPool pool) {
+        if (depth <= 0) {
+            throw Utils.error("search depth must be positive");
+        }
+        _layout = layout;
+        _depth = depth;
+        _seed = seed;
+        _seen = dedup ? new Seen(DEDUP_BITS) : null;
+        _pool = pool;
+    }
+
+    /** Play GAMES games, writing their samples to the sample file FILE,
+     *  and return the number of samples written. */
+    long run(int games, Path file) throws IOException {
+        try (FileChannel out = FileChannel.open(file, CREATE, WRITE,
+                                                TRUNCATE_EXISTING)) {
+            int size = _layout.size();
+            Samples.writeHeader(out, size);
+            _out = out;
+            _chunk = new Samples(size);
+            _written = 0;
+            try {
+                _pool.invoke(new Task(0, games));
+            } catch (UncheckedIOException excp) {
+                throw excp.getCause();
+            }
+            _chunk.write(out);
+            return _written;
+        } finally {
+            _out = null;
+            _chunk = null;
+        }
+    }
+
+    /** Play game number GAME, returning its samples. */
+    Samples play(int game) {
+        SplittableRandom random =
+            new SplittableRandom(_seed ^ game * 0x9e3779b97f4a7c15L);
+        AI ai = SEARCHER.get();
+        Board board = new Board(_layout);
+        Samples samples = new Samples(_layout.size());
+        List<Move> moves = new ArrayList<>();
+        while (board.winner() == null) {
+            AI.Line best = ai.analyze(board, _depth, 1, null).get(0);
+            if (_seen == null || _seen.add(board.canonicalHash())) {
+                samples.add(board, best.score);
+            }
+            Move move = best.move;
+            if (board.numMoves() < RANDOM_PLIES
+                || random.nextDouble() < RANDOM_MOVES) {
+                moves.clear();
+                board.legalMoves().forEachRemaining(moves::add);
+                move = moves.get(random.nextInt(moves.size()));
+            }
+            board.makeMove(move);
+        }
+        samples.setWinner(0, board.winner());
+        return samples;
+    }
+
+    /** Add SAMPLES to the output buffer, writing it if it is full. */
+    private synchronized void emit(Samples samples) throws IOException {
+        _chunk.addAll(samples);
+        _written += samples.count();
+        if (_chunk.count() >= CHUNK) {
+            _chunk.write(_out);
+            _chunk.clear();
+        }
+    }
+
+    /** Plays games [LO .. HI). */
+    private class Task extends RecursiveAction {
+        /** A task playing games LO to HI - 1. */
+        Task(int lo, int hi) {
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo == 1) {
+                try {
+                    emit(play(_lo));
+                } catch (IOException excp) {
+                    throw new UncheckedIOException(excp);
+                }
+            } else if (_hi > _lo) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Task(_lo, mid), new Task(mid, _hi));
+            }
+        }
+
+        /** The range of games played. */
+        private final int _lo, _hi;
+    }
+
+    /** A fixed-size set of position hashes that may be added to by
+     *  several threads at once without locking.  A hash is kept in one
+     *  of PROBES consecutive slots starting at a slot chosen by its high
+     *  bits; when those are all taken by other hashes, it is not
+     *  remembered. */
+    private static final class Seen {
+        /** Number of slots examined per hash. */
+        static final int PROBES = 8;
+
+        /** An empty set of 2**BITS slots. */
+        Seen(int bits) {
+            _bits = bits;
+            _keys = new AtomicLongArray(1 << bits);
+        }
+
+        /** Add HASH to me, returning false iff it was already present. */
+        boolean add(long hash) {
+            long key = hash == 0 ? 1 : hash;
+            int mask = _keys.length() - 1;
+            int start = (int) (key >>> (Long.SIZE - _bits));
+            for (int p = 0; p < PROBES; p += 1) {
+                int i = (start + p) & mask;
+                long k = _keys.get(i);
+                if (k == 0 && _keys.compareAndSet(i, 0, key)) {
+                    return true;
+                }
+                if (_keys.get(i) == key) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Log2 of the number of slots. */
+        private final int _bits;
+        /** The hashes present, with 0 in empty slots (a hash of 0 is
+         *  stored as 1). */
+        private final AtomicLongArray _keys;
+    }
+
+    /** The AI of each worker thread. */
+    private static final ThreadLocal<AI> SEARCHER =
+        ThreadLocal.withInitial(() -> new AI(null, null));
+
+    /** Starting position of each game. */
+    private final Layout _layout;
+    /** Search depth. */
+    private final int _depth;
+    /** Seed of the random choices. */
+    private final long _seed;
+    /** Positions sampled so far, or null if not deduplicating. */
+    private final Seen _seen;
+    /** The pool playing the games. */
+    private final ForkJoinPool _pool;
+    /** The output file, while running. */
+    private FileChannel _out;
+    /** Samples not yet written, while running. */
+    private Samples _chunk;
+    /** Number of samples written or buffered. */
+    private long _written;
+}
@@ -0,0 +1,121 @@
+package amazons;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static amazons.Piece.*;
+import static java.nio.file.StandardOpenOption.*;
+
+/** Tests of self-play sample generation and sample files.
+ *  @author Wenhan Jin
+ */
+public class SelfPlayTest {
+
+    @Test
+    public void testSampleFile() throws IOException {
+        Random random = new Random(46);
+        List<Board> boards = new ArrayList<>();
+        List<Piece> winners = new ArrayList<>();
+        Samples chunk = new Samples(7);
+        Path file = Files.createTempFile("amazons", ".samples");
+        try (FileChannel out = FileChannel.open(file, WRITE)) {
+            Samples.writeHeader(out, 7);
+            for (int game = 0; game < 3; game += 1) {
+                Samples samples = new Samples(7);
+                Board b = new Board(Layout.standard(7));
+                while (b.winner() == null) {
+                    boards.add(new Board(b));
+                    assertEquals(samples.count(),
+                                 samples.add(b, boards.size() * 17 - 500));
+                    List<Move> moves = new ArrayList<>();
+                    b.legalMoves().forEachRemaining(moves::add);
+                    b.makeMove(moves.get(random.nextInt(moves.size())));
+                }
+                samples.setWinner(0, b.winner());
+                for (int i = 0; i < samples.count(); i += 1) {
+                    winners.add(b.winner());
+                }
+                chunk.addAll(samples);
+                if (game != 1) {
+                    chunk.write(out);
+                    chunk.clear();
+                }
+            }
+            Samples empty = new Samples(7);
+            empty.write(out);
+        }
+
+        Samples samples = Samples.read(file);
+        Files.delete(file);
+        assertEquals(7, samples.size());
+        assertEquals(boards.size(), samples.count());
+        for (int i = 0; i < boards.size(); i += 1) {
+            Board b = samples.board(i);
+            assertEquals(boards.get(i).position(), b.position());
+            assertEquals(boards.get(i).turn(), samples.turn(i));
+            assertEquals((i + 1) * 17 - 500, samples.score(i));
+            assertEquals(winners.get(i), samples.winner(i));
+        }
+    }
+
+    @Test
+    public void testBadFile() throws IOException {
+        Path file = Files.createTempFile("amazons", ".samples");
+        try {
+            Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10,
+                                           11, 12 });
+            Samples.read(file);
+            fail("accepted a file that is not a sample file");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSelfPlay() throws IOException {
+        Path file = Files.createTempFile("amazons", ".samples");
+        try {
+            for (boolean dedup : new boolean[] { false, true }) {
+                long count =
+                    new SelfPlay(Layout.standard(6), 1, 46, dedup,
+                                 new ForkJoinPool(3))
+                    .run(12, file);
+                Samples samples = Samples.read(file);
+                assertEquals(count, samples.count());
+                assertTrue(count > 12 * SelfPlay.RANDOM_PLIES / 2);
+                Set<Long> hashes = new HashSet<>();
+                int duplicates = 0;
+                AI ai = new AI(null, null);
+                for (int i = 0; i < samples.count(); i += 1) {
+                    Board b = samples.board(i);
+                    assertNull(b.winner());
+                    if (!hashes.add(b.canonicalHash())) {
+                        duplicates += 1;
+                    }
+                    assertEquals(ai.analyze(b, 1, 1, null).get(0).score,
+                                 samples.score(i));
+                }
+                if (dedup) {
+                    assertEquals(0, duplicates);
+                } else {
+                    assertTrue(duplicates > 0);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
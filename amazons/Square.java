@@ -1,19 +1,20 @@
 package amazons;
 
-import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
 
 import static amazons.Utils.*;
 
-/** Represents a position on an Amazons board.  Positions are numbered
- *  from 0 (lower-left corner) to 99 (upper-right corner).  Squares
- *  are immutable and unique: there is precisely one square created for
- *  each distinct position.  Clients create squares using the factory method
- *  sq, not the constructor.  Because there is a unique Square object for each
- *  position, you can freely use the cheap == operator (rather than the
- *  .equals method) to compare Squares, and the program does not waste time
- *  creating the same square over and over again.
+/** Represents a position on an Amazons board.  Positions on a board with
+ *  N squares on a side are numbered from 0 (lower-left corner) to
+ *  N * N - 1 (upper-right corner); on the standard 10x10 board, from 0
+ *  to 99.  Squares are immutable and unique: there is precisely one
+ *  square created for each distinct position of each Grid.  Clients
+ *  create squares using the factory method sq (here, for the standard
+ *  board, or in Grid), not the constructor.  Because there is a unique
+ *  Square object for each position, you can freely use the cheap ==
+ *  operator (rather than the .equals method) to compare Squares, and the
+ *  program does not waste time creating the same square over and over
+ *  again.
  *  @author Wenhan Jin
  */
 final class Square {
@@ -22,8 +23,10 @@ final class Square {
      *  a3). For convenience, it is in parentheses to make it a
      *  group.  This subpattern is intended to be incorporated into
      *  other pattern that contain square designations (such as
-     *  patterns for moves). */
-    static final String SQ = "([a-j](?:[1-9]|10))";
+     *  patterns for moves).  It admits squares of any supported board
+     *  size; whether a square is on a particular board is checked when
+     *  it is looked up in that board's Grid. */
+    static final String SQ = "([a-z](?:[1-9]\\d?))";
 
     /** Return my row position, where 0 is the bottom row. */
     int row() {
@@ -35,12 +38,17 @@ final class Square {
         return _col;
     }
 
-    /** Return my index position (0-99).  0 represents square a1, and 99
-     *  is square j10. */
+    /** Return my index position (0-99 on the standard board).  0
+     *  represents square a1, and 99 is square j10. */
     int index() {
         return _index;
     }
 
+    /** Return the Grid I belong to. */
+    Grid grid() {
+        return _grid;
+    }
+
     /** Return true iff THIS - TO is a valid queen move. */
     boolean isQueenMove(Square to) {
         if (to == null) {
@@ -55,7 +63,7 @@ final class Square {
     /** Definitions of direction for queenMove.  DIR[k] = (dcol, drow)
      *  means that to going one step from (col, row) in direction k,
      *  brings us to (col + dcol, row + drow). */
-    private static final int[][] DIR = {
+    static final int[][] DIR = {
         { 0, 1 }, { 1, 1 }, { 1, 0 }, { 1, -1 },
         { 0, -1 }, { -1, -1 }, { -1, 0 }, { -1, 1 }
     };
@@ -69,12 +77,11 @@ final class Square {
         if (dir < 0 || dir > 7) {
             return null;
         } else {
-            if (!exists(_col + steps * DIR[dir][0],
-                    _row + steps * DIR[dir][1])) {
+            int[] ray = _grid.ray(_index, dir);
+            if (steps < 1 || steps > ray.length) {
                 return null;
             }
-            return sq(_col + steps * DIR[dir][0],
-                    _row + steps * DIR[dir][1]);
+            return _grid.sq(ray[steps - 1]);
         }
     }
 
@@ -103,75 +110,72 @@ final class Square {
         }
     }
 
+    /** Return the number of steps in the queen move THIS-TO. */
+    int distance(Square to) {
+        return Math.max(Math.abs(to.col() - col()),
+                        Math.abs(to.row() - row()));
+    }
+
     @Override
     public String toString() {
         return _str;
     }
 
-    /** Return true iff COL ROW is a legal square. */
+    /** Return true iff COL ROW is a legal square of the standard board. */
     static boolean exists(int col, int row) {
-        return row >= 0 && col >= 0 && row < Board.SIZE && col < Board.SIZE;
+        return Standard.GRID.exists(col, row);
     }
 
-    /** Return the (unique) Square denoting COL ROW. */
+    /** Return the (unique) Square of the standard board denoting
+     *  COL ROW. */
     static Square sq(int col, int row) {
-        if (!exists(row, col)) {
-            throw error("row or column out of bounds");
-        }
-        return sq(row * 10 + col);
+        return Standard.GRID.sq(col, row);
     }
 
-    /** Return the (unique) Square denoting the position with index INDEX. */
+    /** Return the (unique) Square of the standard board denoting the
+     *  position with index INDEX. */
     static Square sq(int index) {
-        return SQUARES[index];
+        return Standard.GRID.sq(index);
     }
 
-    /** Return the (unique) Square denoting the position COL ROW, where
-     *  COL ROW is the standard text format for a square (e.g., a4). */
+    /** Return the (unique) Square of the standard board denoting the
+     *  position COL ROW, where COL ROW is the standard text format for a
+     *  square (e.g., a4). */
     static Square sq(String col, String row) {
-        int colint = (int) col.toCharArray()[0] - 'a';
-        int rowint = Integer.parseInt(row) - 1;
-        return sq(colint, rowint);
+        return sq(col + row);
     }
 
-    /** Return the (unique) Square denoting the position in POSN, in the
-     *  standard text format for a square (e.g. a4). POSN must be a
-     *  valid square designation. */
+    /** Return the (unique) Square of the standard board denoting the
+     *  position in POSN, in the standard text format for a square (e.g.
+     *  a4). POSN must be a valid square designation. */
     static Square sq(String posn) {
-        assert posn.matches(SQ);
-        return sq(posn.substring(0, 1), posn.substring(1));
+        return Standard.GRID.sq(posn);
     }
 
-    /** Return an iterator over all Squares. */
+    /** Return an iterator over all Squares of the standard board. */
     static Iterator<Square> iterator() {
-        return SQUARE_LIST.iterator();
+        return Standard.GRID.iterator();
     }
 
-    /** Return the Square with index INDEX. */
-    private Square(int index) {
+    /** The Square of GRID with index INDEX.  Used only by Grid. */
+    Square(Grid grid, int index) {
+        _grid = grid;
         _index = index;
-        _row = index / 10;
-        _col = index % 10;
-        char[] strl = new char[10];
-        for (int i = 0; i < 10; i++) {
-            strl[i] = ((char) ('a' + i));
-        }
-        _str = Character.toString(strl[_col]) + Integer.toString(_row + 1);
+        _row = index / grid.size();
+        _col = index % grid.size();
+        _str = String.format("%c%d", (char) ('a' + _col), _row + 1);
     }
 
-    /** The cache of all created squares, by index. */
-    private static final Square[] SQUARES =
-        new Square[Board.SIZE * Board.SIZE];
-
-    /** SQUARES viewed as a List. */
-    private static final List<Square> SQUARE_LIST = Arrays.asList(SQUARES);
-
-    static {
-        for (int i = Board.SIZE * Board.SIZE - 1; i >= 0; i -= 1) {
-            SQUARES[i] = new Square(i);
-        }
+    /** The Grid of the standard board.  (It is in a nested class, so
+     *  that it is not created while Grid is creating Squares.) */
+    private static class Standard {
+        /** The Grid of the standard board. */
+        static final Grid GRID = Grid.of(Board.SIZE);
     }
 
+    /** The Grid I belong to. */
+    private final Grid _grid;
+
     /** My index position. */
     private final int _index;
 
@@ -0,0 +1,446 @@
+package amazons;
+
+/** A mutable set of the squares of one Grid, represented as a bit
+ *  vector indexed by Square index.  Boards of up to 8x8 squares use a
+ *  single long (class Small), those of up to 128 squares (such as the
+ *  standard 10x10 board) a pair of longs (class Medium), and larger ones
+ *  an array of longs (class Large).  Operations that combine two sets
+ *  require that both belong to the same Grid.
+ *  @author Wenhan Jin
+ */
+abstract class SquareSet {
+
+    /** Return a new, empty set of squares of GRID, using the fastest
+     *  representation for its size. */
+    static SquareSet create(Grid grid) {
+        if (grid.count() <= Long.SIZE) {
+            return new Small(grid);
+        } else if (grid.count() <= 2 * Long.SIZE) {
+            return new Medium(grid);
+        } else {
+            return new Large(grid);
+        }
+    }
+
+    /** A set of squares of GRID. */
+    SquareSet(Grid grid) {
+        _grid = grid;
+    }
+
+    /** Return the Grid whose squares I contain. */
+    final Grid grid() {
+        return _grid;
+    }
+
+    /** Return true iff I contain the square with index K. */
+    abstract boolean contains(int k);
+
+    /** Add the square with index K to me. */
+    abstract void add(int k);
+
+    /** Remove the square with index K from me. */
+    abstract void remove(int k);
+
+    /** Remove all squares from me. */
+    abstract void clear();
+
+    /** Return the number of squares I contain. */
+    abstract int size();
+
+    /** Return true iff I contain no squares. */
+    abstract boolean isEmpty();
+
+    /** Return true iff I have a square in common with OTHER. */
+    abstract boolean intersects(SquareSet other);
+
+    /** Make my contents the same as those of OTHER. */
+    abstract void copy(SquareSet other);
+
+    /** Return the smallest index >= K of a square I contain, or -1 if
+     *  there is none.  Thus,
+     *      for (int k = s.next(0); k >= 0; k = s.next(k + 1))
+     *  iterates over the indices of the squares in S. */
+    abstract int next(int k);
+
+    /** Add the squares in OTHER to me. */
+    abstract void or(SquareSet other);
+
+    /** Remove the squares in OTHER from me. */
+    abstract void andNot(SquareSet other);
+
+    /** Add to me the squares reached from the squares in FROM by one or
+     *  more steps in direction DIR (as for Square.DIR), all of them onto
+     *  squares in OPEN.  FROM and OPEN must not be me. */
+    abstract void slide(SquareSet from, int dir, SquareSet open);
+
+    /** Add to me the squares reachable by an unblocked queen move from
+     *  any of the squares in FROM, where only the squares in OPEN are
+     *  unblocked.  FROM and OPEN must not be me. */
+    final void reach(SquareSet from, SquareSet open) {
+        for (int dir = 0; dir < 8; dir += 1) {
+            slide(from, dir, open);
+        }
+    }
+
+    /** Return true iff I contain the Square S. */
+    final boolean contains(Square s) {
+        return contains(s.index());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+        for (int k = next(0); k >= 0; k = next(k + 1)) {
+            if (result.length() > 1) {
+                result.append(", ");
+            }
+            result.append(_grid.sq(k));
+        }
+        return result.append("}").toString();
+    }
+
+    /** A set of squares of a Grid with at most 64 squares. */
+    static final class Small extends SquareSet {
+
+        /** An empty set of squares of GRID. */
+        Small(Grid grid) {
+            super(grid);
+        }
+
+        @Override
+        boolean contains(int k) {
+            return (_bits & (1L << k)) != 0;
+        }
+
+        @Override
+        void add(int k) {
+            _bits |= 1L << k;
+        }
+
+        @Override
+        void remove(int k) {
+            _bits &= ~(1L << k);
+        }
+
+        @Override
+        void clear() {
+            _bits = 0;
+        }
+
+        @Override
+        int size() {
+            return Long.bitCount(_bits);
+        }
+
+        @Override
+        boolean isEmpty() {
+            return _bits == 0;
+        }
+
+        @Override
+        boolean intersects(SquareSet other) {
+            return (_bits & ((Small) other)._bits) != 0;
+        }
+
+        @Override
+        void copy(SquareSet other) {
+            _bits = ((Small) other)._bits;
+        }
+
+        @Override
+        void or(SquareSet other) {
+            _bits |= ((Small) other)._bits;
+        }
+
+        @Override
+        void andNot(SquareSet other) {
+            _bits &= ~((Small) other)._bits;
+        }
+
+        @Override
+        void slide(SquareSet from, int dir, SquareSet open) {
+            int shift = grid().shift(dir);
+            long mask = ((Small) open)._bits
+                & ((Small) grid().steps(dir))._bits;
+            long x = ((Small) from)._bits;
+            while (x != 0) {
+                x = (shift > 0 ? x << shift : x >>> -shift) & mask;
+                _bits |= x;
+            }
+        }
+
+        @Override
+        int next(int k) {
+            if (k >= Long.SIZE) {
+                return -1;
+            }
+            long rest = _bits & (-1L << k);
+            return rest == 0 ? -1 : Long.numberOfTrailingZeros(rest);
+        }
+
+        /** Bit k is set iff I contain the square with index k. */
+        private long _bits;
+    }
+
+    /** A set of squares of a Grid with 65 to 128 squares. */
+    static final class Medium extends SquareSet {
+
+        /** An empty set of squares of GRID. */
+        Medium(Grid grid) {
+            super(grid);
+        }
+
+        @Override
+        boolean contains(int k) {
+            return ((k < Long.SIZE ? _lo : _hi) & (1L << k)) != 0;
+        }
+
+        @Override
+        void add(int k) {
+            if (k < Long.SIZE) {
+                _lo |= 1L << k;
+            } else {
+                _hi |= 1L << k;
+            }
+        }
+
+        @Override
+        void remove(int k) {
+            if (k < Long.SIZE) {
+                _lo &= ~(1L << k);
+            } else {
+                _hi &= ~(1L << k);
+            }
+        }
+
+        @Override
+        void clear() {
+            _lo = _hi = 0;
+        }
+
+        @Override
+        int size() {
+            return Long.bitCount(_lo) + Long.bitCount(_hi);
+        }
+
+        @Override
+        boolean isEmpty() {
+            return (_lo | _hi) == 0;
+        }
+
+        @Override
+        boolean intersects(SquareSet other) {
+            Medium set = (Medium) other;
+            return ((_lo & set._lo) | (_hi & set._hi)) != 0;
+        }
+
+        @Override
+        void copy(SquareSet other) {
+            Medium set = (Medium) other;
+            _lo = set._lo;
+            _hi = set._hi;
+        }
+
+        @Override
+        void or(SquareSet other) {
+            Medium set = (Medium) other;
+            _lo |= set._lo;
+            _hi |= set._hi;
+        }
+
+        @Override
+        void andNot(SquareSet other) {
+            Medium set = (Medium) other;
+            _lo &= ~set._lo;
+            _hi &= ~set._hi;
+        }
+
+        @Override
+        void slide(SquareSet from, int dir, SquareSet open) {
+            int shift = grid().shift(dir);
+            Medium steps = (Medium) grid().steps(dir);
+            long maskLo = ((Medium) open)._lo & steps._lo,
+                maskHi = ((Medium) open)._hi & steps._hi;
+            long lo = ((Medium) from)._lo, hi = ((Medium) from)._hi;
+            // Java takes shift distances modulo 64, so that -shift
+            // below is 64 - shift, and shift is 64 + shift.
+            if (shift > 0) {
+                while ((lo | hi) != 0) {
+                    hi = (hi << shift | lo >>> -shift) & maskHi;
+                    lo = (lo << shift) & maskLo;
+                    _lo |= lo;
+                    _hi |= hi;
+                }
+            } else {
+                while ((lo | hi) != 0) {
+                    lo = (lo >>> -shift | hi << shift) & maskLo;
+                    hi = (hi >>> -shift) & maskHi;
+                    _lo |= lo;
+                    _hi |= hi;
+                }
+            }
+        }
+
+        @Override
+        int next(int k) {
+            if (k < Long.SIZE) {
+                long rest = _lo & (-1L << k);
+                if (rest != 0) {
+                    return Long.numberOfTrailingZeros(rest);
+                }
+                k = Long.SIZE;
+            }
+            if (k >= 2 * Long.SIZE) {
+                return -1;
+            }
+            long rest = _hi & (-1L << k);
+            return rest == 0 ? -1
+                : Long.SIZE + Long.numberOfTrailingZeros(rest);
+        }
+
+        /** Bit k of _lo, or bit k - 64 of _hi, is set iff I contain the
+         *  square with index k. */
+        private long _lo, _hi;
+    }
+
+    /** A set of squares of a Grid with more than 128 squares. */
+    static final class Large extends SquareSet {
+
+        /** An empty set of squares of GRID. */
+        Large(Grid grid) {
+            super(grid);
+            _words = new long[(grid.count() + Long.SIZE - 1) / Long.SIZE];
+            _slid = new long[_words.length];
+        }
+
+        @Override
+        boolean contains(int k) {
+            return (_words[k >>> 6] & (1L << k)) != 0;
+        }
+
+        @Override
+        void add(int k) {
+            _words[k >>> 6] |= 1L << k;
+        }
+
+        @Override
+        void remove(int k) {
+            _words[k >>> 6] &= ~(1L << k);
+        }
+
+        @Override
+        void clear() {
+            for (int i = 0; i < _words.length; i += 1) {
+                _words[i] = 0;
+            }
+        }
+
+        @Override
+        int size() {
+            int n = 0;
+            for (long w : _words) {
+                n += Long.bitCount(w);
+            }
+            return n;
+        }
+
+        @Override
+        boolean isEmpty() {
+            for (long w : _words) {
+                if (w != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean intersects(SquareSet other) {
+            long[] words = ((Large) other)._words;
+            for (int i = 0; i < _words.length; i += 1) {
+                if ((_words[i] & words[i]) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        void copy(SquareSet other) {
+            System.arraycopy(((Large) other)._words, 0, _words, 0,
+                             _words.length);
+        }
+
+        @Override
+        void or(SquareSet other) {
+            long[] words = ((Large) other)._words;
+            for (int i = 0; i < _words.length; i += 1) {
+                _words[i] |= words[i];
+            }
+        }
+
+        @Override
+        void andNot(SquareSet other) {
+            long[] words = ((Large) other)._words;
+            for (int i = 0; i < _words.length; i += 1) {
+                _words[i] &= ~words[i];
+            }
+        }
+
+        @Override
+        void slide(SquareSet from, int dir, SquareSet open) {
+            int shift = grid().shift(dir), n = _words.length;
+            long[] x = _slid, opens = ((Large) open)._words,
+                steps = ((Large) grid().steps(dir))._words;
+            System.arraycopy(((Large) from)._words, 0, x, 0, n);
+            boolean moving = true;
+            // Java takes shift distances modulo 64, so that -shift
+            // below is 64 - shift, and shift is 64 + shift.
+            while (moving) {
+                moving = false;
+                if (shift > 0) {
+                    for (int i = n - 1; i > 0; i -= 1) {
+                        x[i] = x[i] << shift | x[i - 1] >>> -shift;
+                    }
+                    x[0] <<= shift;
+                } else {
+                    for (int i = 0; i < n - 1; i += 1) {
+                        x[i] = x[i] >>> -shift | x[i + 1] << shift;
+                    }
+                    x[n - 1] >>>= -shift;
+                }
+                for (int i = 0; i < n; i += 1) {
+                    x[i] &= opens[i] & steps[i];
+                    _words[i] |= x[i];
+                    moving |= x[i] != 0;
+                }
+            }
+        }
+
+        @Override
+        int next(int k) {
+            int i = k >>> 6;
+            if (i >= _words.length) {
+                return -1;
+            }
+            long rest = _words[i] & (-1L << k);
+            while (rest == 0) {
+                i += 1;
+                if (i == _words.length) {
+                    return -1;
+                }
+                rest = _words[i];
+            }
+            return i * Long.SIZE + Long.numberOfTrailingZeros(rest);
+        }
+
+        /** Bit k % 64 of _words[k / 64] is set iff I contain the square
+         *  with index k. */
+        private final long[] _words;
+        /** Work space for slide. */
+        private final long[] _slid;
+    }
+
+    /** The Grid whose squares I contain. */
+    private final Grid _grid;
+}
@@ -0,0 +1,528 @@
+package amazons;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static amazons.Piece.*;
+
+/** A table of the exact values of small contested regions: connected
+ *  groups of at most limit() squares holding queens of both sides.
+ *  Run as
+ *      java amazons.Tablebase FILE [LIMIT]
+ *  (or 'make tablebase') to generate the table for regions of up to
+ *  LIMIT (default DEFAULT_LIMIT) squares into FILE, which the AI
+ *  consults if the system property amazons.tablebase names it.
+ *
+ *  Once a position's regions are separated except for one contested
+ *  region G, the position is the sum of G and the moves each side can
+ *  still make in its own regions, which amounts to n spare moves for
+ *  white (or -n for black) that either side may use at any time.
+ *  Having more spare moves never hurts, so for each side to move there
+ *  is a threshold t such that white wins G + n iff n >= t.  The table
+ *  records both thresholds.  They are computed by a memoized
+ *  depth-first search of the positions reachable from G (see solve),
+ *  which include sums of several regions within G's bounding rectangle.
+ *
+ *  The file holds a header (MAGIC, the limit, the number of slots, and
+ *  the number of entries) followed by an open-addressed hash table of
+ *  ENTRY-byte slots: a 64-bit key (see key), which encodes a region
+ *  exactly, is the same for all eight symmetric images of it, and is 0
+ *  for an empty slot, and the thresholds with white and with black to
+ *  move, one byte each.
+ *  It is mapped into memory, so that a probe touches only a slot or
+ *  two.
+ *  @author Wenhan Jin
+ */
+public class Tablebase {
+
+    /** Default largest number of squares in a region in the table. */
+    static final int DEFAULT_LIMIT = 6;
+    /** Largest number of squares in a region in any table, which is
+     *  also the largest width or height of a region (see key). */
+    static final int MAX_LIMIT = 7;
+    /** Largest number of queens of one side in a region in the table. */
+    static final int MAX_QUEENS = 4;
+    /** Returned by threshold for regions not in the table. */
+    static final int UNKNOWN = Integer.MIN_VALUE;
+
+    /** Identifies tablebase files ("amztb" and a version number). */
+    private static final long MAGIC = 0x616d7a7462000002L;
+    /** Size of the file header in bytes. */
+    private static final int HEADER = 20;
+    /** Size of a slot in bytes. */
+    private static final int ENTRY = 10;
+
+    /** The table named by the system property amazons.tablebase, or null
+     *  if it is not set or the table cannot be read. */
+    static final Tablebase DEFAULT = openDefault();
+
+    /** A tablebase whose file contents are DATA. */
+    private Tablebase(ByteBuffer data) {
+        if (data.capacity() < HEADER || data.getLong(0) != MAGIC) {
+            throw Utils.error("not a tablebase file");
+        }
+        _data = data;
+        _limit = data.getInt(8);
+        _slots = data.getInt(12);
+        _size = data.getInt(16);
+        if (Integer.bitCount(_slots) != 1 || _limit < 1
+            || _limit > MAX_LIMIT || data.capacity() != HEADER + (long) _slots * ENTRY) {
+            throw Utils.error("malformed tablebase file");
+        }
+    }
+
+    /** Return the tablebase in FILE, mapped into memory. */
+    static Tablebase open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return new Tablebase(channel.map(FileChannel.MapMode.READ_ONLY,
+                                             0, channel.size()));
+        }
+    }
+
+    /** Return the value of DEFAULT. */
+    private static Tablebase openDefault() {
+        String name = System.getProperty("amazons.tablebase");
+        if (name == null) {
+            return null;
+        }
+        try {
+            return open(Paths.get(name));
+        } catch (IOException | IllegalArgumentException excp) {
+            System.err.printf("Could not read tablebase %s: %s%n", name,
+                              excp.getMessage());
+            return null;
+        }
+    }
+
+    /** Return the largest number of squares in the regions I hold. */
+    int limit() {
+        return _limit;
+    }
+
+    /** Return the number of regions I hold. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the threshold (see above) for the region in a WIDTH x
+     *  HEIGHT rectangle whose empty squares, white queens, and black
+     *  queens are EMPTY, WHITES, and BLACKS (as for Regions.solve), with
+     *  TOMOVE to move, or UNKNOWN if the region is not in the table. */
+    int threshold(int width, int height, long empty, long whites,
+                  long blacks, Piece toMove) {
+        int squares = Long.bitCount(empty | whites | blacks);
+        if (squares > _limit || width > MAX_LIMIT || height > MAX_LIMIT) {
+            return UNKNOWN;
+        }
+        long key = key(width, height, empty, whites, blacks);
+        for (int slot = slot(key, _slots); ;
+             slot = (slot + 1) & (_slots - 1)) {
+            int at = HEADER + slot * ENTRY;
+            long found = _data.getLong(at);
+            if (found == key) {
+                return _data.get(at + (toMove == WHITE ? 8 : 9));
+            } else if (found == 0) {
+                return UNKNOWN;
+            }
+        }
+    }
+
+    /** Write the table for regions of up to LIMIT squares (at most
+     *  MAX_LIMIT) to FILE, and return the number of regions. */
+    static int generate(Path file, int limit) throws IOException {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw Utils.error("limit must be between 1 and %d", MAX_LIMIT);
+        }
+        Map<Long, Integer> table = new HashMap<>();
+        Map<State, Integer> memo = new HashMap<>();
+        for (long shape : shapes(limit)) {
+            int width = 0, height = 0;
+            List<Integer> cells = new ArrayList<>();
+            for (long s = shape; s != 0; s &= s - 1) {
+                int bit = Long.numberOfTrailingZeros(s);
+                width = Math.max(width, bit % limit + 1);
+                height = Math.max(height, bit / limit + 1);
+                cells.add(bit);
+            }
+            int n = cells.size(), codes = 1;
+            for (int i = 0; i < n; i += 1) {
+                codes *= 3;
+            }
+            for (int c = 0; c < codes; c += 1) {
+                long empty = 0, whites = 0, blacks = 0;
+                int w = 0, b = 0;
+                for (int i = 0, code = c; i < n; i += 1, code /= 3) {
+                    int cell = cells.get(i);
+                    long bit = 1L << (cell / limit * width + cell % limit);
+                    switch (code % 3) {
+                    case 0:
+                        empty |= bit;
+                        break;
+                    case 1:
+                        whites |= bit;
+                        w += 1;
+                        break;
+                    default:
+                        blacks |= bit;
+                        b += 1;
+                        break;
+                    }
+                }
+                if (w == 0 || b == 0 || w > MAX_QUEENS || b > MAX_QUEENS) {
+                    continue;
+                }
+                long key = key(width, height, empty, whites, blacks);
+                if (!table.containsKey(key)) {
+                    table.put(key, solve(width, height, empty, whites,
+                                         blacks, memo));
+                }
+            }
+            memo.clear();
+        }
+        write(file, limit, table);
+        return table.size();
+    }
+
+    /** Write TABLE, which maps keys to pairs of thresholds (as returned
+     *  by solve), to FILE as a table of regions of up to LIMIT
+     *  squares. */
+    private static void write(Path file, int limit, Map<Long, Integer> table)
+        throws IOException {
+        int slots = Integer.highestOneBit(Math.max(1, table.size())) * 4;
+        ByteBuffer data = ByteBuffer.allocate(HEADER + slots * ENTRY);
+        data.putLong(0, MAGIC);
+        data.putInt(8, limit);
+        data.putInt(12, slots);
+        data.putInt(16, table.size());
+        for (Map.Entry<Long, Integer> entry : table.entrySet()) {
+            long key = entry.getKey();
+            int slot = slot(key, slots);
+            while (data.getLong(HEADER + slot * ENTRY) != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            int at = HEADER + slot * ENTRY;
+            data.putLong(at, key);
+            data.put(at + 8, (byte) (entry.getValue() >> 16));
+            data.put(at + 9, (byte) entry.getValue().intValue());
+        }
+        try (FileChannel channel =
+             FileChannel.open(file, StandardOpenOption.CREATE,
+                              StandardOpenOption.WRITE,
+                              StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+
+    /** Return the thresholds (see above) of the position in a WIDTH x
+     *  HEIGHT rectangle with empty squares EMPTY and white and black
+     *  queens WHITES and BLACKS, as (short) white-to-move << 16 |
+     *  (short) black-to-move, using and adding to the values in MEMO.
+     *  With white to move, white wins G + n iff white has a move in G
+     *  after which it wins with black to move, or if n > 0 and white
+     *  wins G + (n - 1) with black to move.  Likewise with black to
+     *  move. */
+    static int solve(int width, int height, long empty, long whites,
+                     long blacks, Map<State, Integer> memo) {
+        State state = new State(width, empty, whites, blacks);
+        Integer known = memo.get(state);
+        if (known != null) {
+            return known;
+        }
+        int none = Long.bitCount(empty) + 2;
+        int best = none, worst = -none;
+        for (int side = 0; side < 2; side += 1) {
+            long mine = side == 0 ? whites : blacks;
+            for (long qs = mine; qs != 0; qs &= qs - 1) {
+                int from = Long.numberOfTrailingZeros(qs);
+                long vacated = empty | (1L << from);
+                for (int[] dir : Square.DIR) {
+                    for (int to = Regions.step(width, height, from, dir);
+                         to >= 0 && (empty & (1L << to)) != 0;
+                         to = Regions.step(width, height, to, dir)) {
+                        long moved = vacated & ~(1L << to);
+                        long queens = mine & ~(1L << from) | (1L << to);
+                        for (int[] dir2 : Square.DIR) {
+                            for (int spear =
+                                     Regions.step(width, height, to, dir2);
+                                 spear >= 0 && (moved & (1L << spear)) != 0;
+                                 spear = Regions.step(width, height, spear,
+                                                      dir2)) {
+                                long left = moved & ~(1L << spear);
+                                int value = side == 0
+                                    ? solve(width, height, left, queens,
+                                            blacks, memo)
+                                    : solve(width, height, left, whites,
+                                            queens, memo);
+                                if (side == 0) {
+                                    best = Math.min(best, (short) value);
+                                } else {
+                                    worst = Math.max(worst, value >> 16);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        int whiteFirst = Math.min(best, Math.max(1, worst + 1)),
+            blackFirst = Math.max(worst, Math.min(0, best - 1));
+        int result = whiteFirst << 16 | (blackFirst & 0xffff);
+        memo.put(state, result);
+        return result;
+    }
+
+    /** Return the key of the non-empty region in a WIDTH x HEIGHT
+     *  rectangle with empty squares EMPTY and white and black queens
+     *  WHITES and BLACKS (as for threshold), where WIDTH and HEIGHT are
+     *  at most MAX_LIMIT and the region has at most MAX_LIMIT squares:
+     *  the least of the codes of its eight images under reflection and
+     *  rotation.  The code of an image has its squares in the low
+     *  MAX_LIMIT**2 bits (bit c + MAX_LIMIT * r for column c and row r),
+     *  followed by two bits for each square, in order, holding 0 for an
+     *  empty square, 1 for a white queen, and 2 for a black queen.  So
+     *  regions have the same key iff they are images of each other, and
+     *  a key is never 0. */
+    static long key(int width, int height, long empty, long whites,
+                    long blacks) {
+        long result = Long.MAX_VALUE;
+        for (int t = 0; t < Grid.SYMMETRIES; t += 1) {
+            int w = (t & 4) != 0 ? height : width;
+            long e = pack(transform(t, width, height, empty), w),
+                white = pack(transform(t, width, height, whites), w),
+                black = pack(transform(t, width, height, blacks), w);
+            long squares = e | white | black, code = squares;
+            int shift = MAX_LIMIT * MAX_LIMIT;
+            for (long s = squares; s != 0; s &= s - 1, shift += 2) {
+                long bit = s & -s;
+                if ((white & bit) != 0) {
+                    code |= 1L << shift;
+                } else if ((black & bit) != 0) {
+                    code |= 2L << shift;
+                }
+            }
+            result = Math.min(result, code);
+        }
+        return result;
+    }
+
+    /** Return SQUARES, a set of squares of a rectangle of width WIDTH (as
+     *  for threshold), as a set of squares of a rectangle of width
+     *  MAX_LIMIT. */
+    private static long pack(long squares, int width) {
+        long result = 0;
+        for (long s = squares; s != 0; s &= s - 1) {
+            int bit = Long.numberOfTrailingZeros(s);
+            result |= 1L << (bit / width * MAX_LIMIT + bit % width);
+        }
+        return result;
+    }
+
+    /** Return the squares of SQUARES, a set of squares of a WIDTH x
+     *  HEIGHT rectangle (as for threshold), under symmetry T (as for
+     *  Grid.transform) of the rectangle. */
+    private static long transform(int t, int width, int height,
+                                  long squares) {
+        int w = (t & 4) != 0 ? height : width,
+            h = (t & 4) != 0 ? width : height;
+        long result = 0;
+        for (long s = squares; s != 0; s &= s - 1) {
+            int bit = Long.numberOfTrailingZeros(s);
+            int col = bit % width, row = bit / width;
+            if ((t & 4) != 0) {
+                int tmp = col;
+                col = row;
+                row = tmp;
+            }
+            if ((t & 1) != 0) {
+                col = w - 1 - col;
+            }
+            if ((t & 2) != 0) {
+                row = h - 1 - row;
+            }
+            result |= 1L << (row * w + col);
+        }
+        return result;
+    }
+
+    /** Return a well-mixed hash of X. */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+
+    /** Return the first slot to probe for KEY in a table of SLOTS
+     *  slots. */
+    private static int slot(long key, int slots) {
+        return (int) (mix(key) >>> 32) & (slots - 1);
+    }
+
+    /** Return the connected (in all eight directions) sets of at most
+     *  LIMIT squares, one for each set of eight images under reflection
+     *  and rotation, each translated to the lower-left corner of a
+     *  LIMIT x LIMIT square and given as a set of bits (bit c + LIMIT * r
+     *  for column c and row r). */
+    private static List<Long> shapes(int limit) {
+        List<Long> result = new ArrayList<>();
+        Set<Long> seen = new HashSet<>(), canonical = new HashSet<>();
+        List<Long> last = List.of(1L);
+        seen.add(1L);
+        for (int n = 1; n <= limit; n += 1) {
+            List<Long> next = new ArrayList<>();
+            for (long shape : last) {
+                long least = Long.MAX_VALUE;
+                for (int t = 0; t < Grid.SYMMETRIES; t += 1) {
+                    least = Math.min(least, normalize(transform(t, limit,
+                                                                limit,
+                                                                shape),
+                                                      limit));
+                }
+                if (canonical.add(least)) {
+                    result.add(shape);
+                }
+                if (n == limit) {
+                    continue;
+                }
+                for (long s = shape; s != 0; s &= s - 1) {
+                    int bit = Long.numberOfTrailingZeros(s);
+                    int col = bit % limit, row = bit / limit;
+                    for (int[] dir : Square.DIR) {
+                        int c = col + dir[0] + 1, r = row + dir[1] + 1;
+                        if (c < 0 || r < 0 || c > limit || r > limit) {
+                            continue;
+                        }
+                        long grown = normalize(shift(shape, limit)
+                                               | 1L << (r * (limit + 1) + c),
+                                               limit + 1);
+                        long fitted = refit(grown, limit + 1, limit);
+                        if (fitted != 0 && seen.add(fitted)) {
+                            next.add(fitted);
+                        }
+                    }
+                }
+            }
+            last = next;
+        }
+        return result;
+    }
+
+    /** Return SHAPE, a set of bits of a LIMIT x LIMIT square, moved up
+     *  and right by one square within a (LIMIT + 1) x (LIMIT + 1)
+     *  square. */
+    private static long shift(long shape, int limit) {
+        long result = 0;
+        for (long s = shape; s != 0; s &= s - 1) {
+            int bit = Long.numberOfTrailingZeros(s);
+            result |= 1L << ((bit / limit + 1) * (limit + 1)
+                             + bit % limit + 1);
+        }
+        return result;
+    }
+
+    /** Return SHAPE, a set of bits of a SIZE x SIZE square, translated
+     *  so that its lowest row and leftmost column are 0. */
+    private static long normalize(long shape, int size) {
+        int minCol = size, minRow = size;
+        for (long s = shape; s != 0; s &= s - 1) {
+            int bit = Long.numberOfTrailingZeros(s);
+            minCol = Math.min(minCol, bit % size);
+            minRow = Math.min(minRow, bit / size);
+        }
+        long result = 0;
+        for (long s = shape; s != 0; s &= s - 1) {
+            int bit = Long.numberOfTrailingZeros(s);
+            result |= 1L << ((bit / size - minRow) * size
+                             + bit % size - minCol);
+        }
+        return result;
+    }
+
+    /** Return SHAPE, a normalized set of bits of a FROM x FROM square,
+     *  as a set of bits of a TO x TO square, or 0 if it does not fit. */
+    private static long refit(long shape, int from, int to) {
+        long result = 0;
+        for (long s = shape; s != 0; s &= s - 1) {
+            int bit = Long.numberOfTrailingZeros(s);
+            int col = bit % from, row = bit / from;
+            if (col >= to || row >= to) {
+                return 0;
+            }
+            result |= 1L << (row * to + col);
+        }
+        return result;
+    }
+
+    /** Generate a tablebase as described above, with ARGS giving FILE and
+     *  LIMIT. */
+    public static void main(String... args) {
+        if (args.length < 1 || args.length > 2) {
+            Utils.fatal("Usage: java amazons.Tablebase FILE [LIMIT]%n");
+        }
+        try {
+            int limit = args.length > 1 ? Integer.parseInt(args[1])
+                : DEFAULT_LIMIT;
+            long start = System.nanoTime();
+            int count = generate(Paths.get(args[0]), limit);
+            System.out.printf("%d regions of up to %d squares in %.1f s%n",
+                              count, limit,
+                              (System.nanoTime() - start) * 1e-9);
+        } catch (IOException | IllegalArgumentException excp) {
+            Utils.fatal("Could not generate tablebase: %s%n",
+                        excp.getMessage());
+        }
+    }
+
+    /** A position within a rectangle, as a key for solve's memo. */
+    static final class State {
+        /** The position in a rectangle of width WIDTH with empty squares
+         *  EMPTY and white and black queens WHITES and BLACKS. */
+        State(int width, long empty, long whites, long blacks) {
+            _width = width;
+            _empty = empty;
+            _whites = whites;
+            _blacks = blacks;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof State)) {
+                return false;
+            }
+            State other = (State) obj;
+            return _width == other._width && _empty == other._empty
+                && _whites == other._whites && _blacks == other._blacks;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_width, _empty, _whites, _blacks);
+        }
+
+        /** Width of the rectangle. */
+        private final int _width;
+        /** Empty squares and queens, as for threshold. */
+        private final long _empty, _whites, _blacks;
+    }
+
+    /** The contents of the file. */
+    private final ByteBuffer _data;
+    /** Value of limit(). */
+    private final int _limit;
+    /** Number of slots in the hash table (a power of 2). */
+    private final int _slots;
+    /** Value of size(). */
+    private final int _size;
+}
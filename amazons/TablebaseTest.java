@@ -0,0 +1,173 @@
+package amazons;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static amazons.Piece.*;
+
+/** Tests of the tablebase of small contested regions.
+ *  @author Wenhan Jin
+ */
+public class TablebaseTest {
+
+    /** Limit of the table generated for these tests. */
+    private static final int LIMIT = 5;
+
+    /** The table generated for these tests, or null if it has not been
+     *  generated yet. */
+    private static Tablebase table;
+
+    /** Return the table for these tests, generating it if needed. */
+    private static synchronized Tablebase table() throws IOException {
+        if (table == null) {
+            Path file = Files.createTempFile("amazons", ".tb");
+            file.toFile().deleteOnExit();
+            int count = Tablebase.generate(file, LIMIT);
+            table = Tablebase.open(file);
+            assertEquals(count, table.size());
+            assertEquals(LIMIT, table.limit());
+        }
+        return table;
+    }
+
+    @Test
+    public void testSimple() throws IOException {
+        Tablebase table = table();
+        long a = 1, b = 2, c = 4;
+        assertEquals(2, table.threshold(3, 1, c, a, b, WHITE));
+        assertEquals(1, table.threshold(3, 1, c, a, b, BLACK));
+        assertEquals(1, table.threshold(1, 3, c, a, b, BLACK));
+        assertEquals(1, table.threshold(3, 1, a, c, b, BLACK));
+        assertEquals(0, table.threshold(3, 1, b, a, c, WHITE));
+        assertEquals(1, table.threshold(3, 1, b, a, c, BLACK));
+        assertEquals(Tablebase.UNKNOWN,
+                     table.threshold(3, 2, 0b111100, a, b, WHITE));
+    }
+
+    @Test
+    public void testKeys() {
+        long a = 1, b = 2, c = 4;
+        long key = Tablebase.key(3, 1, c, a, b);
+        assertEquals(key, Tablebase.key(1, 3, c, a, b));
+        assertEquals(key, Tablebase.key(3, 1, a, c, b));
+        assertNotEquals(key, Tablebase.key(3, 1, c, b, a));
+        assertNotEquals(key, Tablebase.key(3, 1, b, a, c));
+        Set<Long> keys = new HashSet<>();
+        for (int code = 0; code < 729; code += 1) {
+            long[] pieces = new long[3];
+            for (int k = 0, x = code; k < 6; k += 1, x /= 3) {
+                pieces[x % 3] |= 1L << k;
+            }
+            key = Tablebase.key(3, 2, pieces[0], pieces[1], pieces[2]);
+            assertNotEquals(0, key);
+            assertEquals(key, Tablebase.key(3, 2, flip(pieces[0]),
+                                            flip(pieces[1]),
+                                            flip(pieces[2])));
+            keys.add(key);
+        }
+        assertEquals(216, keys.size());
+    }
+
+    /** Return SQUARES, a set of squares of a 3 x 2 rectangle, with its
+     *  rows exchanged. */
+    private static long flip(long squares) {
+        return squares >>> 3 | (squares & 0b111) << 3;
+    }
+
+    @Test
+    public void testBadFile() throws IOException {
+        File bad = File.createTempFile("amazons", ".tb");
+        try {
+            Files.write(bad.toPath(), new byte[32]);
+            Tablebase.open(bad.toPath());
+            fail("accepted a file that is not a tablebase");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        } finally {
+            bad.delete();
+        }
+    }
+
+    @Test
+    public void testAgainstSearch() throws IOException {
+        Tablebase table = table();
+        Random random = new Random(41);
+        int checked = 0;
+        for (int game = 0; game < 200; game += 1) {
+            Board b = new Board(Layout.parse(4, "a1,d1/a4,d4"));
+            while (b.winner() == null) {
+                if (b.contested() == 1 && countEmpty(b) <= 7) {
+                    Boolean expected = whiteWins(b);
+                    Boolean found = verdict(b, table);
+                    if (found != null) {
+                        assertEquals(expected, found);
+                        checked += 1;
+                    }
+                }
+                List<Move> moves = new ArrayList<>();
+                b.legalMoves().forEachRemaining(moves::add);
+                b.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+        assertTrue(checked > 100);
+    }
+
+    /** Return true iff white wins B according to TABLE, or null if TABLE
+     *  does not decide B, which has one contested region. */
+    private static Boolean verdict(Board b, Tablebase table) {
+        Regions regions = new Regions(b);
+        int white = regions.moves(WHITE), black = regions.moves(BLACK);
+        for (int r = 0; r < regions.count(); r += 1) {
+            if (regions.owner(r) == null) {
+                int threshold = regions.threshold(r, b.turn(), table);
+                if (threshold == Tablebase.UNKNOWN || white < 0
+                    || black < 0) {
+                    return null;
+                }
+                return white - black >= threshold;
+            }
+        }
+        throw new AssertionError("no contested region");
+    }
+
+    /** Return true iff white wins B with best play, by exhaustive
+     *  search. */
+    private static boolean whiteWins(Board b) {
+        Piece winner = b.winner();
+        if (winner != null) {
+            return winner == WHITE;
+        }
+        List<Move> moves = new ArrayList<>();
+        b.legalMoves().forEachRemaining(moves::add);
+        for (Move m : moves) {
+            b.makeMove(m);
+            boolean white = whiteWins(b);
+            b.undo();
+            if (white == (b.turn() == WHITE)) {
+                return white;
+            }
+        }
+        return b.turn() != WHITE;
+    }
+
+    /** Return the number of empty squares of B. */
+    private static int countEmpty(Board b) {
+        int count = 0;
+        for (int k = 0; k < b.grid().count(); k += 1) {
+            if (b.get(k) == EMPTY) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,256 @@
+package amazons;
+
+import java.util.Arrays;
+
+import static amazons.Piece.*;
+
+/** An evaluator that estimates who controls each empty square.  For each
+ *  side it finds the queen distance (the number of queen moves needed
+ *  to reach a square, supposing no further spears are thrown) and the
+ *  king distance (the same, moving one square at a time) of every
+ *  square from that side's queens.  A side is credited with the empty
+ *  squares it is strictly nearer to by each measure; the score is
+ *  QUEEN_WEIGHT times the difference in queen-distance territory, plus
+ *  KING_WEIGHT times that in king-distance territory, plus the mobility
+ *  difference (see Evaluator.MOBILITY), which breaks ties.
+ *
+ *  The distance maps are kept in byte arrays over the board surrounded
+ *  by a border of blocked squares, so that the eight neighbors of any
+ *  board square are at fixed offsets, and distances that would reach
+ *  UNREACHED are recorded as UNREACHED.  Queen distances come from
+ *  Board.distances, which works on 64 squares at a time.  This class
+ *  computes king distances by breadth-first search and compares the
+ *  maps one square at a time; VectorTerritory, used when the incubating
+ *  jdk.incubator.vector module is present, does both with vector
+ *  operations (see create).
+ *  @author Wenhan Jin
+ */
+class Territory implements Evaluator {
+
+    /** Weight of the queen-distance territory difference. */
+    static final int QUEEN_WEIGHT = 2;
+    /** Weight of the king-distance territory difference. */
+    static final int KING_WEIGHT = 1;
+    /** Average queen- and king-distance territory differences per unit of
+     *  mobility difference, as fitted to positions from self-play on
+     *  10x10 boards.  Used for estimates (see estimate). */
+    static final double QUEEN_PER_MOVE = 0.86, KING_PER_MOVE = 0.81;
+    /** Distance recorded for squares that cannot be reached (or that
+     *  are at least this far away). */
+    static final byte UNREACHED = 120;
+
+    /** True iff create may use VectorTerritory (system property
+     *  amazons.vector, default true). */
+    static final boolean VECTOR =
+        !System.getProperty("amazons.vector", "true").equals("false");
+
+    /** Return a new territory evaluator: a VectorTerritory if VECTOR and
+     *  the jdk.incubator.vector module has been loaded (as by the java
+     *  option --add-modules jdk.incubator.vector), and otherwise one
+     *  that uses only scalar operations. */
+    static Territory create() {
+        if (VECTOR && ModuleLayer.boot().findModule("jdk.incubator.vector")
+                                        .isPresent()) {
+            try {
+                return (Territory) Class.forName("amazons.VectorTerritory")
+                    .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError excp) {
+                return new Territory();
+            }
+        }
+        return new Territory();
+    }
+
+    /** A territory evaluator that uses only scalar operations. */
+    Territory() {
+    }
+
+    @Override
+    public String name() {
+        return "territory";
+    }
+
+    @Override
+    public int score(Board board) {
+        measure(board);
+        return QUEEN_WEIGHT * queenTerritory() + KING_WEIGHT * kingTerritory()
+            + board.mobility(WHITE) - board.mobility(BLACK);
+    }
+
+    /** Return my score for BOARD as predicted from its mobility alone,
+     *  which is usually within about 50 of the true score on 10x10
+     *  boards. */
+    @Override
+    public int estimate(Board board) {
+        return (int) Math.round((1 + QUEEN_WEIGHT * QUEEN_PER_MOVE
+                                 + KING_WEIGHT * KING_PER_MOVE)
+                                * (board.mobility(WHITE)
+                                   - board.mobility(BLACK)));
+    }
+
+    /** Compute the distance maps of BOARD, for use by queenTerritory,
+     *  kingTerritory, and trapped. */
+    void measure(Board board) {
+        prepare(board);
+        for (int i = 0; i < 2; i += 1) {
+            Piece side = i == 0 ? WHITE : BLACK;
+            queenDistances(board, side, _queen[i]);
+            kingDistances(_king[i]);
+        }
+    }
+
+    /** Return the queen-distance territory difference (white's minus
+     *  black's) of the board last measured. */
+    int queenTerritory() {
+        return compare(_queen[0], _queen[1]);
+    }
+
+    /** Return the king-distance territory difference of the board last
+     *  measured. */
+    int kingTerritory() {
+        return compare(_king[0], _king[1]);
+    }
+
+    /** Return the number of SIDE's queens that have no empty neighbor
+     *  (and so cannot move) in the board last measured. */
+    int trapped(Piece side) {
+        byte[] king = _king[Board.side(side)];
+        int result = 0;
+        for (int k : _cells) {
+            if (king[k] == 0) {
+                boolean free = false;
+                for (int offset : _offsets) {
+                    free |= _open[k + offset] != 0;
+                }
+                result += free ? 0 : 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of empty squares nearer to white than to black
+     *  according to the distance maps WHITES and BLACKS, minus the number
+     *  nearer to black. */
+    int compare(byte[] whites, byte[] blacks) {
+        int total = 0;
+        for (int k = 0; k < _length; k += 1) {
+            if (_open[k] != 0) {
+                total += Integer.signum(blacks[k] - whites[k]);
+            }
+        }
+        return total;
+    }
+
+    /** Set DISTANCES, which initially holds 0 at the squares of one
+     *  side's queens and UNREACHED elsewhere, to the king distances
+     *  from those queens through empty squares. */
+    void kingDistances(byte[] distances) {
+        int head = 0, tail = 0;
+        for (int k : _cells) {
+            if (distances[k] == 0) {
+                _queue[tail++] = k;
+            }
+        }
+        while (head < tail) {
+            int k = _queue[head++];
+            int d = distances[k] + 1;
+            if (d >= UNREACHED) {
+                continue;
+            }
+            for (int offset : _offsets) {
+                int j = k + offset;
+                if (_open[j] != 0 && distances[j] > d) {
+                    distances[j] = (byte) d;
+                    _queue[tail++] = j;
+                }
+            }
+        }
+    }
+
+    /** Return the index of the first square of the bordered board, of
+     *  WIDTH squares on a side, in each map. */
+    int margin(int width) {
+        return 0;
+    }
+
+    /** Return the number of elements in each map for a bordered board
+     *  of WIDTH squares on a side, which is at least margin(WIDTH) +
+     *  WIDTH * WIDTH, and may be more to suit a subclass. */
+    int length(int width) {
+        return width * width;
+    }
+
+    /** Set _open to the empty squares of BOARD, allocating my maps
+     *  first if BOARD's size differs from that of the last board I
+     *  evaluated. */
+    private void prepare(Board board) {
+        Grid grid = board.grid();
+        if (grid != _grid) {
+            int size = grid.size(), width = size + 2;
+            _grid = grid;
+            _width = width;
+            _margin = margin(width);
+            _length = length(width);
+            _open = new byte[_length];
+            _queen = new byte[2][_length];
+            _king = new byte[2][_length];
+            _cells = new int[grid.count()];
+            for (int k = 0; k < _cells.length; k += 1) {
+                _cells[k] = _margin + (k / size + 1) * width + k % size + 1;
+            }
+            _offsets = new int[8];
+            for (int dir = 0; dir < 8; dir += 1) {
+                _offsets[dir] = Square.DIR[dir][0]
+                    + Square.DIR[dir][1] * width;
+            }
+            _distances = new int[grid.count()];
+            _queue = new int[_length];
+        }
+        for (int k = 0; k < _cells.length; k += 1) {
+            _open[_cells[k]] = (byte) (board.get(k) == EMPTY ? 1 : 0);
+        }
+    }
+
+    /** Set DISTANCES to the queen distances of the squares of BOARD from
+     *  SIDE's queens, and initialize the king-distance map for SIDE to 0
+     *  at SIDE's queens and UNREACHED elsewhere. */
+    private void queenDistances(Board board, Piece side, byte[] distances) {
+        byte[] king = _king[Board.side(side)];
+        Arrays.fill(distances, UNREACHED);
+        Arrays.fill(king, UNREACHED);
+        board.distances(side, _distances);
+        for (int k = 0; k < _cells.length; k += 1) {
+            int d = _distances[k];
+            if (d >= 0 && d < UNREACHED) {
+                distances[_cells[k]] = (byte) d;
+                if (d == 0) {
+                    king[_cells[k]] = 0;
+                }
+            }
+        }
+    }
+
+    /** The geometry of the last board evaluated, or null. */
+    private Grid _grid;
+    /** Number of squares on a side of the bordered board. */
+    int _width;
+    /** Index of the first square of the bordered board in each map. */
+    int _margin;
+    /** Number of elements in each map. */
+    int _length;
+    /** _open[c] is 1 if the map element c is an empty square, and
+     *  otherwise 0. */
+    byte[] _open;
+    /** Queen- and king-distance maps for each side (as for
+     *  Board.side). */
+    private byte[][] _queen, _king;
+    /** _cells[k] is the map element for the square with index k. */
+    int[] _cells;
+    /** Differences between the map elements of a square and of its
+     *  neighbor in each direction (as for Square.DIR). */
+    int[] _offsets;
+    /** Work space for Board.distances. */
+    private int[] _distances;
+    /** Work queue for kingDistances. */
+    private int[] _queue;
+}
@@ -0,0 +1,191 @@
+package amazons;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static amazons.Piece.*;
+
+/** Tests of the static evaluators.
+ *  @author Wenhan Jin
+ */
+public class TerritoryTest {
+
+    @Test
+    public void testCreate() {
+        assertSame(Evaluator.MOBILITY, Evaluator.create("mobility"));
+        assertTrue(Evaluator.create("territory") instanceof Territory);
+        assertTrue(Evaluator.create("weighted") instanceof Weighted);
+        try {
+            Evaluator.create("territroy");
+            fail("accepted an unknown evaluator");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testInitial() {
+        Board b = new Board();
+        assertEquals(0, new Territory().score(b));
+        assertEquals(0, Territory.create().score(b));
+        b.put(SPEAR, b.grid().sq("d2"));
+        assertTrue(new Territory().score(b) < 0);
+    }
+
+    @Test
+    public void testAgainstSearch() {
+        for (int size : new int[] { 6, 10 }) {
+            Board b = new Board(Layout.standard(size));
+            Random random = new Random(size);
+            Territory scalar = new Territory(), best = Territory.create();
+            while (b.winner() == null) {
+                int expected = score(b);
+                assertEquals(expected, scalar.score(b));
+                assertEquals(expected, best.score(b));
+                List<Move> moves = new ArrayList<>();
+                b.legalMoves().forEachRemaining(moves::add);
+                b.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+
+    @Test
+    public void testWeightedFeatures() {
+        Board b = Board.parse("BS2/SS2/SSSS/W1SB w");
+        int[] features = new int[Weighted.COUNT];
+        Weighted eval = new Weighted(new double[] { 1, 10, 100, 1000,
+                                                    10000 });
+        eval.features(b, features);
+        assertArrayEquals(new int[] { 1, 1, 1, 1, 2 }, features);
+        assertEquals(21111, eval.score(b));
+        b.setTurn(BLACK);
+        assertEquals(21111, eval.score(b));
+    }
+
+    @Test
+    public void testWeightedDefault() {
+        Board b = new Board();
+        Random random = new Random(47);
+        Weighted weighted = Weighted.create();
+        Territory territory = Territory.create();
+        while (b.winner() == null) {
+            assertEquals(territory.score(b), weighted.score(b));
+            List<Move> moves = new ArrayList<>();
+            b.legalMoves().forEachRemaining(moves::add);
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+    }
+
+    @Test
+    public void testEstimates() {
+        Board b = new Board();
+        Random random = new Random(49);
+        Weighted weighted = Weighted.create();
+        Territory territory = Territory.create();
+        assertEquals(Evaluator.NO_ESTIMATE,
+                     Evaluator.MOBILITY.estimate(b));
+        int close = 0, n = 0;
+        while (b.winner() == null) {
+            assertEquals(territory.estimate(b), weighted.estimate(b));
+            if (Math.abs(territory.estimate(b) - territory.score(b)) <= 50) {
+                close += 1;
+            }
+            n += 1;
+            List<Move> moves = new ArrayList<>();
+            b.legalMoves().forEachRemaining(moves::add);
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        assertTrue(close >= 0.8 * n);
+    }
+
+    @Test
+    public void testWeightsFile() throws IOException {
+        Path file = Files.createTempFile("amazons", ".weights");
+        try {
+            double[] weights = { 1.5, -2, 0.25, 3e-4, 7 };
+            Weighted.write(file, weights, "test");
+            assertTrue(Arrays.equals(weights, Weighted.read(file)));
+            Files.write(file, List.of("mobility 1", "queen 2"));
+            Weighted.read(file);
+            fail("accepted a weights file with missing weights");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /** Return the territory score of B (see Territory), computed by
+     *  breadth-first searches over queen and king moves. */
+    private static int score(Board b) {
+        int[][] queen = new int[2][], king = new int[2][];
+        for (int i = 0; i < 2; i += 1) {
+            Piece side = i == 0 ? WHITE : BLACK;
+            queen[i] = distances(b, side, true);
+            king[i] = distances(b, side, false);
+        }
+        return Territory.QUEEN_WEIGHT * compare(b, queen)
+            + Territory.KING_WEIGHT * compare(b, king)
+            + b.mobility(WHITE) - b.mobility(BLACK);
+    }
+
+    /** Return the number of empty squares of B nearer to white than to
+     *  black according to DISTANCES (indexed by side, then square index,
+     *  with -1 for unreachable squares), less the number nearer to
+     *  black. */
+    private static int compare(Board b, int[][] distances) {
+        int total = 0;
+        for (int k = 0; k < b.grid().count(); k += 1) {
+            int w = distances[0][k], bl = distances[1][k];
+            if (b.get(k) != EMPTY || w == bl) {
+                continue;
+            } else if (bl < 0 || (w >= 0 && w < bl)) {
+                total += 1;
+            } else {
+                total -= 1;
+            }
+        }
+        return total;
+    }
+
+    /** Return the distances of the squares of B from SIDE's queens, by
+     *  queen moves if QUEEN and otherwise by king moves, as an array
+     *  indexed by square index, with -1 for unreachable squares. */
+    private static int[] distances(Board b, Piece side, boolean queen) {
+        Grid grid = b.grid();
+        int[] result = new int[grid.count()];
+        Arrays.fill(result, -1);
+        List<Integer> work = new ArrayList<>();
+        SquareSet queens = b.queens(side);
+        for (int k = queens.next(0); k >= 0; k = queens.next(k + 1)) {
+            result[k] = 0;
+            work.add(k);
+        }
+        for (int i = 0; i < work.size(); i += 1) {
+            int k = work.get(i);
+            for (int dir = 0; dir < 8; dir += 1) {
+                for (int j : grid.ray(k, dir)) {
+                    if (b.get(j) != EMPTY) {
+                        break;
+                    }
+                    if (result[j] < 0) {
+                        result[j] = result[k] + 1;
+                        work.add(j);
+                    }
+                    if (!queen) {
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -56,13 +56,19 @@ class TextPlayer extends Player {
             Pattern.compile("quit$").matcher(""),
             Pattern.compile("seed\\s+(\\d+)$").matcher(""),
             Pattern.compile("dump$").matcher(""),
-            Pattern.compile("new$").matcher(""),
+            Pattern.compile("position(?:\\s+(\\S+\\s+[wb]))?$").matcher(""),
+            Pattern.compile("stats(?:\\s+(reset))?$").matcher(""),
+            Pattern.compile("solve(?:\\s+(\\d+))?$").matcher(""),
+            Pattern.compile("analyze(?:\\s+(\\d+)(?:\\s+(\\d+))?)?$")
+                .matcher(""),
+            Pattern.compile("new(?:\\s+(\\d+)(?:\\s+(\\S+))?)?$")
+                .matcher(""),
             Pattern.compile("auto\\s+(?i)(white|black)$").matcher(""),
             Pattern.compile("manual\\s+(?i)(white|black)$").matcher(""),
-            Pattern.compile("[a-j][1-9]0?-"
-                    + "[a-j][1-9]0?\\([a-j][1-9]0?\\)").matcher(""),
-            Pattern.compile("[a-j]([1-9]|10)\\s+"
-                    + "[a-j]([1-9]|10)\\s+[a-j]([1-9]|10)$").matcher(""),
+            Pattern.compile("[a-z][1-9]\\d?-"
+                    + "[a-z][1-9]\\d?\\([a-z][1-9]\\d?\\)").matcher(""),
+            Pattern.compile("[a-z][1-9]\\d?\\s+"
+                    + "[a-z][1-9]\\d?\\s+[a-z][1-9]\\d?$").matcher(""),
             Pattern.compile("null$").matcher(""),
     };
 }
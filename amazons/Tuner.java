@@ -0,0 +1,299 @@
+package amazons;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import static amazons.Piece.*;
+
+/** Fits the weights of a Weighted evaluator to labelled positions from
+ *  self-play (see SelfPlay and Samples) by Texel's method, as for
+ *      java amazons.Tuner SAMPLES WEIGHTS [ITERATIONS]
+ *  The value v of a position under weights w is taken to predict that
+ *  white wins with probability sigmoid(K v) = 1 / (1 + exp(-K v)), where
+ *  the scale K is first chosen to fit the game results best under the
+ *  starting weights (those of amazons.weights, or the defaults).  The
+ *  weights are then adjusted to minimize the mean squared difference
+ *  between the predictions and targets, each being LAMBDA times the
+ *  game result (1 if white won, else 0) plus 1 - LAMBDA times the
+ *  prediction from the sample's search value, where LAMBDA is given by
+ *  the property amazons.tune.lambda (default 1).
+ *
+ *  Since the value is linear in the weights, the features of every
+ *  sample are computed once, in parallel, into one array of COUNT ints
+ *  per sample.  Each iteration then computes the error and its gradient
+ *  over all samples in parallel, and steps down the gradient, growing
+ *  the step after an improvement and halving it after a failure.
+ *  @author Wenhan Jin
+ */
+final class Tuner {
+
+    /** Default number of iterations. */
+    static final int ITERATIONS = 500;
+    /** Weight of game results in the targets. */
+    static final double LAMBDA =
+        Double.parseDouble(System.getProperty("amazons.tune.lambda", "1"));
+    /** Largest number of samples handled by one task without
+     *  splitting. */
+    static final int GRAIN = 1 << 12;
+    /** Number of features. */
+    private static final int COUNT = Weighted.COUNT;
+
+    /** A tuner for the samples in SAMPLES, computing on the threads of
+     *  POOL. */
+    Tuner(Samples samples, ForkJoinPool pool) {
+        _pool = pool;
+        _count = samples.count();
+        _features = new int[_count * COUNT];
+        _results = new double[_count];
+        _scores = new int[_count];
+        for (int i = 0; i < _count; i += 1) {
+            _results[i] = samples.winner(i) == WHITE ? 1 : 0;
+            _scores[i] = samples.score(i);
+        }
+        _pool.invoke(new FeatureTask(samples, 0, _count));
+        _targets = _results.clone();
+    }
+
+    /** Return the number of samples. */
+    int count() {
+        return _count;
+    }
+
+    /** Return the features of sample I (as for Weighted.features). */
+    int[] features(int i) {
+        int[] result = new int[COUNT];
+        System.arraycopy(_features, i * COUNT, result, 0, COUNT);
+        return result;
+    }
+
+    /** Return the scale K that minimizes the error of predicting the game
+     *  results with WEIGHTS, and set the targets from it as described
+     *  above. */
+    double fitScale(double[] weights) {
+        _targets = _results;
+        double lo = -6, hi = 1;
+        for (int step = 0; step < 60; step += 1) {
+            double a = lo + (hi - lo) * 0.382, b = hi - (hi - lo) * 0.382;
+            if (error(weights, Math.pow(10, a), null)
+                < error(weights, Math.pow(10, b), null)) {
+                hi = b;
+            } else {
+                lo = a;
+            }
+        }
+        double scale = Math.pow(10, (lo + hi) / 2);
+        _targets = new double[_count];
+        for (int i = 0; i < _count; i += 1) {
+            _targets[i] = LAMBDA * _results[i]
+                + (1 - LAMBDA) * sigmoid(scale * _scores[i]);
+        }
+        return scale;
+    }
+
+    /** Return the mean squared error of the predictions under WEIGHTS and
+     *  scale SCALE.  If GRADIENT is non-null, set it to the gradient of
+     *  the error with respect to the weights. */
+    double error(double[] weights, double scale, double[] gradient) {
+        double[] sums =
+            _pool.invoke(new ErrorTask(weights, scale, gradient != null,
+                                       0, _count));
+        if (gradient != null) {
+            for (int j = 0; j < COUNT; j += 1) {
+                gradient[j] = sums[j + 1] / _count;
+            }
+        }
+        return sums[0] / _count;
+    }
+
+    /** Return the weights that minimize the error at scale SCALE, found by
+     *  at most ITERATIONS steps starting from START, reporting progress
+     *  to LOG, if it is non-null. */
+    double[] tune(double[] start, double scale, int iterations,
+                  PrintStream log) {
+        double[] weights = start.clone(), gradient = new double[COUNT],
+            trial = new double[COUNT], trialGradient = new double[COUNT];
+        double error = error(weights, scale, gradient);
+        double step = 0.1;
+        for (double w : weights) {
+            step = Math.max(step, 0.1 * Math.abs(w));
+        }
+        for (int iter = 1; iter <= iterations && step > 1e-6; iter += 1) {
+            double norm = 0;
+            for (double g : gradient) {
+                norm += g * g;
+            }
+            norm = Math.sqrt(norm);
+            if (norm == 0) {
+                break;
+            }
+            for (int j = 0; j < COUNT; j += 1) {
+                trial[j] = weights[j] - step * gradient[j] / norm;
+            }
+            double trialError = error(trial, scale, trialGradient);
+            if (trialError < error) {
+                System.arraycopy(trial, 0, weights, 0, COUNT);
+                System.arraycopy(trialGradient, 0, gradient, 0, COUNT);
+                error = trialError;
+                step *= 1.2;
+            } else {
+                step *= 0.5;
+            }
+            if (log != null && iter % 50 == 0) {
+                log.printf("iteration %d: error %.6f%n", iter, error);
+            }
+        }
+        return weights;
+    }
+
+    /** Return 1 / (1 + e**-X). */
+    static double sigmoid(double x) {
+        return 1 / (1 + Math.exp(-x));
+    }
+
+    /** Computes the features of samples [LO .. HI). */
+    private class FeatureTask extends RecursiveAction {
+        /** A task computing the features of samples LO to HI - 1 of
+         *  SAMPLES. */
+        FeatureTask(Samples samples, int lo, int hi) {
+            _samples = samples;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo <= GRAIN / 16) {
+                Weighted eval = EVALUATOR.get();
+                for (int i = _lo; i < _hi; i += 1) {
+                    eval.features(_samples.board(i), _features, i * COUNT);
+                }
+            } else {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new FeatureTask(_samples, _lo, mid),
+                          new FeatureTask(_samples, mid, _hi));
+            }
+        }
+
+        /** The samples. */
+        private final Samples _samples;
+        /** The range of samples handled. */
+        private final int _lo, _hi;
+    }
+
+    /** Sums the squared errors, and optionally their gradients, of
+     *  samples [LO .. HI). */
+    private class ErrorTask extends RecursiveTask<double[]> {
+        /** A task returning the sum of the squared errors of samples LO to
+         *  HI - 1 under WEIGHTS and SCALE, followed, if GRADIENT, by the
+         *  sums of their partial derivatives with respect to each
+         *  weight. */
+        ErrorTask(double[] weights, double scale, boolean gradient,
+                  int lo, int hi) {
+            _weights = weights;
+            _scale = scale;
+            _gradient = gradient;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (_hi - _lo > GRAIN) {
+                int mid = (_lo + _hi) >>> 1;
+                ErrorTask left =
+                    new ErrorTask(_weights, _scale, _gradient, _lo, mid);
+                left.fork();
+                double[] sums =
+                    new ErrorTask(_weights, _scale, _gradient, mid, _hi)
+                    .compute();
+                double[] other = left.join();
+                for (int j = 0; j < sums.length; j += 1) {
+                    sums[j] += other[j];
+                }
+                return sums;
+            }
+            double[] sums = new double[COUNT + 1];
+            for (int i = _lo; i < _hi; i += 1) {
+                int start = i * COUNT;
+                double p = sigmoid(_scale * Weighted.dot(_weights, _features,
+                                                         start));
+                double diff = p - _targets[i];
+                sums[0] += diff * diff;
+                if (_gradient) {
+                    double d = 2 * diff * p * (1 - p) * _scale;
+                    for (int j = 0; j < COUNT; j += 1) {
+                        sums[j + 1] += d * _features[start + j];
+                    }
+                }
+            }
+            return sums;
+        }
+
+        /** The weights. */
+        private final double[] _weights;
+        /** The scale. */
+        private final double _scale;
+        /** True iff the gradient is wanted. */
+        private final boolean _gradient;
+        /** The range of samples handled. */
+        private final int _lo, _hi;
+    }
+
+    /** Tune weights as described above, with ARGS giving SAMPLES, WEIGHTS,
+     *  and ITERATIONS. */
+    public static void main(String... args) {
+        if (args.length < 2 || args.length > 3) {
+            Utils.fatal("Usage: java amazons.Tuner SAMPLES WEIGHTS"
+                        + " [ITERATIONS]%n");
+        }
+        try {
+            int iterations = args.length > 2 ? Integer.parseInt(args[2])
+                : ITERATIONS;
+            long start = System.nanoTime();
+            Samples samples = Samples.read(Paths.get(args[0]));
+            Tuner tuner = new Tuner(samples, ForkJoinPool.commonPool());
+            System.out.printf("%d samples read in %.1f s%n", tuner.count(),
+                              (System.nanoTime() - start) * 1e-9);
+            double[] weights = Weighted.create().weights();
+            double scale = tuner.fitScale(weights);
+            double before = tuner.error(weights, scale, null);
+            System.out.printf("scale %.6g: error %.6f%n", scale, before);
+            weights = tuner.tune(weights, scale, iterations, System.out);
+            double after = tuner.error(weights, scale, null);
+            Path out = Paths.get(args[1]);
+            Weighted.write(out, weights,
+                           String.format("Tuned on %d samples of %s",
+                                         tuner.count(), args[0]),
+                           String.format("Scale %.6g, error %.6f (was %.6f)",
+                                         scale, after, before));
+            System.out.printf("error %.6f in %.1f s; weights written to"
+                              + " %s%n", after,
+                              (System.nanoTime() - start) * 1e-9, out);
+        } catch (IOException | IllegalArgumentException excp) {
+            Utils.fatal("Could not tune weights: %s%n", excp.getMessage());
+        }
+    }
+
+    /** The evaluator of each worker thread. */
+    private static final ThreadLocal<Weighted> EVALUATOR =
+        ThreadLocal.withInitial(Weighted::create);
+
+    /** The pool running the computations. */
+    private final ForkJoinPool _pool;
+    /** Number of samples. */
+    private final int _count;
+    /** The features of sample i are _features[i * COUNT + j], for
+     *  0 <= j < COUNT. */
+    private final int[] _features;
+    /** Game results (1 if white won, else 0). */
+    private final double[] _results;
+    /** Search values of the samples. */
+    private final int[] _scores;
+    /** Current targets of the predictions. */
+    private double[] _targets;
+}
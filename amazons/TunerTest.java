@@ -0,0 +1,76 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the evaluation-weight tuner.
+ *  @author Wenhan Jin
+ */
+public class TunerTest {
+
+    /** Return samples from GAMES random games on 6x6 boards, with values
+     *  from EVAL. */
+    private static Samples samples(int games, Evaluator eval) {
+        Random random = new Random(47);
+        Samples result = new Samples(6);
+        for (int game = 0; game < games; game += 1) {
+            Board b = new Board(Layout.standard(6));
+            int first = result.count();
+            while (b.winner() == null) {
+                result.add(b, eval.score(b));
+                List<Move> moves = new ArrayList<>();
+                b.legalMoves().forEachRemaining(moves::add);
+                b.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            result.setWinner(first, b.winner());
+        }
+        return result;
+    }
+
+    @Test
+    public void testFeatures() {
+        Samples samples = samples(20, Evaluator.MOBILITY);
+        Tuner tuner = new Tuner(samples, new ForkJoinPool(3));
+        assertEquals(samples.count(), tuner.count());
+        Weighted eval = Weighted.create();
+        int[] features = new int[Weighted.COUNT];
+        for (int i = 0; i < samples.count(); i += 1) {
+            eval.features(samples.board(i), features);
+            assertArrayEquals(features, tuner.features(i));
+        }
+    }
+
+    @Test
+    public void testTune() {
+        Tuner tuner = new Tuner(samples(200, Evaluator.MOBILITY),
+                                new ForkJoinPool(3));
+        double[] start = Weighted.DEFAULT_WEIGHTS;
+        double scale = tuner.fitScale(start);
+        assertTrue(scale > 0);
+        assertTrue(tuner.error(start, scale, null)
+                   < tuner.error(start, scale * 4, null));
+        assertTrue(tuner.error(start, scale, null)
+                   < tuner.error(start, scale / 4, null));
+
+        double[] gradient = new double[Weighted.COUNT];
+        double error = tuner.error(start, scale, gradient);
+        for (int j = 0; j < Weighted.COUNT; j += 1) {
+            double[] w = start.clone();
+            double h = 1e-4;
+            w[j] += h;
+            double up = tuner.error(w, scale, null);
+            w[j] -= 2 * h;
+            double down = tuner.error(w, scale, null);
+            assertEquals((up - down) / (2 * h), gradient[j],
+                         1e-6 + 1e-3 * Math.abs(gradient[j]));
+        }
+
+        double[] tuned = tuner.tune(start, scale, 100, null);
+        assertTrue(tuner.error(tuned, scale, null) < error);
+    }
+}
@@ -0,0 +1,86 @@
+package amazons;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** A Territory evaluator that computes king distances and compares
+ *  distance maps with the (incubating) vector API, handling as many
+ *  squares at once as the processor's widest vectors of bytes hold (64
+ *  with AVX-512).  King distances are found by relaxation: each sweep
+ *  lowers the distance of every empty square to one more than the
+ *  least distance of its neighbors, until a sweep changes nothing.  Use
+ *  it only if the jdk.incubator.vector module is present (see
+ *  Territory.create).
+ *  @author Wenhan Jin
+ */
+final class VectorTerritory extends Territory {
+
+    /** The vector shape used. */
+    private static final VectorSpecies<Byte> SPECIES =
+        ByteVector.SPECIES_PREFERRED;
+    /** Number of bytes in a vector. */
+    private static final int LANES = SPECIES.length();
+
+    /** A territory evaluator using vector operations. */
+    VectorTerritory() {
+    }
+
+    @Override
+    int margin(int width) {
+        return width + 1;
+    }
+
+    @Override
+    int length(int width) {
+        return roundUp(margin(width) + roundUp(width * width) + width + 1);
+    }
+
+    @Override
+    int compare(byte[] whites, byte[] blacks) {
+        int total = 0;
+        for (int k = 0; k < _length; k += LANES) {
+            VectorMask<Byte> open =
+                ByteVector.fromArray(SPECIES, _open, k)
+                .compare(VectorOperators.NE, 0);
+            ByteVector w = ByteVector.fromArray(SPECIES, whites, k),
+                b = ByteVector.fromArray(SPECIES, blacks, k);
+            total += w.compare(VectorOperators.LT, b, open).trueCount()
+                - w.compare(VectorOperators.GT, b, open).trueCount();
+        }
+        return total;
+    }
+
+    @Override
+    void kingDistances(byte[] distances) {
+        int end = _margin + roundUp(_width * _width);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int k = _margin; k < end; k += LANES) {
+                ByteVector near = ByteVector.fromArray(SPECIES, distances,
+                                                       k + _offsets[0]);
+                for (int dir = 1; dir < 8; dir += 1) {
+                    near = near.min(ByteVector.fromArray(SPECIES, distances,
+                                                         k + _offsets[dir]));
+                }
+                near = near.add((byte) 1).min(Territory.UNREACHED);
+                ByteVector old = ByteVector.fromArray(SPECIES, distances, k);
+                VectorMask<Byte> better =
+                    near.compare(VectorOperators.LT, old,
+                                 ByteVector.fromArray(SPECIES, _open, k)
+                                 .compare(VectorOperators.NE, 0));
+                if (better.anyTrue()) {
+                    old.blend(near, better).intoArray(distances, k);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /** Return the least multiple of LANES that is at least N. */
+    private static int roundUp(int n) {
+        return (n + LANES - 1) / LANES * LANES;
+    }
+}
@@ -7,4 +7,18 @@ interface View {
     /** Update the current view according to BOARD. */
     void update(Board board);
 
+    /** Note that an AI search for SIDE has started, and that HANDLE may
+     *  be used to stop it early. */
+    default void searchStarted(Piece side, SearchHandle handle) {
+    }
+
+    /** Report that the current search has completed DEPTH, finding BEST,
+     *  whose value is SCORE (positive values favor white). */
+    default void searchProgress(int depth, Move best, int score) {
+    }
+
+    /** Note that the current search has ended. */
+    default void searchEnded() {
+    }
+
 }
@@ -0,0 +1,210 @@
+package amazons;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static amazons.Piece.*;
+import static amazons.Utils.error;
+
+/** An evaluator whose value is a weighted sum of features of a
+ *  position, each the difference between white's and black's measures
+ *  of something (see FEATURES):
+ *    mobility: the number of queen moves available (Evaluator.MOBILITY);
+ *    queen, king: the empty squares a side is strictly nearer to by
+ *        queen and king distance (see Territory);
+ *    owned: the empty squares in regions holding only that side's
+ *        queens, which the other side can never enter;
+ *    trapped: the number of the OTHER side's queens that cannot move.
+ *  The weights are read from the file named by the property
+ *  amazons.weights, if any (see read), as written by Tuner, and are
+ *  otherwise DEFAULT_WEIGHTS, which give the same values as Territory.
+ *  @author Wenhan Jin
+ */
+final class Weighted implements Evaluator {
+
+    /** The names of the features, in the order of feature vectors and
+     *  weight arrays. */
+    static final List<String> FEATURES =
+        List.of("mobility", "queen", "king", "owned", "trapped");
+    /** Indices of the features. */
+    static final int MOBILITY = 0, QUEEN = 1, KING = 2, OWNED = 3,
+        TRAPPED = 4;
+    /** The number of features. */
+    static final int COUNT = 5;
+
+    /** The weights used when no weights file is given. */
+    static final double[] DEFAULT_WEIGHTS = {
+        1, Territory.QUEEN_WEIGHT, Territory.KING_WEIGHT, 0, 0
+    };
+
+    /** Return a new weighted evaluator with the weights in the file named
+     *  by the property amazons.weights, or DEFAULT_WEIGHTS if it is not
+     *  set. */
+    static Weighted create() {
+        String file = System.getProperty("amazons.weights");
+        if (file == null) {
+            return new Weighted(DEFAULT_WEIGHTS);
+        }
+        try {
+            return new Weighted(read(Paths.get(file)));
+        } catch (IOException excp) {
+            throw error("could not read weights: %s", excp.getMessage());
+        }
+    }
+
+    /** A weighted evaluator with weights WEIGHTS, indexed as FEATURES. */
+    Weighted(double[] weights) {
+        if (weights.length != COUNT) {
+            throw error("need %d weights", COUNT);
+        }
+        _weights = weights.clone();
+    }
+
+    @Override
+    public String name() {
+        return "weighted";
+    }
+
+    @Override
+    public int score(Board board) {
+        features(board, _features);
+        return (int) Math.round(dot(_weights, _features, 0));
+    }
+
+    /** Return my score for BOARD as predicted from its mobility and
+     *  owned squares alone, taking the territory features to be in
+     *  proportion to mobility as for Territory.estimate, and ignoring
+     *  trapped queens. */
+    @Override
+    public int estimate(Board board) {
+        double perMove = _weights[MOBILITY]
+            + _weights[QUEEN] * Territory.QUEEN_PER_MOVE
+            + _weights[KING] * Territory.KING_PER_MOVE;
+        double result =
+            perMove * (board.mobility(WHITE) - board.mobility(BLACK));
+        if (_weights[OWNED] != 0) {
+            result +=
+                _weights[OWNED] * (owned(board, WHITE) - owned(board, BLACK));
+        }
+        return (int) Math.round(result);
+    }
+
+    /** Return a copy of my weights. */
+    double[] weights() {
+        return _weights.clone();
+    }
+
+    /** Set FEATURES[0 .. COUNT-1] to the features of BOARD. */
+    void features(Board board, int[] features) {
+        features(board, features, 0);
+    }
+
+    /** Set FEATURES[START .. START+COUNT-1] to the features of BOARD. */
+    void features(Board board, int[] features, int start) {
+        _territory.measure(board);
+        features[start + MOBILITY] =
+            board.mobility(WHITE) - board.mobility(BLACK);
+        features[start + QUEEN] = _territory.queenTerritory();
+        features[start + KING] = _territory.kingTerritory();
+        features[start + OWNED] = owned(board, WHITE) - owned(board, BLACK);
+        features[start + TRAPPED] =
+            _territory.trapped(BLACK) - _territory.trapped(WHITE);
+    }
+
+    /** Return the sum of WEIGHTS[i] * FEATURES[START + i] over all
+     *  features i. */
+    static double dot(double[] weights, int[] features, int start) {
+        double result = 0;
+        for (int i = 0; i < COUNT; i += 1) {
+            result += weights[i] * features[start + i];
+        }
+        return result;
+    }
+
+    /** Return the number of empty squares of BOARD in regions that hold
+     *  only SIDE's queens. */
+    private int owned(Board board, Piece side) {
+        int n = board.grid().count();
+        if (_counted == null || _counted.length != n) {
+            _counted = new int[n];
+        }
+        _mark += 1;
+        int result = 0;
+        SquareSet queens = board.queens(side);
+        for (int k = queens.next(0); k >= 0; k = queens.next(k + 1)) {
+            int r = board.region(k);
+            if (_counted[r] != _mark && board.regionOwner(r) == side) {
+                _counted[r] = _mark;
+                result += board.regionEmpties(r);
+            }
+        }
+        return result;
+    }
+
+    /** Return the weights in the file FILE, which has a line "NAME
+     *  VALUE" for each feature NAME (in any order).  Blank lines and
+     *  text after '#' are ignored. */
+    static double[] read(Path file) throws IOException {
+        double[] weights = new double[COUNT];
+        boolean[] seen = new boolean[COUNT];
+        for (String line : Files.readAllLines(file)) {
+            line = line.replaceFirst("#.*", "").trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            int i = FEATURES.indexOf(fields[0]);
+            if (fields.length != 2 || i < 0) {
+                throw error("bad weight line: %s", line);
+            }
+            try {
+                weights[i] = Double.parseDouble(fields[1]);
+            } catch (NumberFormatException excp) {
+                throw error("bad weight: %s", fields[1]);
+            }
+            seen[i] = true;
+        }
+        for (int i = 0; i < COUNT; i += 1) {
+            if (!seen[i]) {
+                throw error("no weight for %s", FEATURES.get(i));
+            }
+        }
+        return weights;
+    }
+
+    /** Write WEIGHTS to FILE in the form accepted by read, preceded by the
+     *  comment lines COMMENTS. */
+    static void write(Path file, double[] weights, String... comments)
+        throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            for (String comment : comments) {
+                out.printf("# %s%n", comment);
+            }
+            for (int i = 0; i < COUNT; i += 1) {
+                out.printf("%s %s%n", FEATURES.get(i), weights[i]);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("weighted %s", Arrays.toString(_weights));
+    }
+
+    /** The weights, indexed as FEATURES. */
+    private final double[] _weights;
+    /** Computes the territory features. */
+    private final Territory _territory = Territory.create();
+    /** Work space for score. */
+    private final int[] _features = new int[COUNT];
+    /** _counted[r] == _mark iff region r has been counted by the current
+     *  call of owned. */
+    private int[] _counted;
+    /** Current mark for _counted. */
+    private int _mark;
+}